@@ -18,6 +18,8 @@ plugins {
     alias(libs.plugins.qodana)
     // Gradle Kover Plugin
     alias(libs.plugins.kover)
+    // Gradle JMH Plugin
+    alias(libs.plugins.jmh)
 }
 
 group = properties("pluginGroup").get()
@@ -61,6 +63,8 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-params:5.9.2")
     testImplementation("org.mockito:mockito-core:5.3.1")
     testImplementation("org.mockito:mockito-junit-jupiter:5.3.1")
+    testImplementation("io.projectreactor:reactor-test:3.7.0")
+    jmh("org.mockito:mockito-core:5.3.1")
 }
 
 // Set the JVM language level used to build the project.
@@ -84,6 +88,16 @@ changelog {
     repositoryUrl = properties("pluginRepositoryUrl")
 }
 
+// Configure Gradle JMH Plugin - read more: https://github.com/melix/jmh-gradle-plugin
+// The benchmarks are run with `./gradlew jmh`, apart from the unit tests
+jmh {
+    // the benchmarks run against the IntelliJ Platform classes, which are on the test classpath
+    includeTests = true
+    fork = 1
+    warmupIterations = 2
+    iterations = 5
+}
+
 // Configure Gradle Kover Plugin - read more: https://github.com/Kotlin/kotlinx-kover#configuration
 koverReport {
     defaults {
@@ -166,6 +180,13 @@ tasks {
         useJUnitPlatform()
     }
 
+    // Reports the bytes allocated per streamed chunk by each of the chat completion chunk parsers
+    register<JavaExec>("jmhAllocation") {
+        group = "benchmark"
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass = "com.didalgo.intellij.chatgpt.chat.models.ChatCompletionChunkAllocation"
+    }
+
     signPlugin {
         certificateChain = System.getenv("CERTIFICATE_CHAIN") ?: findProperty("JetBrains.signPlugin.certificateChain")?.let { file(it).readText() }
         privateKey = System.getenv("PRIVATE_KEY") ?: findProperty("JetBrains.signPlugin.privateKey")?.let { file(it).readText() }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.BlockingCallExecutor;
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
+import com.didalgo.intellij.chatgpt.chat.ChatLink;
+import com.didalgo.intellij.chatgpt.chat.ChatMessageEvent;
+import com.didalgo.intellij.chatgpt.chat.ChatMessageListener;
+import com.didalgo.intellij.chatgpt.chat.ConversationContext;
+import com.didalgo.intellij.chatgpt.chat.models.ModelType;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Disposer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives concurrent non-streaming chat requests through the {@link ChatHandler} to a chat model
+ * blocking for the duration of each call, such as a reasoning model, comparing the blocking call
+ * executor on the bounded elastic scheduler with the one on virtual threads.
+ * <p>
+ * The throughput is reported in calls per second, and the peak number of live platform threads
+ * is printed at the end of each trial. The virtual threads need the benchmark to run on Java 21
+ * or later, and fall back to the bounded elastic scheduler otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BlockingChatCallBenchmark {
+
+    private static final int CONCURRENT_CALLS = 50;
+    private static final Duration CALL_DURATION = Duration.ofMillis(200);
+
+    @Param({"false", "true"})
+    public boolean useVirtualThreads;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final ChatMessageListener listener = mock(ChatMessageListener.class);
+    private Disposable applicationDisposable;
+    private ConversationContext ctx;
+    private ChatHandler chatHandler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var settings = new GeneralSettings();
+        settings.setUseVirtualThreads(useVirtualThreads);
+        var chatClientFactory = mock(ChatClientFactory.class);
+        when(chatClientFactory.create(any())).thenReturn(ChatClient.create(blockingChatModel()));
+
+        var application = mock(Application.class);
+        when(application.getService(GeneralSettings.class)).thenReturn(settings);
+        when(application.getService(ChatClientFactory.class)).thenReturn(chatClientFactory);
+        applicationDisposable = Disposer.newDisposable();
+        ApplicationManager.setApplication(application, applicationDisposable);
+        ChatClientHolder.refresh();
+
+        var modelType = mock(ModelType.class);
+        when(modelType.id()).thenReturn("blocking-model");
+        when(modelType.supportsStreaming()).thenReturn(false);
+        when(modelType.incompatibleChatOptionsOverride()).thenReturn(ModelType.OVERRIDE_NONE);
+        ctx = mock(ConversationContext.class);
+        when(ctx.getAssistantType()).thenReturn(AssistantType.System.GPT_4);
+        when(ctx.getModelType()).thenReturn(modelType);
+        chatHandler = new ChatHandler();
+
+        if (useVirtualThreads && !BlockingCallExecutor.isVirtualThreadsSupported())
+            System.out.println("Virtual threads not supported, running on the bounded elastic scheduler");
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println("Peak platform threads (useVirtualThreads=" + useVirtualThreads + "): " + threads.getPeakThreadCount());
+        ChatClientHolder.refresh();
+        Disposer.dispose(applicationDisposable);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_CALLS)
+    public void concurrentBlockingCalls() {
+        var exchanges = new ArrayList<Flux<?>>(CONCURRENT_CALLS);
+        for (int i = 0; i < CONCURRENT_CALLS; i++) {
+            // the prompts differ, so that the requests aren't shared
+            var userMessage = new UserMessage("Request " + requestCount.incrementAndGet());
+            var event = ChatMessageEvent.starting(mock(ChatLink.class), userMessage).initiating(new Prompt(userMessage));
+            exchanges.add(chatHandler.handle(ctx, event, listener));
+        }
+        Flux.merge(exchanges).blockLast();
+    }
+
+    private static ChatModel blockingChatModel() {
+        var chatModel = mock(ChatModel.class);
+        when(chatModel.getDefaultOptions()).thenReturn(ChatOptions.builder().build());
+        when(chatModel.call(any(Prompt.class))).thenAnswer(__ -> {
+            Thread.sleep(CALL_DURATION.toMillis());
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("Done"))));
+        });
+        return chatModel;
+    }
+}
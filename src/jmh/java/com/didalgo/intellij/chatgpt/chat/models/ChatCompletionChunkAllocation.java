@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import io.netty.buffer.ByteBuf;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reports the bytes allocated per streamed chunk while reading the recorded chat completion
+ * stream by the {@link ChatCompletionChunkParser} and the Spring AI way, as counted by the
+ * JVM for the current thread. Run with {@code ./gradlew jmhAllocation}.
+ *
+ * @see ChatCompletionChunkParserBenchmark
+ */
+public final class ChatCompletionChunkAllocation {
+
+    private static final int WARMUP_PASSES = 20_000;
+    private static final int MEASURED_PASSES = 20_000;
+
+    private static long sink;
+
+    private ChatCompletionChunkAllocation() { }
+
+    public static void main(String[] args) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported())
+            throw new UnsupportedOperationException("Thread allocated memory is not supported by the JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        var lines = RecordedChatCompletionStream.loadLines();
+        try {
+            long chunks = lines.stream().filter(line -> RecordedChatCompletionStream.parseNatively(line) != null).count();
+            report(threads, "ChatCompletionChunkParser", lines, chunks, RecordedChatCompletionStream::parseNatively);
+            report(threads, "Spring AI", lines, chunks, RecordedChatCompletionStream::parseWithSpringAi);
+        } finally {
+            RecordedChatCompletionStream.release(lines);
+        }
+        if (sink == 42)
+            System.out.println();
+    }
+
+    private static void report(com.sun.management.ThreadMXBean threads, String parserName, List<ByteBuf> lines,
+                               long chunks, Function<ByteBuf, ChatResponse> parser) {
+        readStream(lines, parser, WARMUP_PASSES);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        readStream(lines, parser, MEASURED_PASSES);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%-26s %,10.0f bytes/chunk (%d chunks of %d lines per pass)%n",
+                parserName, (double) allocated / (MEASURED_PASSES * chunks), chunks, lines.size());
+    }
+
+    private static void readStream(List<ByteBuf> lines, Function<ByteBuf, ChatResponse> parser, int passes) {
+        for (int i = 0; i < passes; i++)
+            for (var line : lines) {
+                var response = parser.apply(line);
+                if (response != null)
+                    sink += response.getResults().size();
+            }
+    }
+}
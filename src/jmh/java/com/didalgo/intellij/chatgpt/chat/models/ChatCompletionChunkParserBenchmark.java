@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a recorded chat completion stream by the {@link ChatCompletionChunkParser}
+ * with the Spring AI way of reading it. The time is given per whole stream; run with
+ * {@code -prof gc}, or with the {@code jmhAllocation} task, for the allocation rates.
+ *
+ * @see ChatCompletionChunkAllocation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChatCompletionChunkParserBenchmark {
+
+    private List<ByteBuf> lines;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lines = RecordedChatCompletionStream.loadLines();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RecordedChatCompletionStream.release(lines);
+    }
+
+    @Benchmark
+    public void chunkParser(Blackhole blackhole) {
+        for (var line : lines)
+            blackhole.consume(RecordedChatCompletionStream.parseNatively(line));
+    }
+
+    @Benchmark
+    public void springAi(Blackhole blackhole) {
+        for (var line : lines)
+            blackhole.consume(RecordedChatCompletionStream.parseWithSpringAi(line));
+    }
+}
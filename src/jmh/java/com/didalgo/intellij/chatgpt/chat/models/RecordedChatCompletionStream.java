@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.openai.api.OpenAiApi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The server-sent event stream of a chat completion recorded from the OpenAI API, and the two
+ * ways of reading its lines compared by the benchmarks.
+ */
+final class RecordedChatCompletionStream {
+
+    private static final String RESOURCE = "/chat-completion-stream.txt";
+
+    private RecordedChatCompletionStream() { }
+
+    /**
+     * Loads the lines of the stream into direct buffers, as split by the Netty pipeline.
+     */
+    static List<ByteBuf> loadLines() {
+        try (var in = Objects.requireNonNull(RecordedChatCompletionStream.class.getResourceAsStream(RESOURCE), RESOURCE)) {
+            var lines = new ArrayList<ByteBuf>();
+            for (var line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n", -1)) {
+                var bytes = line.getBytes(StandardCharsets.UTF_8);
+                lines.add(Unpooled.directBuffer(bytes.length).writeBytes(bytes));
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void release(List<ByteBuf> lines) {
+        lines.forEach(ByteBuf::release);
+    }
+
+    /**
+     * Reads the line the way of the streaming chat model of the plugin.
+     */
+    static ChatResponse parseNatively(ByteBuf line) {
+        return OpenAiStreamingChatModel.parseEvent(line);
+    }
+
+    /**
+     * Reads the line the way of the Spring AI chat model: the event data is decoded into a
+     * string, bound to the whole chunk object, and mapped to the chat response.
+     */
+    static ChatResponse parseWithSpringAi(ByteBuf line) {
+        var event = line.toString(StandardCharsets.UTF_8);
+        if (!event.startsWith("data:"))
+            return null;
+        var data = event.substring("data:".length()).trim();
+        if ("[DONE]".equals(data))
+            return null;
+
+        var chunk = ModelOptionsUtils.jsonToObject(data, OpenAiApi.ChatCompletionChunk.class);
+        var generations = new ArrayList<Generation>();
+        for (var choice : chunk.choices()) {
+            var content = (choice.delta() == null) ? null : choice.delta().content();
+            var finishReason = (choice.finishReason() == null) ? null : choice.finishReason().name();
+            generations.add(new Generation(new AssistantMessage((content == null) ? "" : content),
+                    ChatGenerationMetadata.builder().finishReason(finishReason).build()));
+        }
+        var metadata = ChatResponseMetadata.builder()
+                .id(chunk.id())
+                .model(chunk.model());
+        if (chunk.usage() != null)
+            metadata.usage(new DefaultUsage(chunk.usage().promptTokens(), chunk.usage().completionTokens()));
+        return new ChatResponse(generations, metadata.build());
+    }
+}
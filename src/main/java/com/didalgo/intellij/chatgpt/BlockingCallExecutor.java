@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt;
+
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the calls which block waiting for a remote service, such as the chat model calls,
+ * model catalog fetches, connection tests and token counting.
+ * <p>
+ * By default, the calls run on the application thread pool, or the bounded elastic
+ * scheduler in Reactor pipelines. With {@link GeneralSettings#isUseVirtualThreads()}
+ * enabled, and when the IDE runs on Java 21 or later, each call gets its own virtual thread
+ * instead, so that long-running calls (e.g. to reasoning models) don't hold platform threads.
+ * The plugin is compiled for Java 17, so the virtual thread executor is looked up reflectively.
+ */
+public final class BlockingCallExecutor {
+
+    private static final Logger LOG = Logger.getInstance(BlockingCallExecutor.class);
+
+    private BlockingCallExecutor() { }
+
+    public static ExecutorService getExecutor() {
+        return getExecutor(GeneralSettings.getInstance().isUseVirtualThreads());
+    }
+
+    static ExecutorService getExecutor(boolean useVirtualThreads) {
+        if (useVirtualThreads)
+            return VirtualThreads.EXECUTOR.orElseGet(AppExecutorUtil::getAppExecutorService);
+        return AppExecutorUtil.getAppExecutorService();
+    }
+
+    public static Scheduler getScheduler() {
+        return getScheduler(GeneralSettings.getInstance().isUseVirtualThreads());
+    }
+
+    static Scheduler getScheduler(boolean useVirtualThreads) {
+        if (useVirtualThreads)
+            return VirtualThreads.SCHEDULER.orElseGet(Schedulers::boundedElastic);
+        return Schedulers.boundedElastic();
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.EXECUTOR.isPresent();
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task.
+     *
+     * @return the executor, or an empty {@code Optional} if the runtime doesn't support virtual threads
+     */
+    static Optional<ExecutorService> newVirtualThreadExecutor() {
+        try {
+            var method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of((ExecutorService) method.invoke(null));
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Cannot create virtual thread executor", e);
+            return Optional.empty();
+        }
+    }
+
+    private static final class VirtualThreads {
+        static final Optional<ExecutorService> EXECUTOR = newVirtualThreadExecutor();
+        static final Optional<Scheduler> SCHEDULER = EXECUTOR.map(executor -> Schedulers.fromExecutorService(executor, "virtual"));
+    }
+}
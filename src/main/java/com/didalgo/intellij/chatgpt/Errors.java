@@ -5,13 +5,61 @@
 package com.didalgo.intellij.chatgpt;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 public final class Errors {
 
     private static final int MESSAGE_MAX_LENGTH = 1000;
+    private static final int MAX_CAUSE_DEPTH = 16;
+
+    /**
+     * The kind of failure of a request to a model provider.
+     */
+    public enum Category {
+        /** The provider refused the request due to rate limits (HTTP 429). */
+        RATE_LIMITED,
+        /** The provider failed to handle the request (HTTP 5xx). */
+        SERVER_ERROR,
+        /** The connection couldn't be established or was closed prematurely. */
+        CONNECTION,
+        /** The provider didn't respond in time. */
+        TIMEOUT,
+        /** The request was rejected as invalid or unauthorized (other HTTP 4xx). */
+        CLIENT_ERROR,
+        /** Any other failure. */
+        OTHER;
+
+        /**
+         * Tells whether a request failed this way may succeed when simply repeated.
+         */
+        public boolean isRetryable() {
+            return this == RATE_LIMITED || this == SERVER_ERROR || this == CONNECTION;
+        }
+
+        /**
+         * Tells whether the failure indicates an unhealthy endpoint.
+         */
+        public boolean isEndpointFailure() {
+            return isRetryable() || this == TIMEOUT;
+        }
+    }
 
 
     public static String getWebClientErrorMessage(Throwable cause) {
@@ -19,6 +67,85 @@ public final class Errors {
         return errorMessage + (errorMessage.isEmpty() ? "" : "\n\n") + getErrorResponseBody(cause);
     }
 
+    public static Category classify(Throwable cause) {
+        var depth = 0;
+        for (var t = cause; t != null && depth < MAX_CAUSE_DEPTH; t = t.getCause(), depth++) {
+            var statusCode = getStatusCode(t);
+            if (statusCode.isPresent()) {
+                int status = statusCode.get();
+                if (status == 429)
+                    return Category.RATE_LIMITED;
+                if (status == 408)
+                    return Category.TIMEOUT;
+                if (status >= 500)
+                    return Category.SERVER_ERROR;
+                if (status >= 400)
+                    return Category.CLIENT_ERROR;
+            }
+            if (t instanceof TransientAiException)
+                return Category.SERVER_ERROR;
+            if (t instanceof NonTransientAiException)
+                return Category.CLIENT_ERROR;
+            if (t instanceof SocketTimeoutException || t instanceof TimeoutException)
+                return Category.TIMEOUT;
+            if (t instanceof WebClientRequestException || t instanceof ResourceAccessException || t instanceof IOException)
+                return Category.CONNECTION;
+        }
+        return Category.OTHER;
+    }
+
+    /**
+     * Gives the delay requested by the provider via {@code retry-after-ms} or {@code Retry-After}
+     * response headers.
+     *
+     * @param cause the failure
+     * @return the requested delay, if any
+     */
+    public static Optional<Duration> getRetryAfter(Throwable cause) {
+        var depth = 0;
+        for (var t = cause; t != null && depth < MAX_CAUSE_DEPTH; t = t.getCause(), depth++) {
+            var headers = (t instanceof WebClientResponseException wcre) ? wcre.getHeaders()
+                    : (t instanceof RestClientResponseException rcre) ? rcre.getResponseHeaders() : null;
+            if (headers != null)
+                return parseRetryAfter(headers);
+        }
+        return Optional.empty();
+    }
+
+    static Optional<Duration> parseRetryAfter(HttpHeaders headers) {
+        try {
+            var retryAfterMillis = headers.getFirst("retry-after-ms");
+            if (retryAfterMillis != null)
+                return Optional.of(Duration.ofMillis((long) Double.parseDouble(retryAfterMillis.trim())));
+
+            var retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+            if (retryAfter == null)
+                return Optional.empty();
+            if (StringUtils.isNumeric(retryAfter.trim()))
+                return Optional.of(Duration.ofSeconds(Long.parseLong(retryAfter.trim())));
+
+            var retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            var delay = Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt);
+            return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Integer> getStatusCode(Throwable t) {
+        if (t instanceof WebClientResponseException wcre)
+            return Optional.of(wcre.getStatusCode().value());
+        if (t instanceof RestClientResponseException rcre)
+            return Optional.of(rcre.getStatusCode().value());
+        if (t instanceof TransientAiException || t instanceof NonTransientAiException) {
+            // Spring AI reports HTTP errors as "<status> - <response body>"
+            var message = t.getMessage();
+            if (message != null && message.length() >= 3 && StringUtils.isNumeric(message.substring(0, 3)))
+                return Optional.of(Integer.parseInt(message.substring(0, 3)));
+        }
+        return Optional.empty();
+    }
+
     private static String getErrorResponseBody(Throwable cause) {
         var restEx = (cause instanceof WebClientResponseException wcre) ? wcre
                 : (cause.getCause() instanceof WebClientResponseException wcre) ? wcre : null;
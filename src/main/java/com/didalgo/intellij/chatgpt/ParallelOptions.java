@@ -5,7 +5,6 @@
 package com.didalgo.intellij.chatgpt;
 
 import com.didalgo.intellij.chatgpt.ui.GUIKit;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.ui.MessageType;
 
 import javax.swing.JComponent;
@@ -23,7 +22,7 @@ public class ParallelOptions {
             Runnable edtActionOnSuccess) {
 
         actionSource.setEnabled(false);
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        BlockingCallExecutor.getExecutor().execute(() -> {
             try {
                 targetAction.run();
                 SwingUtilities.invokeLater(() -> {
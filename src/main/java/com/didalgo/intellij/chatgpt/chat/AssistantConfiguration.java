@@ -20,6 +20,14 @@ public interface AssistantConfiguration {
 
     boolean isEnableStreamResponse();
 
+    /**
+     * Tells whether the server keeps the conversation, so that only the new messages need to be
+     * sent, continuing the {@linkplain ConversationState conversation state} of the last response.
+     */
+    default boolean isConversationStateOnServer() {
+        return false;
+    }
+
     default AssistantConfiguration withSystemPrompt(Supplier<String> systemPrompt) {
         return new ConfigurationPageProxy(this) {
             @Override
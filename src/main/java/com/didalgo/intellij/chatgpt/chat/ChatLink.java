@@ -4,13 +4,14 @@
  */
 package com.didalgo.intellij.chatgpt.chat;
 
+import com.didalgo.intellij.chatgpt.chat.client.RateLimitScheduler.Priority;
 import com.didalgo.intellij.chatgpt.text.TextContent;
 import com.didalgo.intellij.chatgpt.ui.tool.window.ChatToolWindow;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 public interface ChatLink {
 
@@ -27,7 +28,84 @@ public interface ChatLink {
 
     ConversationContext getConversationContext();
 
-    Future<?> pushMessage(String prompt, List<? extends TextContent> textContents);
+    /**
+     * Sends the message asynchronously. The message is composed on a pooled thread, and the response
+     * is delivered to the {@linkplain #addChatMessageListener listeners} as it arrives.
+     *
+     * @param prompt the user prompt
+     * @param textContents the text contents to attach to the prompt
+     * @return the future completed once the exchange is started
+     */
+    CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents);
+
+    /**
+     * Sends the message asynchronously, expecting a response of the given length.
+     *
+     * @param prompt the user prompt
+     * @param textContents the text contents to attach to the prompt
+     * @param responseLength the expected length of the response
+     * @return the future completed once the exchange is started
+     */
+    default CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents, ResponseLength responseLength) {
+        return pushMessage(prompt, textContents);
+    }
+
+    /**
+     * Sends the message asynchronously, expecting a response of the given length, and predicted
+     * to be mostly identical to the given output, e.g. the code to rewrite.
+     *
+     * @param prompt the user prompt
+     * @param textContents the text contents to attach to the prompt
+     * @param responseLength the expected length of the response
+     * @param predictedOutput the predicted response, or {@code null} if not known
+     * @return the future completed once the exchange is started
+     */
+    default CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents, ResponseLength responseLength, PredictedOutput predictedOutput) {
+        return pushMessage(prompt, textContents, responseLength, predictedOutput, null);
+    }
+
+    /**
+     * Sends the message asynchronously, like {@link #pushMessage(String, List, ResponseLength, PredictedOutput)},
+     * notifying also the given listener of the events of this exchange only.
+     *
+     * @param prompt the user prompt
+     * @param textContents the text contents to attach to the prompt
+     * @param responseLength the expected length of the response
+     * @param predictedOutput the predicted response, or {@code null} if not known
+     * @param exchangeListener the listener of the exchange, or {@code null} if none
+     * @return the future completed once the exchange is started
+     */
+    default CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents, ResponseLength responseLength,
+                                             PredictedOutput predictedOutput, ChatMessageListener exchangeListener) {
+        return pushMessage(prompt, textContents, responseLength, predictedOutput, exchangeListener, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Sends the message asynchronously, like {@link #pushMessage(String, List, ResponseLength, PredictedOutput, ChatMessageListener)},
+     * with the given priority of its requests when held back by the rate limits. The requests
+     * nobody waits for in the chat, e.g. of the editor actions, are sent in the background.
+     *
+     * @param prompt the user prompt
+     * @param textContents the text contents to attach to the prompt
+     * @param responseLength the expected length of the response
+     * @param predictedOutput the predicted response, or {@code null} if not known
+     * @param exchangeListener the listener of the exchange, or {@code null} if none
+     * @param priority the priority of the requests of the exchange
+     * @return the future completed once the exchange is started
+     */
+    CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents, ResponseLength responseLength,
+                                     PredictedOutput predictedOutput, ChatMessageListener exchangeListener, Priority priority);
+
+    /**
+     * Sends the message once the exchanges in progress complete.
+     *
+     * @param prompt the user prompt
+     * @param textContents the text contents to attach to the prompt
+     * @return the future completed once the message is queued
+     */
+    default CompletableFuture<?> queueMessage(String prompt, List<? extends TextContent> textContents) {
+        return pushMessage(prompt, textContents);
+    }
 
     void addChatMessageListener(ChatMessageListener listener);
 
@@ -4,25 +4,38 @@
  */
 package com.didalgo.intellij.chatgpt.chat;
 
+import com.didalgo.intellij.chatgpt.BlockingCallExecutor;
+import com.didalgo.intellij.chatgpt.chat.client.RateLimitScheduler.Priority;
 import com.didalgo.intellij.chatgpt.core.TextSubstitutor;
+import com.didalgo.intellij.chatgpt.event.ListenerList;
 import com.didalgo.intellij.chatgpt.text.TextContent;
 import com.didalgo.intellij.chatgpt.ui.prompt.context.DefaultInputContext;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.model.Media;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 
+import javax.swing.SwingUtilities;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
-public class ChatLinkService extends AbstractChatLink {
+public class ChatLinkService extends AbstractChatLink implements com.intellij.openapi.Disposable {
+
+    private static final Logger LOG = Logger.getInstance(ChatLinkService.class);
 
     private final Project project;
     private final InputContext inputContext;
     private final ConversationHandler conversationHandler;
     private final ChatLinkState conversationContext;
+    private final Disposable.Composite activeExchanges = Disposables.composite();
+    private final PromptQueue promptQueue = new PromptQueue();
+    // guarded by this
+    private CompletableFuture<?> lastStarted = CompletableFuture.completedFuture(null);
 
     public ChatLinkService(Project project, ConversationHandler engine, AssistantConfiguration configuration) {
         this.project = project;
@@ -48,37 +61,200 @@ public class ChatLinkService extends AbstractChatLink {
     }
 
     @Override
-    public Future<?> pushMessage(String prompt, List<? extends TextContent> textContents) {
-        return ApplicationManager.getApplication().executeOnPooledThread(() -> pushMessage(prompt, textContents, getInputContext()));
+    public CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents) {
+        return pushMessage(prompt, textContents, ResponseLength.STANDARD);
+    }
+
+    @Override
+    public CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents, ResponseLength responseLength) {
+        return pushMessage(prompt, textContents, responseLength, null, null);
+    }
+
+    @Override
+    public CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents, ResponseLength responseLength,
+                                            PredictedOutput predictedOutput, ChatMessageListener exchangeListener) {
+        return pushMessage(prompt, textContents, responseLength, predictedOutput, exchangeListener, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public synchronized CompletableFuture<?> pushMessage(String prompt, List<? extends TextContent> textContents, ResponseLength responseLength,
+                                                         PredictedOutput predictedOutput, ChatMessageListener exchangeListener, Priority priority) {
+        var inputContext = getInputContext();
+        // the exchanges may run concurrently, but they are started in the order the messages were pushed
+        var started = lastStarted.exceptionally(__ -> null)
+                .thenApplyAsync(__ -> composeMessage(prompt, textContents, inputContext)
+                        .map(responseLength::applyTo)
+                        .map(message -> (predictedOutput == null) ? message : predictedOutput.applyTo(message)), BlockingCallExecutor.getExecutor())
+                .thenCompose(message -> message.map(m -> startExchange(m, newExchange(), exchangeListener, priority)).orElseGet(() -> CompletableFuture.completedFuture(null)))
+                .whenComplete(ChatLinkService::logFailure);
+        lastStarted = started;
+        return started;
+    }
+
+    /**
+     * Composes the message right away, but sends it only after the exchanges in progress and
+     * the messages queued before it complete. The queued messages can be inspected and
+     * removed via {@link #getPromptQueue()}.
+     */
+    @Override
+    public synchronized CompletableFuture<?> queueMessage(String prompt, List<? extends TextContent> textContents) {
+        var inputContext = getInputContext();
+        var queued = lastStarted.exceptionally(__ -> null)
+                .thenApplyAsync(__ -> composeMessage(prompt, textContents, inputContext)
+                        .map(message -> new PromptQueue.Entry(prompt, message, countTokens(message))), BlockingCallExecutor.getExecutor())
+                .thenAccept(entry -> entry.ifPresent(promptQueue::add))
+                .thenRun(this::dispatchQueued)
+                .whenComplete(ChatLinkService::logFailure);
+        lastStarted = queued;
+        return queued;
     }
 
-    public void pushMessage(String prompt, List<? extends TextContent> textContents, InputContext inputContext) {
+    public PromptQueue getPromptQueue() {
+        return promptQueue;
+    }
+
+    private int countTokens(UserMessage message) {
+        return conversationContext.getModelType().getTokenizer().encode(message.getText()).size();
+    }
+
+    private static void logFailure(Object result, Throwable failure) {
+        if (failure != null)
+            LOG.warn("Cannot send the message", failure);
+    }
+
+    private Optional<UserMessage> composeMessage(String prompt, List<? extends TextContent> textContents, InputContext inputContext) {
         ChatMessageComposer composer = ApplicationManager.getApplication().getService(ChatMessageComposer.class);
-        List<TextContent> mergedCtx = mergeContext(textContents, inputContext);
+        List<TextContent> pinnedCtx = getPinnedTextContents(inputContext);
+        List<TextContent> mergedCtx = mergeContext(textContents, inputContext, pinnedCtx);
         List<Media> mediaList = getMediaAttachments(inputContext);
+        conversationContext.setPinnedTextContents(pinnedCtx);
         UserMessage message = composer.compose(conversationContext, prompt, mergedCtx, mediaList);
         if (message.getText().isEmpty()) {
+            return Optional.empty();
+        }
+
+        clearUnpinned(inputContext);
+        return Optional.of(message);
+    }
+
+    /**
+     * Removes the attachments sent with the message, keeping the pinned text attachments, which
+     * are sent with each message of the conversation.
+     */
+    private static void clearUnpinned(InputContext inputContext) {
+        var pinned = inputContext.getAttachments().stream().filter(ChatLinkService::isPinnedText).toList();
+        if (pinned.isEmpty()) {
+            inputContext.clear();
             return;
         }
+        for (var attachment : List.copyOf(inputContext.getAttachments()))
+            if (!pinned.contains(attachment))
+                inputContext.removeAttachment(attachment);
+    }
 
-        inputContext.clear();
+    private static boolean isPinnedText(PromptAttachment attachment) {
+        return attachment.isPinned() && attachment.getTextContentIfPresent().isPresent();
+    }
 
+    // the exchanges are counted under the lock of dispatchQueued(), so that its check-and-dispatch is atomic
+    private synchronized Disposable.Swap newExchange() {
+        var exchange = Disposables.swap();
+        activeExchanges.add(exchange);
+        return exchange;
+    }
+
+    private void endExchange(Disposable exchange) {
+        synchronized (this) {
+            activeExchanges.remove(exchange);
+        }
+        dispatchQueued();
+    }
+
+    /**
+     * Starts the exchange of the next queued message, unless an exchange is in progress.
+     */
+    private void dispatchQueued() {
+        PromptQueue.Entry next;
+        Disposable.Swap exchange;
+        synchronized (this) {
+            if (activeExchanges.isDisposed() || activeExchanges.size() > 0)
+                return;
+
+            var entry = promptQueue.poll();
+            if (entry.isEmpty())
+                return;
+
+            next = entry.get();
+            exchange = newExchange();
+        }
+        startExchange(next.message(), exchange, null, Priority.INTERACTIVE).whenComplete(ChatLinkService::logFailure);
+    }
+
+    /**
+     * Starts the exchange, without waiting for it to complete.
+     *
+     * @param message the message to send
+     * @param exchange the handle of the exchange, already counted as active
+     * @param exchangeListener the listener of this exchange only, or {@code null} if none
+     * @param priority the priority of the requests of the exchange
+     * @return the future completed with the exchange once it's subscribed, or with {@code null} if the exchange was aborted
+     */
+    private CompletableFuture<Disposable> startExchange(UserMessage message, Disposable.Swap exchange, ChatMessageListener exchangeListener, Priority priority) {
         ChatMessageListener listener = this.chatMessageListeners.fire();
-        ChatMessageEvent.Starting event = ChatMessageEvent.starting(this, message);
+        if (exchangeListener != null) {
+            var listeners = ListenerList.of(ChatMessageListener.class);
+            listeners.addListener(listener);
+            listeners.addListener(exchangeListener);
+            listener = listeners.fire();
+        }
+        ChatMessageEvent.Starting event = ChatMessageEvent.starting(this, message, priority);
         try {
             listener.exchangeStarting(event);
-            conversationHandler.push(conversationContext, event, listener);
         } catch (ChatExchangeAbortException ex) {
             listener.exchangeCancelled(event.cancelled());
             getConversationContext().setLastPostedCodeFragments(List.of());
-        } catch (Throwable x) {
-            listener.exchangeFailed(event.failed(x));
-            getConversationContext().setLastPostedCodeFragments(List.of());
-            x.printStackTrace();
+            endExchange(exchange);
+            return CompletableFuture.completedFuture(null);
         }
+
+        // listeners set up their UI for the exchange with invokeLater, so let it run before any response arrives
+        return CompletableFuture.runAsync(() -> {}, SwingUtilities::invokeLater)
+                .thenApply(__ -> subscribe(event, listener, exchange))
+                .whenComplete((__, failure) -> {
+                    if (failure != null) {
+                        listener.exchangeFailed(event.failed(failure));
+                        getConversationContext().setLastPostedCodeFragments(List.of());
+                        endExchange(exchange);
+                    }
+                });
+    }
+
+    private Disposable subscribe(ChatMessageEvent.Starting event, ChatMessageListener listener, Disposable.Swap exchange) {
+        exchange.update(conversationHandler.push(conversationContext, event, listener)
+                .subscribeOn(BlockingCallExecutor.getScheduler())
+                .doFinally(__ -> endExchange(exchange))
+                .subscribe(null, failure -> LOG.debug("Exchange ended with error", failure)));
+        return exchange;
+    }
+
+    /**
+     * Cancels the exchanges in progress. No more exchanges can be started afterwards.
+     */
+    @Override
+    public void dispose() {
+        activeExchanges.dispose();
+    }
+
+    private static List<TextContent> getPinnedTextContents(InputContext inputContext) {
+        List<TextContent> list = new ArrayList<>();
+        for (var attachment : inputContext.getAttachments())
+            if (attachment.isPinned())
+                attachment.getTextContentIfPresent().ifPresent(list::add);
+
+        return list;
     }
 
-    private static List<TextContent> mergeContext(List<? extends TextContent> textContents, InputContext inputContext) {
+    private static List<TextContent> mergeContext(List<? extends TextContent> textContents, InputContext inputContext, List<TextContent> pinnedCtx) {
         if (inputContext.getAttachments().isEmpty()) {
             return List.copyOf(textContents);
         }
@@ -86,11 +262,11 @@ public class ChatLinkService extends AbstractChatLink {
         List<TextContent> list = new ArrayList<>();
         Optional<TextContent> code;
         for (var contextEntry : inputContext.getAttachments())
-            if ((code = contextEntry.getTextContentIfPresent()).isPresent())
+            if (!contextEntry.isPinned() && (code = contextEntry.getTextContentIfPresent()).isPresent())
                 list.add(code.get());
 
         for (var codeFragment : textContents)
-            if (!list.contains(codeFragment))
+            if (!list.contains(codeFragment) && !pinnedCtx.contains(codeFragment))
                 list.add(codeFragment);
 
         return list;
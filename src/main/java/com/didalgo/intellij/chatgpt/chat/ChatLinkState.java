@@ -18,6 +18,7 @@ import org.springframework.ai.chat.messages.UserMessage;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Supplier;
 
 import static com.didalgo.intellij.chatgpt.chat.ChatMessageUtils.countTokens;
@@ -27,8 +28,10 @@ public class ChatLinkState implements ConversationContext {
 
     private final LinkedList<Message> chatMessages = new LinkedList<>();
     private volatile List<? extends TextContent> lastSentTextFragments = List.of();
+    private volatile List<? extends TextContent> pinnedTextContents = List.of();
     private volatile TextSubstitutor textSubstitutor = TextSubstitutor.NONE;
     private final AssistantConfiguration configuration;
+    private volatile String invalidatedResponseId;
 
 
     public ChatLinkState(AssistantConfiguration configuration) {
@@ -66,6 +69,20 @@ public class ChatLinkState implements ConversationContext {
         this.lastSentTextFragments = textContents;
     }
 
+    public List<? extends TextContent> getPinnedTextContents() {
+        return pinnedTextContents;
+    }
+
+    /**
+     * Sets the text contents of the pinned attachments, sent along with the system prompt ahead of
+     * the conversation history, instead of with the user messages, so that the prompts of the
+     * conversation start with the same prefix, which the providers cache.
+     */
+    public void setPinnedTextContents(List<? extends TextContent> textContents) {
+        Objects.requireNonNull(textContents);
+        this.pinnedTextContents = textContents;
+    }
+
     @Override
     public void addChatMessage(Message message) {
         synchronized (chatMessages) {
@@ -79,6 +96,14 @@ public class ChatLinkState implements ConversationContext {
         }
     }
 
+    @Override
+    public void addChatExchange(UserMessage userMessage, Message response) {
+        synchronized (chatMessages) {
+            addChatMessage(userMessage);
+            addChatMessage(response);
+        }
+    }
+
     @Override
     public ModelType getModelType() {
         return getModelConfiguration().getModelType();
@@ -86,31 +111,76 @@ public class ChatLinkState implements ConversationContext {
 
     @Override
     public List<Message> getChatMessages(ModelType model, UserMessage userMessage) {
+        if (getModelConfiguration().isConversationStateOnServer()) {
+            var chainedMessages = getChainedMessages(model, userMessage);
+            if (chainedMessages.isPresent())
+                return chainedMessages.get();
+        }
+
         var chatMessages = new LinkedList<Message>();
 
         // Add the system prompt appropriately
-        boolean hasSystemMessage = addSystemPrompt(model, chatMessages);
+        addSystemPrompt(model, chatMessages);
 
         // Add the rest of the messages
         synchronized (this.chatMessages) {
             if (!this.chatMessages.isEmpty())
                 chatMessages.addAll(this.chatMessages);
+            chatMessages.add(userMessage);
 
             // Substitute template placeholders
             substitutePlaceholders(chatMessages);
 
-            // Trim messages if exceeding token limit
-            int maxTokens = model.getInputTokenLimit();
+            // Trim messages if exceeding token limit, keeping room for the expected response
+            int tokenLimit = model.getInputTokenLimit() - ResponseLength.of(userMessage).getReservedTokens(model);
             var tokenizer = model.getTokenizer();
             var chatFormatDescriptor = model.getChatFormatDescriptor();
-            int removed = dropOldestMessagesToStayWithinTokenLimit(chatMessages, maxTokens, tokenizer, chatFormatDescriptor);
+            int removed = dropOldestMessagesToStayWithinTokenLimit(chatMessages, tokenLimit, tokenizer, chatFormatDescriptor);
+            // the system prompt and the user message aren't part of the history
             while (removed-- > 0)
-                this.chatMessages.remove(hasSystemMessage ? 1 : 0);
+                this.chatMessages.removeFirst();
 
             return chatMessages;
         }
     }
 
+    /**
+     * Gives the messages continuing the conversation kept by the server up to the last response:
+     * the system prompt, not kept by the server, and the user message.
+     *
+     * @return the messages, or empty if the whole conversation has to be sent, as the history
+     *         was cleared, the model was switched, or the history would have to be trimmed
+     */
+    private Optional<List<Message>> getChainedMessages(ModelType model, UserMessage userMessage) {
+        ConversationState state;
+        synchronized (this.chatMessages) {
+            state = this.chatMessages.isEmpty() ? null : ConversationState.of(this.chatMessages.getLast()).orElse(null);
+        }
+        if (state == null || state.responseId().equals(invalidatedResponseId) || !state.model().equals(model.id()))
+            return Optional.empty();
+
+        var chatMessages = new LinkedList<Message>();
+        addSystemPrompt(model, chatMessages);
+        chatMessages.add(state.chain(userMessage));
+        substitutePlaceholders(chatMessages);
+
+        // only the new messages are tokenized, the conversation is counted by the server
+        int tokenLimit = model.getInputTokenLimit() - ResponseLength.of(userMessage).getReservedTokens(model);
+        int newTokens = countTokens(chatMessages, model.getTokenizer(), model.getChatFormatDescriptor());
+        if (state.contextTokens() + newTokens > tokenLimit)
+            return Optional.empty();
+
+        return Optional.of(chatMessages);
+    }
+
+    @Override
+    public void invalidateConversationState() {
+        synchronized (chatMessages) {
+            if (!chatMessages.isEmpty())
+                ConversationState.of(chatMessages.getLast()).ifPresent(state -> invalidatedResponseId = state.responseId());
+        }
+    }
+
     private boolean addSystemPrompt(ModelType model, List<Message> messages) {
         String systemPrompt = createSystemPrompt();
         if (systemPrompt != null && !systemPrompt.isBlank()) {
@@ -122,12 +192,19 @@ public class ChatLinkState implements ConversationContext {
 
     private String createSystemPrompt() {
         var systemPrompt = getSystemPrompt().get();
+        var pinnedTextContents = this.pinnedTextContents;
         if (systemPrompt == null || systemPrompt.isBlank())
-            return null;
+            return pinnedTextContents.isEmpty() ? null : composePinned(pinnedTextContents);
 
-        return systemPrompt.stripTrailing()
+        systemPrompt = systemPrompt.stripTrailing()
                 + "\n\nCurrent IDE: " + ApplicationInfo.getInstance().getFullApplicationName()
                 + "\nOS: " + System.getProperty("os.name");
+        return pinnedTextContents.isEmpty() ? systemPrompt : systemPrompt + "\n\n" + composePinned(pinnedTextContents);
+    }
+
+    private static String composePinned(List<? extends TextContent> pinnedTextContents) {
+        return "The user pinned the following context for the whole conversation:\n\n"
+                + ChatMessageUtils.composeAll("", pinnedTextContents).stripTrailing();
     }
 
 
@@ -143,10 +220,7 @@ public class ChatLinkState implements ConversationContext {
         ChatMessageUtils.substitutePlaceholders(chatMessages, getTextSubstitutor());
     }
 
-    public int dropOldestMessagesToStayWithinTokenLimit(List<Message> messages, int maxTokens, GPT3Tokenizer tokenizer, ChatFormatDescriptor formatDescriptor) {
-        // here we assume ratio at most 2/3 available tokens for input prompt with context history,
-        // and at least 1/3 tokens for output
-        int tokenLimit = maxTokens/3*2;
+    public int dropOldestMessagesToStayWithinTokenLimit(List<Message> messages, int tokenLimit, GPT3Tokenizer tokenizer, ChatFormatDescriptor formatDescriptor) {
         int tokenCount;
         int removed = 0;
         boolean hasSystemMessage = !messages.isEmpty() && isRoleSystem(messages.get(0));
@@ -176,6 +250,7 @@ public class ChatLinkState implements ConversationContext {
     @Override
     public void clear() {
         chatMessages.clear();
+        invalidatedResponseId = null;
         setLastPostedCodeFragments(List.of());
     }
 }
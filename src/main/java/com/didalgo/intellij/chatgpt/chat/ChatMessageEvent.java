@@ -4,13 +4,18 @@
  */
 package com.didalgo.intellij.chatgpt.chat;
 
+import com.didalgo.intellij.chatgpt.chat.client.RateLimitScheduler.Priority;
 import org.reactivestreams.Subscription;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Objects.requireNonNull;
 
@@ -53,15 +58,51 @@ public abstract class ChatMessageEvent extends EventObject {
         return new Starting(source, userMessage);
     }
 
+    public static Starting starting(ChatLink source, UserMessage userMessage, Priority priority) {
+        return new Starting(source, userMessage, priority);
+    }
+
 
     public static class Starting extends ChatMessageEvent {
+        private static final AtomicLong exchangeIds = new AtomicLong();
+        private final long exchangeId;
+        private final Priority priority;
 
         protected Starting(ChatLink source, UserMessage userMessage) {
-            super(source, userMessage);
+            this(source, userMessage, Priority.INTERACTIVE);
+        }
+
+        protected Starting(ChatLink source, UserMessage userMessage, Priority priority) {
+            this(source, userMessage, exchangeIds.incrementAndGet(), priority);
         }
 
         protected Starting(Starting sourceEvent) {
-            this(sourceEvent.getChatLink(), sourceEvent.getUserMessage());
+            this(sourceEvent.getChatLink(), sourceEvent.getUserMessage(), sourceEvent.getExchangeId(), sourceEvent.getPriority());
+        }
+
+        private Starting(ChatLink source, UserMessage userMessage, long exchangeId, Priority priority) {
+            super(source, userMessage);
+            this.exchangeId = exchangeId;
+            this.priority = requireNonNull(priority, "priority");
+        }
+
+        /**
+         * Returns the identifier of the exchange, shared by all the events derived from
+         * the event which started the exchange.
+         *
+         * @return the exchange identifier
+         */
+        public final long getExchangeId() {
+            return exchangeId;
+        }
+
+        /**
+         * Returns the priority of the requests of the exchange, when held back by the rate limits.
+         *
+         * @return the request priority
+         */
+        public final Priority getPriority() {
+            return priority;
         }
 
         public Started started(Subscription subscription) {
@@ -97,29 +138,68 @@ public abstract class ChatMessageEvent extends EventObject {
 
     public static class Started extends Starting {
         private volatile Subscription subscription;
+        private final AssistantType respondingAssistant;
 
         protected Started(Started sourceEvent) {
-            this(sourceEvent, sourceEvent.getSubscription());
+            this(sourceEvent, sourceEvent.getSubscription(), sourceEvent.respondingAssistant);
         }
 
         protected Started(Starting sourceEvent, Subscription subscription) {
+            this(sourceEvent, subscription, null);
+        }
+
+        protected Started(Starting sourceEvent, Subscription subscription, AssistantType respondingAssistant) {
             super(sourceEvent);
             this.subscription = subscription;
+            this.respondingAssistant = respondingAssistant;
         }
 
         public final Subscription getSubscription() {
             return subscription;
         }
 
-        public ResponseArriving responseArriving(ChatResponse responseChunk, List<Generation> partialResponseChoices) {
+        /**
+         * Returns the assistant which produced the response, once known. When the request
+         * was hedged, this is the assistant whose response arrived first.
+         *
+         * @return the responding assistant, or empty if no response arrived yet
+         */
+        public final Optional<AssistantType> getRespondingAssistant() {
+            return Optional.ofNullable(respondingAssistant);
+        }
+
+        public Started respondedBy(AssistantType assistantType) {
+            requireNonNull(assistantType, "assistantType");
+            return new Started(this, getSubscription(), assistantType);
+        }
+
+        public Waiting waiting(int queueDepth, Duration expectedWait) {
+            requireNonNull(expectedWait, "expectedWait");
+            return new Waiting(this, queueDepth, expectedWait);
+        }
+
+        public DraftArriving draftArriving(AssistantType draftAssistant, CharSequence draftText) {
+            requireNonNull(draftAssistant, "draftAssistant");
+            requireNonNull(draftText, "draftText");
+            return new DraftArriving(this, draftAssistant, draftText);
+        }
+
+        public ResponseArriving responseArriving(ChatResponse responseChunk, String delta, CharSequence partialText) {
             requireNonNull(responseChunk, "responseChunk");
-            requireNonNull(partialResponseChoices, "partialResponseChoices");
-            return new ResponseArriving(this, responseChunk, partialResponseChoices);
+            requireNonNull(delta, "delta");
+            requireNonNull(partialText, "partialText");
+            return new ResponseArriving(this, responseChunk, delta, partialText);
         }
 
         public ResponseArrived responseArrived(ChatResponse response) {
             requireNonNull(response.getResults(), "responseChoices");
-            return new ResponseArrived(this, response);
+            return new ResponseArrived(this, response, null);
+        }
+
+        public ResponseArrived truncatedByGuard(ChatResponse response, String reason) {
+            requireNonNull(response.getResults(), "responseChoices");
+            requireNonNull(reason, "reason");
+            return new ResponseArrived(this, response, reason);
         }
     }
 
@@ -142,31 +222,161 @@ public abstract class ChatMessageEvent extends EventObject {
         }
     }
 
+    public static class Waiting extends Started {
+        private final int queueDepth;
+        private final Duration expectedWait;
+
+        protected Waiting(Started sourceEvent, int queueDepth, Duration expectedWait) {
+            super(sourceEvent);
+            this.queueDepth = queueDepth;
+            this.expectedWait = expectedWait;
+        }
+
+        /**
+         * Returns the number of the requests to the endpoint held back by its rate limits.
+         *
+         * @return the number of the waiting requests
+         */
+        public final int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Returns the estimated time until the endpoint accepts requests again.
+         *
+         * @return the expected waiting time
+         */
+        public final Duration getExpectedWait() {
+            return expectedWait;
+        }
+    }
+
+    public static class DraftArriving extends Started {
+        private final AssistantType draftAssistant;
+        private final CharSequence draftText;
+
+        protected DraftArriving(Started sourceEvent, AssistantType draftAssistant, CharSequence draftText) {
+            super(sourceEvent);
+            this.draftAssistant = draftAssistant;
+            this.draftText = draftText;
+        }
+
+        /**
+         * Returns the assistant producing the draft.
+         *
+         * @return the draft assistant
+         */
+        public final AssistantType getDraftAssistant() {
+            return draftAssistant;
+        }
+
+        /**
+         * Returns a read-only view of the whole draft text received so far.
+         *
+         * @return the draft text
+         */
+        public final CharSequence getDraftText() {
+            return draftText;
+        }
+    }
+
     public static class ResponseArriving extends Started {
         private final ChatResponse responseChunk;
-        private final List<Generation> partialResponseChoices;
+        private final String delta;
+        private final CharSequence partialText;
 
-        protected ResponseArriving(Started sourceEvent, ChatResponse responseChunk, List<Generation> partialResponseChoices) {
+        protected ResponseArriving(Started sourceEvent, ChatResponse responseChunk, String delta, CharSequence partialText) {
             super(sourceEvent);
             this.responseChunk = responseChunk;
-            this.partialResponseChoices = partialResponseChoices;
+            this.delta = delta;
+            this.partialText = partialText;
         }
 
         public final ChatResponse getResponseChunk() {
             return responseChunk;
         }
 
-        public final List<Generation> getPartialResponseChoices() {
-            return partialResponseChoices;
+        /**
+         * Returns the text appended to the response by this event only.
+         *
+         * @return the newly arrived text fragment
+         */
+        public final String getDelta() {
+            return delta;
+        }
+
+        /**
+         * Returns a read-only view of the whole response text received so far.
+         * The view is not modified by later chunks.
+         *
+         * @return the partial response text
+         */
+        public final CharSequence getPartialText() {
+            return partialText;
+        }
+
+        /**
+         * Materializes the partial response text as a list of generations.
+         * Prefer {@link #getPartialText()}, which doesn't copy the response text.
+         *
+         * @return the partial response choices
+         */
+        public List<Generation> getPartialResponseChoices() {
+            return List.of(new Generation(new AssistantMessage(partialText.toString())));
         }
     }
 
     public static class ResponseArrived extends Started {
         private final ChatResponse response;
+        private final String truncationReason;
+        private final int continuationRounds;
+        private final Usage continuationUsage;
 
-        protected ResponseArrived(Started sourceEvent, ChatResponse response) {
+        protected ResponseArrived(Started sourceEvent, ChatResponse response, String truncationReason) {
+            this(sourceEvent, response, truncationReason, 0, null);
+        }
+
+        protected ResponseArrived(Started sourceEvent, ChatResponse response, String truncationReason, int continuationRounds, Usage continuationUsage) {
             super(sourceEvent);
             this.response = response;
+            this.truncationReason = truncationReason;
+            this.continuationRounds = continuationRounds;
+            this.continuationUsage = continuationUsage;
+        }
+
+        public ResponseArrived continued(int continuationRounds, Usage continuationUsage) {
+            requireNonNull(continuationUsage, "continuationUsage");
+            return new ResponseArrived(this, response, truncationReason, continuationRounds, continuationUsage);
+        }
+
+        /**
+         * Returns the number of times the response, cut off by the output token limit, was
+         * automatically continued.
+         *
+         * @return the number of continuation requests
+         */
+        public final int getContinuationRounds() {
+            return continuationRounds;
+        }
+
+        /**
+         * Returns the tokens used by all the continuation requests. When continued, the
+         * metadata of the response is that of the last continuation request.
+         *
+         * @return the usage of the continuation requests, or empty if not continued
+         */
+        public final Optional<Usage> getContinuationUsage() {
+            return Optional.ofNullable(continuationUsage);
+        }
+
+        /**
+         * Returns the reason the response was stopped early, when found degenerate,
+         * e.g. repeating itself.
+         *
+         * @return the truncation reason, or empty if the response completed on its own
+         */
+        public final Optional<String> getTruncationReason() {
+            return Optional.ofNullable(truncationReason);
         }
 
         public final ChatResponse getResponse() {
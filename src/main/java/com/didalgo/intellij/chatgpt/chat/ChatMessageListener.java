@@ -10,6 +10,16 @@ public interface ChatMessageListener {
 
     void exchangeStarted(ChatMessageEvent.Started event);
 
+    /**
+     * Called when the request is held back to stay within the rate limits of the endpoint.
+     */
+    default void exchangeWaiting(ChatMessageEvent.Waiting event) { }
+
+    /**
+     * Called when a draft of the response arrives, before the response itself starts arriving.
+     */
+    default void draftArriving(ChatMessageEvent.DraftArriving event) { }
+
     void responseArriving(ChatMessageEvent.ResponseArriving event);
 
     void responseArrived(ChatMessageEvent.ResponseArrived event);
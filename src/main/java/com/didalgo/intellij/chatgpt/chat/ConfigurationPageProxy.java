@@ -43,4 +43,9 @@ class ConfigurationPageProxy implements AssistantConfiguration {
     public boolean isEnableStreamResponse() {
         return getDelegate().isEnableStreamResponse();
     }
+
+    @Override
+    public boolean isConversationStateOnServer() {
+        return getDelegate().isConversationStateOnServer();
+    }
 }
@@ -23,7 +23,28 @@ public interface ConversationContext {
 
     void addChatMessage(Message message);
 
+    /**
+     * Records a completed exchange in the conversation history. The user message and the
+     * response are added together, so that the exchanges running concurrently in the same
+     * conversation are recorded in the order of their completion, each one as a whole.
+     *
+     * @param userMessage the message sent
+     * @param response the response received
+     */
+    void addChatExchange(UserMessage userMessage, Message response);
+
     ModelType getModelType();
 
+    /**
+     * Gives the messages to send for the given user message: the system prompt, the
+     * conversation history trimmed to fit the model's context window, and the user message.
+     */
     List<Message> getChatMessages(ModelType model, UserMessage userMessage);
+
+    /**
+     * Makes the next message be sent along with the whole conversation history, as the
+     * {@linkplain ConversationState conversation kept by the server} can't be continued, e.g.
+     * after a request continuing it failed.
+     */
+    default void invalidateConversationState() { }
 }
@@ -4,11 +4,20 @@
  */
 package com.didalgo.intellij.chatgpt.chat;
 
-import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 
 @FunctionalInterface
 public interface ConversationHandler {
 
-    Disposable push(ConversationContext ctx, ChatMessageEvent.Starting event, ChatMessageListener listener);
+    /**
+     * Prepares the exchange started by the given event. Nothing is sent until the returned
+     * {@code Flux} is subscribed, and the exchange is cancelled by cancelling the subscription.
+     *
+     * @param ctx the conversation context
+     * @param event the event starting the exchange
+     * @param listener the listener to notify about the progress of the exchange
+     * @return the lazy exchange
+     */
+    Flux<?> push(ConversationContext ctx, ChatMessageEvent.Starting event, ChatMessageListener listener);
 
 }
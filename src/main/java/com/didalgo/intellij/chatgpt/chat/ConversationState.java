@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.HashMap;
+import java.util.Optional;
+
+/**
+ * The conversation kept by the server up to a response, so that the next message can be sent
+ * alone, referring to the response, instead of along with the whole conversation history.
+ * <p>
+ * The state is reported by the chat models keeping the conversations with the response metadata,
+ * and is kept with the response in the conversation history. The message sent as the continuation
+ * of the conversation carries the {@linkplain #chain(UserMessage) ID of the previous response}.
+ *
+ * @param responseId the ID of the response, referred to by the next message
+ * @param model the model which produced the response
+ * @param contextTokens the number of tokens in the conversation kept by the server
+ */
+public record ConversationState(String responseId, String model, int contextTokens) {
+
+    public static final String METADATA_KEY = "conversationState";
+    private static final String PREVIOUS_RESPONSE_ID_KEY = "previousResponseId";
+
+    /**
+     * Gives the conversation state reported with the response.
+     */
+    public static Optional<ConversationState> of(ChatResponseMetadata metadata) {
+        return (metadata != null && metadata.get(METADATA_KEY) instanceof ConversationState state) ? Optional.of(state) : Optional.empty();
+    }
+
+    /**
+     * Gives the conversation state kept with the response in the conversation history.
+     */
+    public static Optional<ConversationState> of(Message message) {
+        return (message.getMetadata().get(METADATA_KEY) instanceof ConversationState state) ? Optional.of(state) : Optional.empty();
+    }
+
+    /**
+     * Copies the response with this conversation state.
+     */
+    public AssistantMessage applyTo(AssistantMessage message) {
+        var metadata = new HashMap<>(message.getMetadata());
+        metadata.put(METADATA_KEY, this);
+        return new AssistantMessage(message.getText(), metadata);
+    }
+
+    /**
+     * Copies the message, marked as the continuation of the conversation up to this response.
+     */
+    public UserMessage chain(UserMessage message) {
+        var metadata = new HashMap<>(message.getMetadata());
+        metadata.put(PREVIOUS_RESPONSE_ID_KEY, responseId);
+        return new UserMessage(message.getText(), message.getMedia(), metadata);
+    }
+
+    /**
+     * Gives the ID of the previous response the prompt continues the conversation from.
+     *
+     * @return the ID carried by the first user message of the prompt marked as the continuation
+     *         of a conversation, or empty if the prompt carries the whole conversation
+     */
+    public static Optional<String> previousResponseId(Prompt prompt) {
+        for (var message : prompt.getInstructions())
+            if (message instanceof UserMessage && message.getMetadata().get(PREVIOUS_RESPONSE_ID_KEY) instanceof String id)
+                return Optional.of(id);
+        return Optional.empty();
+    }
+}
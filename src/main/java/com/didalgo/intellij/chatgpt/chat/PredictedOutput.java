@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import com.didalgo.intellij.chatgpt.text.CodeFragment;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.HashMap;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The response expected to a message, such as the original code of a request to rewrite it,
+ * when the response is going to be mostly identical to it.
+ * <p>
+ * The models supporting the predicted outputs produce the parts of the response matching the
+ * prediction much faster. The parts not matching it are billed as the rejected prediction tokens,
+ * so the prediction is given only with the messages rewriting the code they carry.
+ *
+ * @param content the predicted content of the response
+ */
+public record PredictedOutput(String content) {
+
+    private static final String METADATA_KEY = "predictedOutput";
+
+    public PredictedOutput {
+        requireNonNull(content, "content");
+    }
+
+    /**
+     * Predicts the response to be the rewritten code.
+     */
+    public static PredictedOutput of(CodeFragment code) {
+        return new PredictedOutput(code.content());
+    }
+
+    /**
+     * Gives the response predicted for the message.
+     *
+     * @return the prediction stored with the message, if any
+     */
+    public static Optional<PredictedOutput> of(Message message) {
+        return (message.getMetadata().get(METADATA_KEY) instanceof PredictedOutput prediction) ? Optional.of(prediction) : Optional.empty();
+    }
+
+    /**
+     * Copies the message with this response predicted.
+     */
+    public UserMessage applyTo(UserMessage message) {
+        var metadata = new HashMap<>(message.getMetadata());
+        metadata.put(METADATA_KEY, this);
+        return new UserMessage(message.getText(), message.getMedia(), metadata);
+    }
+
+    @Override
+    public String toString() {
+        return "PredictedOutput[" + content.length() + " chars]";
+    }
+}
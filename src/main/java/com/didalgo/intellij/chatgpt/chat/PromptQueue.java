@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import com.didalgo.intellij.chatgpt.event.ListenerList;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The messages submitted to a conversation while its previous exchange is still in
+ * progress. The messages are composed, and their tokens counted, when submitted, so that
+ * the next one can be sent as soon as the exchange in progress completes.
+ */
+public class PromptQueue {
+
+    /**
+     * A queued message.
+     *
+     * @param prompt the prompt as typed by the user
+     * @param message the message composed from the prompt
+     * @param tokenCount the number of tokens in the message
+     */
+    public record Entry(String prompt, UserMessage message, int tokenCount) { }
+
+    public interface Listener {
+
+        void promptQueued(Entry entry);
+
+        void promptDequeued(Entry entry);
+    }
+
+    private final ListenerList<Listener> listeners = ListenerList.of(Listener.class);
+    // guarded by this
+    private final List<Entry> entries = new ArrayList<>();
+
+    public void add(Entry entry) {
+        synchronized (this) {
+            entries.add(entry);
+        }
+        listeners.fire().promptQueued(entry);
+    }
+
+    public boolean remove(Entry entry) {
+        boolean removed;
+        synchronized (this) {
+            removed = entries.remove(entry);
+        }
+        if (removed)
+            listeners.fire().promptDequeued(entry);
+        return removed;
+    }
+
+    public Optional<Entry> poll() {
+        Entry entry;
+        synchronized (this) {
+            if (entries.isEmpty())
+                return Optional.empty();
+            entry = entries.remove(0);
+        }
+        listeners.fire().promptDequeued(entry);
+        return Optional.of(entry);
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return List.copyOf(entries);
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addListener(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.removeListener(listener);
+    }
+}
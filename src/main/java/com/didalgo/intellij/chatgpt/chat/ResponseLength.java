@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import com.didalgo.intellij.chatgpt.chat.models.ModelType;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.HashMap;
+
+/**
+ * The length of the response expected to a message, deciding how many tokens of the context
+ * window of the model are left for the response.
+ * <p>
+ * The response is given at least {@link #getReservedTokens reserved tokens} of the context
+ * window, evicting the oldest messages of the conversation if needed, and at most {@link
+ * #getTargetTokens target tokens}, if the prompt leaves enough room for them.
+ */
+public enum ResponseLength {
+    /** Explanations and other answers in prose. */
+    SHORT(1024),
+    /** General chat. */
+    STANDARD(4096),
+    /** Rewritten or generated code, e.g. optimizations and tests. */
+    LONG(Integer.MAX_VALUE);
+
+    private static final String METADATA_KEY = "responseLength";
+    private static final int MIN_OUTPUT_TOKENS = 256;
+
+    private final int targetTokens;
+
+    ResponseLength(int targetTokens) {
+        this.targetTokens = targetTokens;
+    }
+
+    public int getTargetTokens() {
+        return targetTokens;
+    }
+
+    /**
+     * Gives the number of tokens of the context window kept for the response, when trimming the
+     * conversation history: the target, but no more than a third of the context window.
+     */
+    public int getReservedTokens(ModelType model) {
+        return Math.min(Math.min(targetTokens, model.getOutputTokenLimit()), model.getInputTokenLimit() / 3);
+    }
+
+    /**
+     * Gives the number of tokens the response may have.
+     *
+     * @param model the model responding
+     * @param promptTokens the number of tokens in the prompt
+     * @return the maximum number of tokens in the response
+     */
+    public int getOutputTokenBudget(ModelType model, int promptTokens) {
+        // the prompt tokens are counted exactly for the OpenAI models only, hence the margin
+        int remaining = model.getInputTokenLimit() - promptTokens - promptTokens / 10;
+        int budget = Math.min(Math.min(targetTokens, model.getOutputTokenLimit()), remaining);
+        return Math.max(budget, MIN_OUTPUT_TOKENS);
+    }
+
+    /**
+     * Gives the response length expected to the message.
+     *
+     * @return the response length stored with the message, or {@link #STANDARD}
+     */
+    public static ResponseLength of(Message message) {
+        return (message.getMetadata().get(METADATA_KEY) instanceof ResponseLength length) ? length : STANDARD;
+    }
+
+    /**
+     * Copies the message with this response length expected.
+     */
+    public UserMessage applyTo(UserMessage message) {
+        var metadata = new HashMap<>(message.getMetadata());
+        metadata.put(METADATA_KEY, this);
+        return new UserMessage(message.getText(), message.getMedia(), metadata);
+    }
+}
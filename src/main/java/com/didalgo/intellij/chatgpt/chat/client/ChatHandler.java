@@ -4,97 +4,593 @@
  */
 package com.didalgo.intellij.chatgpt.chat.client;
 
+import com.didalgo.intellij.chatgpt.BlockingCallExecutor;
+import com.didalgo.intellij.chatgpt.Errors;
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
 import com.didalgo.intellij.chatgpt.chat.ChatMessageEvent;
+import com.didalgo.intellij.chatgpt.chat.ChatMessageUtils;
 import com.didalgo.intellij.chatgpt.chat.ChatMessageListener;
 import com.didalgo.intellij.chatgpt.chat.ConversationContext;
+import com.didalgo.intellij.chatgpt.chat.ConversationState;
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
+import com.didalgo.intellij.chatgpt.chat.metadata.ImmutableUsage;
+import com.didalgo.intellij.chatgpt.chat.metadata.PredictionUsage;
+import com.didalgo.intellij.chatgpt.chat.metadata.RateLimitHeaders;
+import com.didalgo.intellij.chatgpt.chat.models.ModelFamily;
 import com.didalgo.intellij.chatgpt.chat.models.ModelType;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import com.didalgo.intellij.chatgpt.text.AppendOnlyText;
 import com.intellij.openapi.diagnostic.Logger;
 import org.apache.commons.lang3.StringUtils;
 import org.reactivestreams.Subscription;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.EmptyRateLimit;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
-import java.util.*;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class ChatHandler {
 
     private static final Logger LOG = Logger.getInstance(ChatHandler.class);
 
+    public static final String CONTINUATION_PROMPT = "Your previous response was cut off by the length limit."
+            + " Continue it exactly where it stopped, without repeating anything and without any introduction.";
+    private static final int MIN_CONTINUATION_TOKENS = 256;
+
+    private final Map<EndpointKey, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final Map<EndpointKey, RateLimitScheduler> rateLimitSchedulers = new ConcurrentHashMap<>();
+    private final Map<PromptFingerprint, Flux<AssistantResponse>> inFlightRequests = new ConcurrentHashMap<>();
+
     public Flux<?> handle(ConversationContext ctx, ChatMessageEvent.Initiating event, ChatMessageListener listener) {
-        var modelType = ctx.getModelType();
-        var chatClient = ChatClientHolder.getChatClient(ctx.getAssistantType());
-        var flowHandler = new ChatCompletionHandler(listener);
+        return handle(ctx, event, listener, event.getPriority());
+    }
+
+    public Flux<?> handle(ConversationContext ctx, ChatMessageEvent.Initiating event, ChatMessageListener listener, RateLimitScheduler.Priority priority) {
+        var settings = GeneralSettings.getInstance();
+        var flowHandler = new ChatCompletionHandler(listener, StreamCoalescingPolicy.fromSettings(settings),
+                RepetitionGuardPolicy.fromSettings(settings, ctx.getAssistantType()));
         var prompt = event.getPrompt()
-                .map(prmpt -> maybeOverrideChatOptions(modelType, prmpt))
                 .orElseThrow(() -> new IllegalArgumentException("Prompt is required"));
 
+        // the other assistants can't see the conversation kept by the server, so can't be hedged to, nor drafted with
+        var chained = ConversationState.previousResponseId(prompt).isPresent();
+        var hedgingPolicy = HedgingPolicy.fromSettings(settings, ctx.getAssistantType());
+        var scheduling = new Scheduling(settings, priority, flowHandler.onWaiting());
+        var responses = shared(ctx.getAssistantType(), ctx.getModelType(), prompt, scheduling);
+        if (hedgingPolicy.isEnabled() && !chained) {
+            var secondaryAssistant = hedgingPolicy.secondaryAssistant();
+            var secondaryResponses = shared(secondaryAssistant, settings.getAssistantOptions(secondaryAssistant).getModelType(), prompt, scheduling);
+            responses = hedgingPolicy.hedge(responses, secondaryResponses);
+        }
+        responses = continued(responses, ctx, prompt, scheduling, flowHandler, settings.getMaxContinuations());
+
+        var draftPolicy = chained ? DraftPreviewPolicy.NONE : DraftPreviewPolicy.fromSettings(settings, ctx.getAssistantType());
+        var primaryResponding = Sinks.empty();
+        if (draftPolicy.isEnabled())
+            responses = responses
+                    .doOnNext(__ -> primaryResponding.tryEmitEmpty())
+                    .doFinally(__ -> primaryResponding.tryEmitEmpty());
+
+        // stops the request upstream of the handlers, so that the truncated response completes normally
+        var primary = responses
+                .takeUntil(__ -> flowHandler.isStoppedByGuard())
+                .doOnSubscribe(flowHandler.onSubscribe(event))
+                .doOnError(flowHandler.onError(ctx))
+                .doOnError(__ -> {
+                    if (chained)
+                        ctx.invalidateConversationState();
+                })
+                .doOnComplete(flowHandler.onComplete(ctx))
+                .doOnCancel(flowHandler.onCancel(ctx))
+                .doOnNext(flowHandler.onNextResponse());
+        if (!draftPolicy.isEnabled())
+            return primary;
+
+        var draftAssistant = draftPolicy.draftAssistant();
+        var draft = shared(draftAssistant, settings.getAssistantOptions(draftAssistant).getModelType(), prompt,
+                new Scheduling(settings, RateLimitScheduler.Priority.BACKGROUND, __ -> { }))
+                .takeUntilOther(primaryResponding.asMono())
+                .doOnNext(flowHandler.onNextDraft())
+                .onErrorResume(cause -> {
+                    LOG.info("Draft preview from " + draftAssistant.displayName() + " failed (" + Errors.classify(cause) + ")");
+                    return Flux.empty();
+                })
+                .then();
+        return Flux.<Object>merge(primary, draft);
+    }
+
+    /**
+     * Continues the response cut off by the output token limit, by asking the assistant which
+     * responded to go on from where it stopped, at most {@code maxContinuations} times. The
+     * continued response is appended to the same response text.
+     */
+    private Flux<AssistantResponse> continued(Flux<AssistantResponse> responses, ConversationContext ctx, Prompt prompt,
+                                              Scheduling scheduling, ChatCompletionHandler flowHandler, int maxContinuations) {
+        if (maxContinuations <= 0)
+            return responses;
+
+        return responses.concatWith(Flux.defer(() -> {
+            if (!flowHandler.isTruncatedByLength() || flowHandler.isStoppedByGuard())
+                return Flux.empty();
+
+            var assistantType = flowHandler.getRespondingAssistant().orElse(ctx.getAssistantType());
+            var modelType = assistantType.equals(ctx.getAssistantType())
+                    ? ctx.getModelType() : scheduling.settings().getAssistantOptions(assistantType).getModelType();
+            var continuation = continuationPrompt(modelType, prompt, flowHandler.beginContinuation());
+            if (continuation.isEmpty()) {
+                LOG.info("Cannot continue the response, as the context window of " + modelType.id() + " is full");
+                return Flux.empty();
+            }
+            return continued(shared(assistantType, modelType, continuation.get(), scheduling),
+                    ctx, prompt, scheduling, flowHandler, maxContinuations - 1);
+        }));
+    }
+
+    /**
+     * Builds the prompt asking to continue the partial response, with the output token budget
+     * fitted into what's left of the context window.
+     *
+     * @return the continuation prompt, or empty if there's no room left for the continuation
+     */
+    static Optional<Prompt> continuationPrompt(ModelType modelType, Prompt prompt, String partialResponse) {
+        var messages = new ArrayList<Message>(prompt.getInstructions());
+        messages.add(new AssistantMessage(partialResponse));
+        messages.add(new UserMessage(CONTINUATION_PROMPT));
+
+        var options = prompt.getOptions();
+        if (options == null || options.getMaxTokens() == null)
+            return Optional.of(new Prompt(messages, options));
+
+        int promptTokens = ChatMessageUtils.countTokens(messages, modelType.getTokenizer(), modelType.getChatFormatDescriptor());
+        int maxTokens = Math.min(options.getMaxTokens(), modelType.getInputTokenLimit() - promptTokens - promptTokens / 10);
+        if (maxTokens < MIN_CONTINUATION_TOKENS)
+            return Optional.empty();
+
+        return Optional.of(new Prompt(messages, modelType.getFamily().createRequestOptions(maxTokens)));
+    }
+
+    /**
+     * Settles how the requests of an exchange are sent.
+     *
+     * @param settings the settings in effect
+     * @param priority the priority of the requests when held back by the rate limits
+     * @param onWaiting called with the queue state when a request is held back
+     */
+    record Scheduling(GeneralSettings settings, RateLimitScheduler.Priority priority, Consumer<RateLimitScheduler.Stats> onWaiting) { }
+
+    /**
+     * Gives the responses to the prompt, sharing the request with the identical requests
+     * already in flight. Late subscribers get the response chunks which arrived so far replayed.
+     * The request is cancelled once all of its subscribers cancel. The request stops being
+     * shared as soon as it ends, before its subscribers are told, so the requests made once
+     * it ended are sent anew.
+     */
+    private Flux<AssistantResponse> shared(AssistantType assistantType, ModelType modelType, Prompt prompt, Scheduling scheduling) {
+        Supplier<Flux<AssistantResponse>> request = () -> resilient(assistantType, scheduling, estimateTokens(prompt), () -> responses(assistantType, modelType, prompt));
+        var fingerprint = PromptFingerprint.of(assistantType, modelType, prompt);
+        if (fingerprint.isEmpty())
+            return request.get();
+
+        var key = fingerprint.get();
+        return Flux.defer(() -> inFlightRequests.computeIfAbsent(key, __ -> {
+            var sharedRequest = new AtomicReference<Flux<AssistantResponse>>();
+            Runnable evict = () -> inFlightRequests.remove(key, sharedRequest.get());
+            sharedRequest.set(request.get()
+                    .doOnTerminate(evict)
+                    .doOnCancel(evict)
+                    .replay()
+                    .refCount());
+            return sharedRequest.get();
+        }));
+    }
+
+    /**
+     * Identifies the requests which would get the same response.
+     */
+    record PromptFingerprint(AssistantType assistantType, String modelId, OptionsKey options, List<MessageKey> messages) {
+
+        record MessageKey(MessageType type, String text) { }
+
+        /**
+         * The values of the request options, which the options themselves don't compare by.
+         */
+        record OptionsKey(Class<?> type, String model, Double temperature, Integer maxTokens, Double topP, Integer topK,
+                          Double frequencyPenalty, Double presencePenalty, List<String> stopSequences, Map<String, String> httpHeaders) {
+
+            static OptionsKey of(ChatOptions options) {
+                if (options == null)
+                    return null;
+
+                var httpHeaders = (options instanceof OpenAiChatOptions openAiOptions) ? openAiOptions.getHttpHeaders() : null;
+                return new OptionsKey(options.getClass(), options.getModel(), options.getTemperature(), options.getMaxTokens(),
+                        options.getTopP(), options.getTopK(), options.getFrequencyPenalty(), options.getPresencePenalty(),
+                        options.getStopSequences(), httpHeaders);
+            }
+        }
+
+        /**
+         * Fingerprints the prompt, unless it has media attached.
+         */
+        static Optional<PromptFingerprint> of(AssistantType assistantType, ModelType modelType, Prompt prompt) {
+            var messages = new ArrayList<MessageKey>();
+            for (var message : prompt.getInstructions()) {
+                if (message instanceof UserMessage userMessage && !userMessage.getMedia().isEmpty())
+                    return Optional.empty();
+                messages.add(new MessageKey(message.getMessageType(), message.getText()));
+            }
+            return Optional.of(new PromptFingerprint(assistantType, modelType.id(), OptionsKey.of(prompt.getOptions()), messages));
+        }
+    }
+
+    /**
+     * Wraps the requests to the given assistant with retries, the rate limit scheduler and
+     * the circuit breaker of its endpoint. Failed requests are retried only until the first
+     * response chunk arrives, and the circuit breaker counts a single failure of the request
+     * once the retries give up.
+     */
+    private Flux<AssistantResponse> resilient(AssistantType assistantType, Scheduling scheduling, long estimatedTokens, Supplier<Flux<AssistantResponse>> request) {
+        var settings = scheduling.settings();
+        var retryPolicy = RetryPolicy.fromSettings(settings);
+        var endpointKey = EndpointKey.of(assistantType, settings);
+        var circuitBreaker = circuitBreakers.computeIfAbsent(endpointKey,
+                __ -> new CircuitBreaker(Math.max(1, settings.getCircuitBreakerFailureThreshold()),
+                        Duration.ofSeconds(Math.max(0, settings.getCircuitBreakerOpenSeconds()))));
+        var rateLimitScheduler = rateLimitSchedulers.computeIfAbsent(endpointKey, __ -> new RateLimitScheduler());
+        var responded = new AtomicBoolean();
+        var retries = new AtomicInteger();
+
+        return rateLimitScheduler.acquire(scheduling.priority(), estimatedTokens, scheduling.onWaiting())
+                .thenMany(Flux.defer(() -> {
+                    if (!circuitBreaker.tryAcquire())
+                        return Flux.error(new CircuitBreakerOpenException(assistantType, circuitBreaker.getRemainingOpenTime()));
+
+                    return request.get()
+                            // the streamed responses report the rate limits in their headers only
+                            .contextWrite(RateLimitHeaders.recordingTo(rateLimitScheduler::update))
+                            .doOnNext(response -> {
+                                if (responded.compareAndSet(false, true))
+                                    circuitBreaker.onSuccess();
+                                updateRateLimit(rateLimitScheduler, response.response());
+                            })
+                            .doOnComplete(circuitBreaker::onSuccess)
+                            .doOnError(cause -> {
+                                if (Errors.classify(cause) == Errors.Category.RATE_LIMITED)
+                                    rateLimitScheduler.onRateLimited(Errors.getRetryAfter(cause).orElse(null));
+                                // the failure is counted once the retries give up
+                                circuitBreaker.release();
+                            })
+                            .doOnCancel(circuitBreaker::release);
+                }))
+                .retryWhen(Retry.withThrowable(failures -> failures.concatMap(cause -> {
+                    var backoff = responded.get() ? Optional.<Duration>empty() : retryPolicy.backoff(retries.incrementAndGet(), cause);
+                    backoff.ifPresent(delay -> LOG.info("Retrying request to " + assistantType.displayName()
+                            + " in " + delay.toMillis() + " ms after: " + Errors.classify(cause)));
+                    return backoff.map(Mono::delay).orElseGet(() -> Mono.error(cause));
+                })))
+                .doOnError(cause -> {
+                    if (!(cause instanceof CircuitBreakerOpenException) && Errors.classify(cause).isEndpointFailure())
+                        circuitBreaker.onFailure();
+                });
+    }
+
+    private static void updateRateLimit(RateLimitScheduler rateLimitScheduler, ChatResponse response) {
+        var metadata = response.getMetadata();
+        if (metadata != null && metadata.getRateLimit() != null && !(metadata.getRateLimit() instanceof EmptyRateLimit))
+            rateLimitScheduler.update(metadata.getRateLimit());
+    }
+
+    /**
+     * Roughly estimates the number of tokens in the prompt, for the purpose of rate limiting.
+     */
+    static long estimateTokens(Prompt prompt) {
+        long length = 0;
+        for (var message : prompt.getInstructions())
+            length += StringUtils.length(message.getText());
+        return length / 4;
+    }
+
+    /**
+     * Identifies the endpoint served by an assistant, for the purpose of tracking its health.
+     */
+    record EndpointKey(ModelFamily family, String endpoint) {
+        static EndpointKey of(AssistantType assistantType, GeneralSettings settings) {
+            var endpoint = assistantType.name();
+            if (assistantType instanceof AssistantType.System system && system.getFamily() != null) {
+                var options = settings.getAssistantOptions(system);
+                endpoint = (system.getFamily() == ModelFamily.AZURE_OPENAI) ? options.getAzureApiEndpoint() : options.getApiEndpointUrl();
+            }
+            return new EndpointKey(assistantType.getFamily(), endpoint);
+        }
+    }
+
+    private Flux<AssistantResponse> responses(AssistantType assistantType, ModelType modelType, Prompt prompt) {
+        var chatClient = ChatClientHolder.getChatClient(assistantType);
+        var effectivePrompt = maybeOverrideChatOptions(modelType, prompt);
+
         if (modelType.supportsStreaming()) {
             try {
-                return chatClient.prompt(prompt).stream().chatResponse()
-                        .doOnSubscribe(flowHandler.onSubscribe(event))
-                        .doOnError(flowHandler.onError())
-                        .doOnComplete(flowHandler.onComplete(ctx))
-                        .doOnNext(flowHandler.onNextChunk());
+                return chatClient.prompt(effectivePrompt).stream().chatResponse()
+                        .map(response -> new AssistantResponse(assistantType, response, true));
             } catch (UnsupportedOperationException ignore) {
                 // fall through
             }
         }
-        return Mono.fromCallable(() -> chatClient.prompt(prompt).call().chatResponse())
-                .flux()
-                .doOnSubscribe(flowHandler.onSubscribe(event))
-                .doOnError(flowHandler.onError())
-                .doOnComplete(flowHandler.onComplete(ctx))
-                .doOnNext(flowHandler.onNext());
+        return Mono.fromCallable(() -> chatClient.prompt(effectivePrompt).call().chatResponse())
+                .subscribeOn(BlockingCallExecutor.getScheduler())
+                .map(response -> new AssistantResponse(assistantType, response, false))
+                .flux();
     }
 
+    /**
+     * A response, or a streamed response chunk, along with the assistant which produced it.
+     */
+    record AssistantResponse(AssistantType assistantType, ChatResponse response, boolean streamed) { }
+
     private Prompt maybeOverrideChatOptions(ModelType modelType, Prompt prompt) {
         var optionsOverride = modelType.incompatibleChatOptionsOverride();
         if (optionsOverride != ModelType.OVERRIDE_NONE)
-            prompt = new Prompt(prompt.getInstructions(), optionsOverride);
+            return new Prompt(prompt.getInstructions(), optionsOverride);
+
+        // the prompt may have been prepared for the model of another assistant, when hedged or drafted
+        var options = prompt.getOptions();
+        if (options != null && options.getMaxTokens() != null)
+            prompt = new Prompt(prompt.getInstructions(), modelType.getFamily()
+                    .createRequestOptions(Math.min(options.getMaxTokens(), modelType.getOutputTokenLimit()),
+                            predictedOutput(modelType, prompt).orElse(null)));
 
         return prompt;
     }
 
+    /**
+     * Gives the response predicted for the last message of the prompt, if the model takes it in.
+     * The continuation prompts end with a message of their own, so aren't given the prediction.
+     */
+    static Optional<PredictedOutput> predictedOutput(ModelType modelType, Prompt prompt) {
+        var messages = prompt.getInstructions();
+        if (!modelType.supportsPredictedOutputs() || messages.isEmpty())
+            return Optional.empty();
+
+        return PredictedOutput.of(messages.get(messages.size() - 1));
+    }
+
     static class ChatCompletionHandler {
         private final ChatMessageListener listener;
-        private final SortedMap<Integer, StringBuffer> partialResponseChoices;
-        private final SortedMap<Integer, ChatResponseMetadata> lastMetadata;
+        private final StreamCoalescingPolicy coalescingPolicy;
+        private final Scheduler flushScheduler;
+        private final AppendOnlyText responseText = new AppendOnlyText();
+        private final AppendOnlyText draftText = new AppendOnlyText();
+        private final RepetitionGuard repetitionGuard;
+        private volatile ChatResponseMetadata lastMetadata;
         private volatile ChatMessageEvent.Started event;
+        private volatile String finishReason;
+        private volatile long startedNanos;
+        // guarded by this
+        private int continuationRounds;
+        private int continuationPromptTokens;
+        private int continuationCompletionTokens;
+        private ChatResponse pendingChunk;
+        private int deliveredLength;
+        private long lastDeliveryNanos;
+        private Disposable pendingFlush;
+        private boolean terminated;
+        // the listener is notified in order, outside the lock
+        private final Queue<Runnable> notifications = new ArrayDeque<>();
+        private final AtomicInteger notifying = new AtomicInteger();
 
         public ChatCompletionHandler(ChatMessageListener listener) {
+            this(listener, StreamCoalescingPolicy.NONE);
+        }
+
+        public ChatCompletionHandler(ChatMessageListener listener, StreamCoalescingPolicy coalescingPolicy) {
+            this(listener, coalescingPolicy, Schedulers.parallel());
+        }
+
+        public ChatCompletionHandler(ChatMessageListener listener, StreamCoalescingPolicy coalescingPolicy, RepetitionGuardPolicy repetitionGuardPolicy) {
+            this(listener, coalescingPolicy, repetitionGuardPolicy, Schedulers.parallel());
+        }
+
+        public ChatCompletionHandler(ChatMessageListener listener, StreamCoalescingPolicy coalescingPolicy, Scheduler flushScheduler) {
+            this(listener, coalescingPolicy, RepetitionGuardPolicy.NONE, flushScheduler);
+        }
+
+        public ChatCompletionHandler(ChatMessageListener listener, StreamCoalescingPolicy coalescingPolicy, RepetitionGuardPolicy repetitionGuardPolicy, Scheduler flushScheduler) {
             this.listener = listener;
-            this.partialResponseChoices = Collections.synchronizedSortedMap(new TreeMap<>());
-            this.lastMetadata = Collections.synchronizedSortedMap(new TreeMap<>());
+            this.coalescingPolicy = coalescingPolicy;
+            this.repetitionGuard = new RepetitionGuard(repetitionGuardPolicy);
+            this.flushScheduler = flushScheduler;
+        }
+
+        /**
+         * Tells whether the response was found degenerate, and should be stopped.
+         */
+        public boolean isStoppedByGuard() {
+            return getGuardVerdict() != RepetitionGuard.Verdict.OK;
+        }
+
+        /**
+         * Tells whether the response stopped on reaching the output token limit.
+         */
+        public boolean isTruncatedByLength() {
+            var reason = finishReason;
+            return "length".equalsIgnoreCase(reason) || "max_tokens".equalsIgnoreCase(reason);
+        }
+
+        public Optional<AssistantType> getRespondingAssistant() {
+            var started = event;
+            return (started == null) ? Optional.empty() : started.getRespondingAssistant();
+        }
+
+        /**
+         * Starts the next round of a response cut off by the output token limit.
+         *
+         * @return the response text so far
+         */
+        public synchronized String beginContinuation() {
+            if (continuationRounds++ > 0)
+                addContinuationUsage();
+            finishReason = null;
+            return responseText.toString();
+        }
+
+        private void addContinuationUsage() {
+            var usage = (lastMetadata == null) ? null : lastMetadata.getUsage();
+            if (usage != null) {
+                continuationPromptTokens += defaultIfNull(usage.getPromptTokens());
+                continuationCompletionTokens += defaultIfNull(usage.getCompletionTokens());
+            }
+        }
+
+        private static int defaultIfNull(Integer tokens) {
+            return (tokens == null) ? 0 : tokens;
         }
 
         public Consumer<Subscription> onSubscribe(ChatMessageEvent.Initiating event) {
             return subscription -> {
+                startedNanos = System.nanoTime();
                 listener.exchangeStarted(this.event = event.started(subscription));
             };
         }
 
+        public Consumer<RateLimitScheduler.Stats> onWaiting() {
+            return stats -> {
+                var started = event;
+                if (started != null)
+                    notifyListener(() -> listener.exchangeWaiting(started.waiting(stats.queueDepth(), stats.expectedWait())));
+            };
+        }
+
         public Runnable onComplete(ConversationContext ctx) {
             return () -> {
-                var assistantMessages = toMessages(partialResponseChoices);
+                List<Generation> assistantMessages;
+                int rounds;
+                Usage continuationUsage;
+                synchronized (this) {
+                    terminated = true;
+                    cancelPendingFlush();
+                    assistantMessages = toMessages();
+                    if ((rounds = continuationRounds) > 0)
+                        addContinuationUsage();
+                    continuationUsage = new ImmutableUsage(continuationPromptTokens, continuationCompletionTokens, null);
+                }
                 if (!assistantMessages.isEmpty()) {
-                    ctx.addChatMessage(assistantMessages.get(0).getOutput());
+                    var conversationState = ConversationState.of(lastMetadata);
+                    var assistantMessage = assistantMessages.get(0).getOutput();
+                    ctx.addChatExchange(event.getUserMessage(), conversationState.map(state -> state.applyTo(assistantMessage)).orElse(assistantMessage));
+                }
+                if (rounds > 0)
+                    LOG.info("Response continued " + rounds + " time(s), using extra " + continuationUsage.getPromptTokens()
+                            + " prompt and " + continuationUsage.getCompletionTokens() + " completion tokens");
+
+                PredictionUsage.of((lastMetadata == null) ? null : lastMetadata.getUsage()).ifPresent(prediction ->
+                        LOG.info("Predicted output: " + prediction.acceptedTokens() + " tokens accepted, " + prediction.rejectedTokens()
+                                + " rejected, response completed in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos) + " ms"));
+
+                var response = new ChatResponse(assistantMessages, lastMetadata);
+                var arrived = switch (getGuardVerdict()) {
+                    case REPETITIVE -> event.truncatedByGuard(response, "the response kept repeating itself");
+                    case RUNAWAY -> event.truncatedByGuard(response, "the response grew too long");
+                    default -> event.responseArrived(response);
+                };
+                var arrivedEvent = (rounds > 0) ? arrived.continued(rounds, continuationUsage) : arrived;
+                notifyListener(() -> listener.responseArrived(arrivedEvent));
+            };
+        }
+
+        /**
+         * Ends the cancelled exchange. The user message is kept in the conversation history
+         * without a response, same as with a failed exchange.
+         */
+        public Runnable onCancel(ConversationContext ctx) {
+            return () -> {
+                synchronized (this) {
+                    terminated = true;
+                    cancelPendingFlush();
+                }
+                var started = event;
+                if (started != null) {
+                    ctx.addChatMessage(started.getUserMessage());
+                    notifyListener(() -> listener.exchangeCancelled(started.cancelled()));
+                }
+            };
+        }
+
+        public Consumer<AssistantResponse> onNextResponse() {
+            return response -> {
+                var started = event;
+                if (started != null && started.getRespondingAssistant().isEmpty())
+                    event = started.respondedBy(response.assistantType());
+
+                var result = response.response().getResult();
+                if (result != null && result.getMetadata() != null && StringUtils.isNotEmpty(result.getMetadata().getFinishReason()))
+                    finishReason = result.getMetadata().getFinishReason();
+
+                if (response.streamed())
+                    onNextChunk().accept(response.response());
+                else
+                    onNext().accept(response.response());
+            };
+        }
+
+        public Consumer<AssistantResponse> onNextDraft() {
+            return response -> {
+                var started = event;
+                var result = response.response().getResult();
+                if (started == null || result == null)
+                    return;
+
+                CharSequence text;
+                synchronized (draftText) {
+                    draftText.append(StringUtils.defaultIfEmpty(result.getOutput().getText(), ""));
+                    text = draftText.snapshot();
                 }
-                listener.responseArrived(event.responseArrived(new ChatResponse(assistantMessages, lastMetadata.get(0))));
+                notifyListener(() -> listener.draftArriving(started.draftArriving(response.assistantType(), text)));
             };
         }
 
         public Consumer<ChatResponse> onNextChunk() {
             return chunk -> {
                 if (chunk.getResult() != null) {
-                    listener.responseArriving(event.responseArriving(chunk, formResponse(chunk, chunk.getResult())));
+                    synchronized (this) {
+                        appendResponse(chunk, chunk.getResult());
+                        pendingChunk = chunk;
+                        long sinceLastDelivery = now() - lastDeliveryNanos;
+                        if (deliveredLength == 0 || coalescingPolicy.shouldDeliver(sinceLastDelivery, responseText.length() - deliveredLength))
+                            deliverPending();
+                        else
+                            scheduleFlush(coalescingPolicy.maxDelay().toNanos() - sinceLastDelivery);
+                    }
+                    notifyListener();
                 } else if (chunk.getMetadata() != null) {
-                    lastMetadata.put(0, chunk.getMetadata());
+                    lastMetadata = chunk.getMetadata();
                 }
             };
         }
@@ -102,29 +598,122 @@ public class ChatHandler {
         public Consumer<ChatResponse> onNext() {
             return result -> {
                 if (result.getResult() != null) {
-                    listener.responseArrived(event.responseArrived(new ChatResponse(formResponse(result, result.getResult()), lastMetadata.get(0))));
+                    // delivered as arriving, as the response may yet be continued; it's complete only on completion
+                    synchronized (this) {
+                        appendResponse(result, result.getResult());
+                        pendingChunk = result;
+                        deliverPending();
+                    }
+                    notifyListener();
                 }
             };
         }
 
-        public Consumer<Throwable> onError() {
+        public Consumer<Throwable> onError(ConversationContext ctx) {
             return cause -> {
-                listener.exchangeFailed(event.failed(cause));
-                cause.printStackTrace();
+                synchronized (this) {
+                    deliverPending();
+                    terminated = true;
+                }
+                var started = event;
+                ctx.addChatMessage(started.getUserMessage());
+                notifyListener(() -> listener.exchangeFailed(started.failed(cause)));
+                LOG.warn("Chat exchange failed (" + Errors.classify(cause) + ")", cause);
             };
         }
 
-        private List<Generation> formResponse(ChatResponse response, Generation choice) {
-            partialResponseChoices.computeIfAbsent(0, __ -> new StringBuffer())
-                    .append(StringUtils.defaultIfEmpty(choice.getOutput().getText(), ""));
-            lastMetadata.put(0, response.getMetadata());
-            return toMessages(partialResponseChoices);
+        private void scheduleFlush(long delayNanos) {
+            if (pendingFlush == null)
+                pendingFlush = flushScheduler.schedule(this::flush, Math.max(delayNanos, 0L), TimeUnit.NANOSECONDS);
+        }
+
+        private void flush() {
+            synchronized (this) {
+                pendingFlush = null;
+                // the exchange may have ended while the flush was waiting for the lock
+                if (terminated)
+                    return;
+                deliverPending();
+            }
+            notifyListener();
+        }
+
+        private long now() {
+            return flushScheduler.now(TimeUnit.NANOSECONDS);
+        }
+
+        private void cancelPendingFlush() {
+            if (pendingFlush != null) {
+                pendingFlush.dispose();
+                pendingFlush = null;
+            }
+        }
+
+        /**
+         * Queues the notification of the text arrived since the last one. Called with the lock
+         * held, so the listener is notified by {@link #notifyListener()} once it's released.
+         */
+        private void deliverPending() {
+            cancelPendingFlush();
+            var partialText = responseText.snapshot();
+            if (pendingChunk == null || partialText.length() == deliveredLength)
+                return;
+
+            var delta = partialText.subSequence(deliveredLength, partialText.length()).toString();
+            deliveredLength = partialText.length();
+            lastDeliveryNanos = now();
+            var arriving = event.responseArriving(pendingChunk, delta, partialText);
+            notifications.add(() -> listener.responseArriving(arriving));
+        }
+
+        private void notifyListener(Runnable notification) {
+            synchronized (this) {
+                notifications.add(notification);
+            }
+            notifyListener();
+        }
+
+        /**
+         * Runs the queued notifications in order. The thread finding the notifications being
+         * run by another thread leaves its own to that thread, so the listener is never called
+         * concurrently, nor with the lock held.
+         */
+        private void notifyListener() {
+            if (notifying.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+            do {
+                Runnable notification;
+                while ((notification = pollNotification()) != null) {
+                    try {
+                        notification.run();
+                    } catch (RuntimeException e) {
+                        LOG.error("Chat message listener failed", e);
+                    }
+                }
+                missed = notifying.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private synchronized Runnable pollNotification() {
+            return notifications.poll();
+        }
+
+        private synchronized RepetitionGuard.Verdict getGuardVerdict() {
+            return repetitionGuard.getVerdict();
+        }
+
+        private void appendResponse(ChatResponse response, Generation choice) {
+            var text = StringUtils.defaultIfEmpty(choice.getOutput().getText(), "");
+            responseText.append(text);
+            if (repetitionGuard.getVerdict() == RepetitionGuard.Verdict.OK && repetitionGuard.append(text) != RepetitionGuard.Verdict.OK)
+                LOG.info("Stopping degenerate response (" + repetitionGuard.getVerdict() + ") after " + responseText.length() + " characters");
+            lastMetadata = response.getMetadata();
         }
 
-        private List<Generation> toMessages(SortedMap<Integer, StringBuffer> partialResponseChoices) {
-            List<AssistantMessage> responseChoices = new ArrayList<>(partialResponseChoices.size());
-            partialResponseChoices.forEach((key, value) -> responseChoices.add(new AssistantMessage(value.toString())));
-            return List.of(new Generation(new AssistantMessage(responseChoices.get(0).getText())));
+        private List<Generation> toMessages() {
+            return List.of(new Generation(new AssistantMessage(responseText.toString())));
         }
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending requests to an endpoint after repeated failures.
+ * <p>
+ * The breaker opens after {@code failureThreshold} consecutive failures and rejects
+ * requests for {@code openDuration}. Afterwards a single trial request is let through:
+ * its success closes the breaker, while its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier nanoClock;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialInProgress;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Asks for a permission to send a request.
+     *
+     * @return {@code true} if the request may be sent, {@code false} if it should fail fast
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (nanoClock.getAsLong() - openedAtNanos < openDurationNanos)
+                    return false;
+                state = State.HALF_OPEN;
+                trialInProgress = true;
+                return true;
+            }
+            default -> {
+                if (trialInProgress)
+                    return false;
+                trialInProgress = true;
+                return true;
+            }
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInProgress = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInProgress = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * Releases the permission acquired for a request which ended with neither success
+     * nor an endpoint failure, e.g. was cancelled.
+     */
+    public synchronized void release() {
+        trialInProgress = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Gives the time remaining until a trial request is allowed.
+     *
+     * @return the remaining time, or {@link Duration#ZERO} if the breaker isn't open
+     */
+    public synchronized Duration getRemainingOpenTime() {
+        if (state != State.OPEN)
+            return Duration.ZERO;
+        return Duration.ofNanos(Math.max(0L, openDurationNanos - (nanoClock.getAsLong() - openedAtNanos)));
+    }
+}
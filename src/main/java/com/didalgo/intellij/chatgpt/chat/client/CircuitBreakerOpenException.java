@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
+
+import java.time.Duration;
+
+public class CircuitBreakerOpenException extends RuntimeException {
+    public CircuitBreakerOpenException(AssistantType assistantType, Duration remainingOpenTime) {
+        super("Requests to " + assistantType.displayName() + " are suspended for "
+                + Math.max(1, remainingOpenTime.toSeconds()) + " s after repeated failures");
+    }
+}
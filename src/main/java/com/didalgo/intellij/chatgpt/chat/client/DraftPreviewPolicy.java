@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+
+/**
+ * Decides whether a draft of the response is previewed while waiting for the primary assistant.
+ * <p>
+ * The same prompt is sent in parallel to the {@code draftAssistant}, typically a small local
+ * model, and its response is shown as a draft until the primary assistant starts responding.
+ * The draft request is then cancelled.
+ *
+ * @param draftAssistant the assistant producing the draft
+ */
+public record DraftPreviewPolicy(AssistantType draftAssistant) {
+
+    /**
+     * The policy which never previews a draft.
+     */
+    public static final DraftPreviewPolicy NONE = new DraftPreviewPolicy(null);
+
+    public static DraftPreviewPolicy fromSettings(GeneralSettings settings, AssistantType primaryAssistant) {
+        var draftAssistant = settings.getDraftAssistantType();
+        if (draftAssistant == null || draftAssistant.getFamily() == null || draftAssistant.equals(primaryAssistant))
+            return NONE;
+
+        return new DraftPreviewPolicy(draftAssistant);
+    }
+
+    public boolean isEnabled() {
+        return draftAssistant != null;
+    }
+}
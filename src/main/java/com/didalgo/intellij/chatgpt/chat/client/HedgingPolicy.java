@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decides whether a chat request is hedged with a secondary assistant.
+ * <p>
+ * When the primary assistant doesn't produce the first response chunk within
+ * {@code firstTokenDeadline}, the same prompt is sent to the {@code secondaryAssistant}.
+ * Whichever of the two responds first is used, and the other request is cancelled.
+ *
+ * @param secondaryAssistant the assistant to send the prompt to after the deadline
+ * @param firstTokenDeadline the time allowed for the primary assistant to start responding
+ */
+public record HedgingPolicy(AssistantType secondaryAssistant, Duration firstTokenDeadline) {
+
+    /**
+     * The policy which never hedges.
+     */
+    public static final HedgingPolicy NONE = new HedgingPolicy(null, Duration.ZERO);
+
+    public static HedgingPolicy fromSettings(GeneralSettings settings, AssistantType primaryAssistant) {
+        var secondaryAssistant = settings.getHedgingAssistantType();
+        int delayMillis = settings.getHedgingDelayMillis();
+        if (secondaryAssistant == null || secondaryAssistant.getFamily() == null
+                || secondaryAssistant.equals(primaryAssistant) || delayMillis <= 0)
+            return NONE;
+
+        return new HedgingPolicy(secondaryAssistant, Duration.ofMillis(delayMillis));
+    }
+
+    public boolean isEnabled() {
+        return secondaryAssistant != null && firstTokenDeadline.isPositive();
+    }
+
+    /**
+     * Races the primary responses with the secondary ones, requested only if the primary
+     * ones don't start within the deadline. The responses which start first are given,
+     * and the other request is cancelled.
+     * <p>
+     * A request failing or completing without responses doesn't win the race, so the
+     * secondary responses are still awaited when the primary request fails fast. When
+     * neither request responds, the error of the primary one is given.
+     */
+    public <T> Flux<T> hedge(Flux<T> primaryResponses, Flux<T> secondaryResponses) {
+        return Flux.defer(() -> {
+            var primaryError = new AtomicReference<Throwable>();
+            return Flux.firstWithValue(primaryResponses.doOnError(primaryError::set),
+                            secondaryResponses.delaySubscription(firstTokenDeadline))
+                    .onErrorMap(NoSuchElementException.class, e -> (primaryError.get() != null) ? primaryError.get() : e);
+        });
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import org.springframework.ai.chat.metadata.RateLimit;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds back the requests to an endpoint which would exceed its rate limits.
+ * <p>
+ * The remaining requests and tokens, along with the times they reset, are taken from the
+ * rate limit reported with the responses. Each granted request is deducted from the remaining
+ * budget right away, so that concurrent requests don't overshoot it before the next response
+ * reports the actual state. When the budget is exhausted, or the endpoint responded with
+ * "429 Too Many Requests", the requests wait in a queue until the limits reset, and are let
+ * through in the order of their {@link Priority}, and then of their arrival.
+ */
+public class RateLimitScheduler {
+
+    public enum Priority {
+        /** Requests the user waits for, e.g. chat exchanges. */
+        INTERACTIVE,
+        /** Requests nobody waits for, e.g. previews or bulk jobs. */
+        BACKGROUND
+    }
+
+    /**
+     * The state of the queue.
+     *
+     * @param queueDepth the number of the requests waiting
+     * @param expectedWait the time until the next request is let through
+     * @param averageWait the average time the recent requests waited
+     */
+    public record Stats(int queueDepth, Duration expectedWait, Duration averageWait) { }
+
+    private static final Duration DEFAULT_RATE_LIMITED_PAUSE = Duration.ofSeconds(2);
+    private static final double SMOOTHING = 0.2;
+
+    private final LongSupplier nanoClock;
+    private final Scheduler timer;
+
+    // guarded by this
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.sequence));
+    private long sequence;
+    private long requestsRemaining = -1;
+    private long requestsResetAtNanos;
+    private long tokensRemaining = -1;
+    private long tokensResetAtNanos;
+    private long pausedUntilNanos;
+    private double averageWaitNanos;
+    private Disposable pendingWakeUp;
+
+    public RateLimitScheduler() {
+        this(System::nanoTime, Schedulers.parallel());
+    }
+
+    public RateLimitScheduler(LongSupplier nanoClock, Scheduler timer) {
+        this.nanoClock = nanoClock;
+        this.timer = timer;
+        this.pausedUntilNanos = nanoClock.getAsLong();
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final long estimatedTokens;
+        private final MonoSink<Void> sink;
+        private final long enqueuedAtNanos;
+        private long sequence;
+
+        Waiter(Priority priority, long estimatedTokens, MonoSink<Void> sink, long enqueuedAtNanos) {
+            this.priority = priority;
+            this.estimatedTokens = estimatedTokens;
+            this.sink = sink;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+
+    /**
+     * Waits for a permission to send a request.
+     *
+     * @param priority the priority of the request
+     * @param estimatedTokens the estimated number of tokens the request consumes
+     * @param onWaiting called with the queue state if the request has to wait
+     * @return the {@code Mono} completing once the request may be sent
+     */
+    public Mono<Void> acquire(Priority priority, long estimatedTokens, Consumer<Stats> onWaiting) {
+        return Mono.create(sink -> {
+            var waiter = new Waiter(priority, estimatedTokens, sink, nanoClock.getAsLong());
+            synchronized (this) {
+                waiter.sequence = sequence++;
+                waiters.add(waiter);
+            }
+            sink.onCancel(() -> {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+            });
+            dispatch();
+
+            Stats stats;
+            synchronized (this) {
+                stats = waiters.contains(waiter) ? getStats() : null;
+            }
+            if (stats != null)
+                onWaiting.accept(stats);
+        });
+    }
+
+    /**
+     * Takes in the rate limit reported with a response.
+     */
+    public void update(RateLimit rateLimit) {
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            if (rateLimit.getRequestsRemaining() != null && isPositive(rateLimit.getRequestsReset())) {
+                requestsRemaining = rateLimit.getRequestsRemaining();
+                requestsResetAtNanos = now + rateLimit.getRequestsReset().toNanos();
+            }
+            if (rateLimit.getTokensRemaining() != null && isPositive(rateLimit.getTokensReset())) {
+                tokensRemaining = rateLimit.getTokensRemaining();
+                tokensResetAtNanos = now + rateLimit.getTokensReset().toNanos();
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Holds back all the requests after the endpoint rejected one for exceeding its rate limit.
+     *
+     * @param retryAfter the time the endpoint asked to wait, if given
+     */
+    public void onRateLimited(Duration retryAfter) {
+        var pause = isPositive(retryAfter) ? retryAfter : DEFAULT_RATE_LIMITED_PAUSE;
+        synchronized (this) {
+            pausedUntilNanos = Math.max(pausedUntilNanos, nanoClock.getAsLong() + pause.toNanos());
+        }
+        dispatch();
+    }
+
+    public synchronized Stats getStats() {
+        long now = nanoClock.getAsLong();
+        var head = waiters.peek();
+        long expectedWait = (head == null) ? 0L : Math.max(0L, delayNanos(head, now));
+        return new Stats(waiters.size(), Duration.ofNanos(expectedWait), Duration.ofNanos((long) averageWaitNanos));
+    }
+
+    private void dispatch() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            if (requestsRemaining >= 0 && now - requestsResetAtNanos >= 0)
+                requestsRemaining = -1;
+            if (tokensRemaining >= 0 && now - tokensResetAtNanos >= 0)
+                tokensRemaining = -1;
+
+            Waiter head;
+            while ((head = waiters.peek()) != null) {
+                long delay = delayNanos(head, now);
+                if (delay > 0) {
+                    scheduleWakeUp(delay);
+                    break;
+                }
+                waiters.poll();
+                if (requestsRemaining > 0)
+                    requestsRemaining--;
+                if (tokensRemaining > 0)
+                    tokensRemaining = Math.max(0, tokensRemaining - head.estimatedTokens);
+                averageWaitNanos += SMOOTHING * ((now - head.enqueuedAtNanos) - averageWaitNanos);
+                granted.add(head);
+            }
+        }
+        granted.forEach(waiter -> waiter.sink.success());
+    }
+
+    private long delayNanos(Waiter waiter, long now) {
+        if (pausedUntilNanos - now > 0)
+            return pausedUntilNanos - now;
+        if (requestsRemaining == 0)
+            return requestsResetAtNanos - now;
+        if (tokensRemaining >= 0 && tokensRemaining < waiter.estimatedTokens)
+            return tokensResetAtNanos - now;
+        return 0L;
+    }
+
+    private void scheduleWakeUp(long delayNanos) {
+        if (pendingWakeUp != null)
+            pendingWakeUp.dispose();
+        pendingWakeUp = timer.schedule(this::dispatch, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static boolean isPositive(Duration duration) {
+        return duration != null && duration.isPositive();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+/**
+ * Watches a streamed response for a degenerate generation, as decided by a {@link RepetitionGuardPolicy}.
+ * <p>
+ * A rolling hash of the last {@code windowChars} characters is kept for every position of
+ * the text, along with the position where the same hash was last seen. The distance between
+ * the two is the period with which the text currently repeats, and the response is considered
+ * looping once the text stayed periodic for {@code repetitionLimit} periods in a row. Periods
+ * shorter than the window are counted as the window length, so that e.g. a long horizontal
+ * rule doesn't stop the response.
+ * <p>
+ * The positions are kept in a fixed-size open-addressing table keyed by the hash, and only
+ * for the last {@link #MAX_PERIOD} characters, so a long response takes neither more memory
+ * nor any allocation per character. Text repeating with a longer period is left to the
+ * maximum response length to stop.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class RepetitionGuard {
+
+    public enum Verdict {
+        OK,
+        /** The response keeps repeating itself. */
+        REPETITIVE,
+        /** The response exceeded the maximum length. */
+        RUNAWAY
+    }
+
+    /** The longest period recognized, in characters. */
+    static final int MAX_PERIOD = 2048;
+
+    private static final long BASE = 1_000_003L;
+    private static final int TABLE_BITS = 12;
+    private static final int MAX_PROBES = 16;
+
+    private final RepetitionGuardPolicy policy;
+    private final char[] window;
+    private final long outgoingFactor;
+    // the hashes and their last positions, with 0 marking an empty slot
+    private final long[] slotHashes;
+    private final long[] slotPositions;
+    private long hash;
+    private long length;
+    private long period;
+    private long periodicLength;
+    private Verdict verdict = Verdict.OK;
+
+    public RepetitionGuard(RepetitionGuardPolicy policy) {
+        this.policy = policy;
+        this.window = new char[Math.max(1, policy.windowChars())];
+        long factor = 1L;
+        for (int i = 0; i < window.length; i++)
+            factor *= BASE;
+        this.outgoingFactor = factor;
+        int tableSize = (policy.repetitionLimit() > 0) ? 1 << TABLE_BITS : 0;
+        this.slotHashes = new long[tableSize];
+        this.slotPositions = new long[tableSize];
+    }
+
+    /**
+     * Takes in the next fragment of the response.
+     *
+     * @param text the text appended to the response
+     * @return the verdict on the response so far, which stays once no longer {@link Verdict#OK}
+     */
+    public Verdict append(CharSequence text) {
+        if (verdict != Verdict.OK || !policy.isEnabled())
+            return verdict;
+
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            int slot = (int) (length % window.length);
+            hash = hash * BASE + ch;
+            if (length >= window.length)
+                hash -= outgoingFactor * window[slot];
+            window[slot] = ch;
+            length++;
+
+            if (policy.repetitionLimit() > 0 && length >= window.length && isLooping())
+                return verdict = Verdict.REPETITIVE;
+        }
+        if (policy.maxResponseChars() > 0 && length > policy.maxResponseChars())
+            verdict = Verdict.RUNAWAY;
+        return verdict;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    private boolean isLooping() {
+        long lastPosition = putPosition(hash, length);
+        if (lastPosition == 0) {
+            period = 0;
+            periodicLength = 0;
+            return false;
+        }
+
+        long distance = length - lastPosition;
+        if (distance != period) {
+            period = distance;
+            periodicLength = 0;
+        }
+        periodicLength++;
+        return periodicLength >= (long) policy.repetitionLimit() * Math.max(period, window.length);
+    }
+
+    /**
+     * Records the position of the hash.
+     *
+     * @return the previous position of the hash within the last {@link #MAX_PERIOD} characters,
+     *         or {@code 0} if none
+     */
+    private long putPosition(long hash, long position) {
+        int mask = slotHashes.length - 1;
+        int slot = (int) ((hash * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - TABLE_BITS));
+        int reusable = -1;
+        int oldest = -1;
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+            long slotPosition = slotPositions[slot];
+            if (slotPosition == 0) {
+                if (reusable < 0)
+                    reusable = slot;
+                break;
+            }
+            if (position - slotPosition > MAX_PERIOD) {
+                if (reusable < 0)
+                    reusable = slot;
+            } else if (slotHashes[slot] == hash) {
+                slotPositions[slot] = position;
+                return slotPosition;
+            } else if (oldest < 0 || slotPosition < slotPositions[oldest]) {
+                oldest = slot;
+            }
+        }
+
+        // the table holds at most MAX_PERIOD live positions in twice as many slots, so a full run of probes is rare
+        int target = (reusable >= 0) ? reusable : oldest;
+        slotHashes[target] = hash;
+        slotPositions[target] = position;
+        return 0;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+
+/**
+ * Decides when a streamed response is stopped as degenerate.
+ * <p>
+ * A response is stopped once its tail keeps repeating the same passage, at least
+ * {@code windowChars} long, for {@code repetitionLimit} times in a row, or once it grows
+ * beyond {@code maxResponseChars}. The thresholds default to those of the {@link
+ * com.didalgo.intellij.chatgpt.chat.models.ModelFamily ModelFamily} of the assistant,
+ * unless overridden in its settings.
+ *
+ * @param windowChars the length of the passages compared
+ * @param repetitionLimit the number of repetitions in a row which stop the response, or {@code 0} for no limit
+ * @param maxResponseChars the length of the response which stops it, or {@code 0} for no limit
+ */
+public record RepetitionGuardPolicy(int windowChars, int repetitionLimit, int maxResponseChars) {
+
+    public static final int DEFAULT_WINDOW_CHARS = 64;
+
+    /**
+     * The policy which never stops a response.
+     */
+    public static final RepetitionGuardPolicy NONE = new RepetitionGuardPolicy(DEFAULT_WINDOW_CHARS, 0, 0);
+
+    public static RepetitionGuardPolicy fromSettings(GeneralSettings settings, AssistantType assistantType) {
+        var family = assistantType.getFamily();
+        if (family == null)
+            return NONE;
+
+        var options = settings.getAssistantOptions(assistantType);
+        int repetitionLimit = (options.getRepetitionLimit() >= 0) ? options.getRepetitionLimit() : family.getDefaultRepetitionLimit();
+        int maxResponseChars = (options.getMaxResponseChars() >= 0) ? options.getMaxResponseChars() : family.getDefaultMaxResponseChars();
+        return new RepetitionGuardPolicy(DEFAULT_WINDOW_CHARS, Math.max(0, repetitionLimit), Math.max(0, maxResponseChars));
+    }
+
+    public boolean isEnabled() {
+        return repetitionLimit > 0 || maxResponseChars > 0;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.Errors;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed chat request is repeated.
+ * <p>
+ * Only failures classified as {@linkplain Errors.Category#isRetryable() retryable} are
+ * retried. The delay honors the {@code Retry-After} requested by the provider, unless it
+ * exceeds {@code maxRetryAfter}, and otherwise grows exponentially from
+ * {@code initialBackoff} up to {@code maxBackoff}, with a random jitter of up to half of it.
+ *
+ * @param maxRetries the maximum number of retries of a single request
+ * @param initialBackoff the delay before the first retry
+ * @param maxBackoff the maximum delay between retries
+ * @param maxRetryAfter the maximum provider-requested delay still worth waiting for
+ */
+public record RetryPolicy(int maxRetries, Duration initialBackoff, Duration maxBackoff, Duration maxRetryAfter) {
+
+    /**
+     * The policy never retrying.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(0, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+    public static RetryPolicy fromSettings(GeneralSettings settings) {
+        return new RetryPolicy(Math.max(0, settings.getChatMaxRetries()),
+                Duration.ofMillis(500), Duration.ofSeconds(8), Duration.ofSeconds(30));
+    }
+
+    /**
+     * Gives the delay before the given retry of a request.
+     *
+     * @param retry the number of the retry, starting from 1
+     * @param cause the failure of the previous attempt
+     * @return the delay, or empty if the request shouldn't be retried
+     */
+    public Optional<Duration> backoff(int retry, Throwable cause) {
+        if (retry > maxRetries || !Errors.classify(cause).isRetryable())
+            return Optional.empty();
+
+        var retryAfter = Errors.getRetryAfter(cause);
+        if (retryAfter.isPresent())
+            return (retryAfter.get().compareTo(maxRetryAfter) <= 0) ? retryAfter : Optional.empty();
+
+        long backoffMillis = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(retry - 1, 20));
+        long jitterMillis = ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+        return Optional.of(Duration.ofMillis(backoffMillis - jitterMillis));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+
+import java.time.Duration;
+
+/**
+ * Decides how often streamed response chunks are delivered to listeners.
+ * <p>
+ * Chunks arriving within {@code maxDelay} after the last delivery are coalesced into a
+ * single {@code responseArriving} notification, unless more than {@code maxChars}
+ * characters are pending, in which case they are delivered immediately.
+ *
+ * @param maxDelay the maximum time a chunk may be held back
+ * @param maxChars the maximum number of characters that may be held back
+ */
+public record StreamCoalescingPolicy(Duration maxDelay, int maxChars) {
+
+    /**
+     * The policy delivering each chunk as soon as it arrives.
+     */
+    public static final StreamCoalescingPolicy NONE = new StreamCoalescingPolicy(Duration.ZERO, 0);
+
+    public static StreamCoalescingPolicy fromSettings(GeneralSettings settings) {
+        return new StreamCoalescingPolicy(
+                Duration.ofMillis(Math.max(0, settings.getStreamCoalescingDelayMillis())),
+                Math.max(0, settings.getStreamCoalescingMaxChars()));
+    }
+
+    public boolean isEnabled() {
+        return !maxDelay.isZero() && maxChars > 0;
+    }
+
+    /**
+     * Tells whether the pending chunks should be delivered right away.
+     *
+     * @param nanosSinceLastDelivery the time elapsed since the previous delivery
+     * @param pendingChars the number of characters not delivered yet
+     * @return {@code true} if pending chunks should be delivered now
+     */
+    public boolean shouldDeliver(long nanosSinceLastDelivery, int pendingChars) {
+        return !isEnabled() || pendingChars >= maxChars || nanosSinceLastDelivery >= maxDelay.toNanos();
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.metadata;
+
+import org.jetbrains.annotations.Nullable;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.openai.api.OpenAiApi;
+
+import java.util.Optional;
+
+/**
+ * The tokens of a response given a {@linkplain com.didalgo.intellij.chatgpt.chat.PredictedOutput
+ * predicted output}.
+ *
+ * @param acceptedTokens the number of the predicted tokens which appeared in the response
+ * @param rejectedTokens the number of the predicted tokens which did not appear in the response,
+ *                       still billed as the completion tokens
+ */
+public record PredictionUsage(int acceptedTokens, int rejectedTokens) {
+
+    /**
+     * Gives the prediction tokens reported with the usage, if the response was predicted.
+     */
+    public static Optional<PredictionUsage> of(@Nullable Usage usage) {
+        if (usage == null || !(usage.getNativeUsage() instanceof OpenAiApi.Usage nativeUsage) || nativeUsage.completionTokenDetails() == null)
+            return Optional.empty();
+
+        var details = nativeUsage.completionTokenDetails();
+        int accepted = (details.acceptedPredictionTokens() == null) ? 0 : details.acceptedPredictionTokens();
+        int rejected = (details.rejectedPredictionTokens() == null) ? 0 : details.rejectedPredictionTokens();
+        return (accepted == 0 && rejected == 0) ? Optional.empty() : Optional.of(new PredictionUsage(accepted, rejected));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.metadata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.ai.chat.metadata.Usage;
+
+import java.util.Optional;
+
+/**
+ * The prompt tokens read from the prompt cache of the provider, and the rest of the prompt tokens.
+ * <p>
+ * The providers report the cached tokens differently: OpenAI counts them among the prompt tokens
+ * in {@code prompt_tokens_details} (or {@code input_tokens_details} of the Responses API), while
+ * Anthropic reports them apart from the input tokens, along with the tokens written to the cache.
+ * The native usage is read as JSON, so that each of them is recognized regardless of its type.
+ *
+ * @param cachedTokens the number of the prompt tokens read from the cache
+ * @param uncachedTokens the number of the prompt tokens processed anew, including the tokens written to the cache
+ */
+public record PromptCacheUsage(int cachedTokens, int uncachedTokens) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public int totalTokens() {
+        return cachedTokens + uncachedTokens;
+    }
+
+    /**
+     * Gives the cached prompt tokens reported with the usage, if any were read from the cache.
+     */
+    public static Optional<PromptCacheUsage> of(@Nullable Usage usage) {
+        if (usage == null || usage.getNativeUsage() == null)
+            return Optional.empty();
+        if (usage.getNativeUsage() instanceof PromptCacheUsage cacheUsage)
+            return Optional.of(cacheUsage);
+
+        JsonNode nativeUsage;
+        try {
+            nativeUsage = (usage.getNativeUsage() instanceof JsonNode node) ? node : OBJECT_MAPPER.valueToTree(usage.getNativeUsage());
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+
+        PromptCacheUsage cacheUsage;
+        if (nativeUsage.has("cache_read_input_tokens")) {
+            cacheUsage = new PromptCacheUsage(nativeUsage.path("cache_read_input_tokens").asInt(),
+                    nativeUsage.path("input_tokens").asInt() + nativeUsage.path("cache_creation_input_tokens").asInt());
+        } else if (nativeUsage.path("prompt_tokens_details").has("cached_tokens")) {
+            int cached = nativeUsage.path("prompt_tokens_details").path("cached_tokens").asInt();
+            cacheUsage = new PromptCacheUsage(cached, nativeUsage.path("prompt_tokens").asInt() - cached);
+        } else if (nativeUsage.path("input_tokens_details").has("cached_tokens")) {
+            int cached = nativeUsage.path("input_tokens_details").path("cached_tokens").asInt();
+            cacheUsage = new PromptCacheUsage(cached, nativeUsage.path("input_tokens").asInt() - cached);
+        } else {
+            return Optional.empty();
+        }
+        return (cacheUsage.cachedTokens() > 0) ? Optional.of(cacheUsage) : Optional.empty();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.metadata;
+
+import org.jetbrains.annotations.Nullable;
+import org.springframework.ai.chat.metadata.RateLimit;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the rate limits reported in the response headers, which Spring AI reads only from the
+ * responses of the blocking calls, and never from the streamed ones.
+ * <p>
+ * The subscriber of a request interested in the rate limits puts a listener in the Reactor
+ * context with {@link #recordingTo}, and the HTTP clients of the chat models, via the
+ * {@link #filter()} or {@link #record}, give it the rate limit of each response, including
+ * the rejected ones.
+ * <p>
+ * Both the OpenAI headers ({@code x-ratelimit-remaining-requests}, with the reset as a
+ * duration like {@code 6m0s}) and the Anthropic headers ({@code anthropic-ratelimit-requests-remaining},
+ * with the reset as a timestamp) are recognized.
+ */
+public final class RateLimitHeaders {
+
+    private static final Object LISTENER_KEY = RateLimitHeaders.class.getName() + ".listener";
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private RateLimitHeaders() { }
+
+    /**
+     * The rate limit read from the headers.
+     */
+    record HeaderRateLimit(Long requestsLimit, Long requestsRemaining, Duration requestsReset,
+                           Long tokensLimit, Long tokensRemaining, Duration tokensReset) implements RateLimit {
+
+        @Override
+        public Long getRequestsLimit() {
+            return requestsLimit;
+        }
+
+        @Override
+        public Long getRequestsRemaining() {
+            return requestsRemaining;
+        }
+
+        @Override
+        public Duration getRequestsReset() {
+            return requestsReset;
+        }
+
+        @Override
+        public Long getTokensLimit() {
+            return tokensLimit;
+        }
+
+        @Override
+        public Long getTokensRemaining() {
+            return tokensRemaining;
+        }
+
+        @Override
+        public Duration getTokensReset() {
+            return tokensReset;
+        }
+    }
+
+    /**
+     * Puts the listener of the rate limits of the requests made by the subscriber into its context.
+     */
+    public static Function<Context, Context> recordingTo(Consumer<RateLimit> listener) {
+        return context -> context.put(LISTENER_KEY, listener);
+    }
+
+    /**
+     * Gives the rate limit of the response headers to the listener in the context, if any.
+     *
+     * @param context the context of the request
+     * @param headers the headers of the response, by their name
+     */
+    public static void record(ContextView context, Function<String, String> headers) {
+        context.<Consumer<RateLimit>>getOrEmpty(LISTENER_KEY)
+                .ifPresent(listener -> of(headers, Instant.now()).ifPresent(listener));
+    }
+
+    /**
+     * Gives the filter of the WebClient, which records the rate limits of its responses.
+     */
+    public static ExchangeFilterFunction filter() {
+        return (request, next) -> Mono.deferContextual(context -> next.exchange(request)
+                .doOnNext(response -> record(context, response.headers().asHttpHeaders()::getFirst)));
+    }
+
+    /**
+     * Reads the rate limit from the response headers.
+     *
+     * @param headers the headers of the response, by their name
+     * @param now the time of the response, which the reset timestamps are relative to
+     * @return the rate limit, or empty if the headers don't report it
+     */
+    public static Optional<RateLimit> of(Function<String, String> headers, Instant now) {
+        if (headers.apply("x-ratelimit-remaining-requests") != null || headers.apply("x-ratelimit-remaining-tokens") != null) {
+            return Optional.of(new HeaderRateLimit(
+                    parseLong(headers.apply("x-ratelimit-limit-requests")),
+                    parseLong(headers.apply("x-ratelimit-remaining-requests")),
+                    parseDuration(headers.apply("x-ratelimit-reset-requests")),
+                    parseLong(headers.apply("x-ratelimit-limit-tokens")),
+                    parseLong(headers.apply("x-ratelimit-remaining-tokens")),
+                    parseDuration(headers.apply("x-ratelimit-reset-tokens"))));
+        }
+        if (headers.apply("anthropic-ratelimit-requests-remaining") != null || headers.apply("anthropic-ratelimit-tokens-remaining") != null) {
+            return Optional.of(new HeaderRateLimit(
+                    parseLong(headers.apply("anthropic-ratelimit-requests-limit")),
+                    parseLong(headers.apply("anthropic-ratelimit-requests-remaining")),
+                    parseTimeUntil(headers.apply("anthropic-ratelimit-requests-reset"), now),
+                    parseLong(headers.apply("anthropic-ratelimit-tokens-limit")),
+                    parseLong(headers.apply("anthropic-ratelimit-tokens-remaining")),
+                    parseTimeUntil(headers.apply("anthropic-ratelimit-tokens-reset"), now)));
+        }
+        return Optional.empty();
+    }
+
+    private static @Nullable Long parseLong(@Nullable String value) {
+        if (value == null)
+            return null;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the duration like {@code 1s}, {@code 6m0s}, {@code 20ms} or {@code 1h2m3.5s}.
+     */
+    static @Nullable Duration parseDuration(@Nullable String value) {
+        if (value == null || value.isBlank())
+            return null;
+
+        var matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        int end = 0;
+        while (matcher.find() && matcher.start() == end) {
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += amount * switch (matcher.group(2)) {
+                case "h" -> 3_600_000;
+                case "m" -> 60_000;
+                case "s" -> 1_000;
+                default -> 1;
+            };
+            end = matcher.end();
+        }
+        return (end > 0 && end == value.trim().length()) ? Duration.ofMillis(Math.round(millis)) : null;
+    }
+
+    private static @Nullable Duration parseTimeUntil(@Nullable String value, Instant now) {
+        if (value == null)
+            return null;
+        try {
+            var reset = Duration.between(now, OffsetDateTime.parse(value.trim()).toInstant());
+            return reset.isNegative() ? Duration.ZERO : reset;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
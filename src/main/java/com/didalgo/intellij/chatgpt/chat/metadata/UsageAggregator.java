@@ -11,7 +11,8 @@ import org.springframework.ai.chat.metadata.Usage;
 import java.util.function.Consumer;
 
 /**
- * Aggregates {@link Usage} instances into a single {@link Usage} object.
+ * Aggregates {@link Usage} instances into a single {@link Usage} object. The prompt tokens read
+ * from the prompt cache, if reported, are kept as the {@link PromptCacheUsage} native usage.
  */
 @Setter
 public class UsageAggregator implements Usage, Consumer<Usage> {
@@ -26,6 +27,16 @@ public class UsageAggregator implements Usage, Consumer<Usage> {
      */
     private int completionTokens;
 
+    /**
+     *  The number of prompt tokens read from the prompt cache.
+     */
+    private int cachedPromptTokens;
+
+    /**
+     *  The number of prompt tokens not read from the prompt cache.
+     */
+    private int uncachedPromptTokens;
+
     /**
      * Creates a new {@code UsageAggregator} with zero prompt and generation tokens.
      */
@@ -54,9 +65,17 @@ public class UsageAggregator implements Usage, Consumer<Usage> {
         return completionTokens;
     }
 
+    public int getCachedPromptTokens() {
+        return cachedPromptTokens;
+    }
+
+    public int getUncachedPromptTokens() {
+        return uncachedPromptTokens;
+    }
+
     @Override
     public Object getNativeUsage() {
-        return null;
+        return (cachedPromptTokens > 0) ? new PromptCacheUsage(cachedPromptTokens, uncachedPromptTokens) : null;
     }
 
     @Override
@@ -64,6 +83,10 @@ public class UsageAggregator implements Usage, Consumer<Usage> {
         if (source != null) {
             setPromptTokens(getMaxOrDefault(getPromptTokens(), source.getPromptTokens()));
             setCompletionTokens(getMaxOrDefault(getCompletionTokens(), source.getCompletionTokens()));
+            PromptCacheUsage.of(source).ifPresent(cacheUsage -> {
+                setCachedPromptTokens(Math.max(getCachedPromptTokens(), cacheUsage.cachedTokens()));
+                setUncachedPromptTokens(Math.max(getUncachedPromptTokens(), cacheUsage.uncachedTokens()));
+            });
         }
     }
 
@@ -77,6 +100,6 @@ public class UsageAggregator implements Usage, Consumer<Usage> {
      * @return the immutable copy
      */
     public ImmutableUsage toImmutableUsage() {
-        return new ImmutableUsage(promptTokens, completionTokens, null);
+        return new ImmutableUsage(promptTokens, completionTokens, getNativeUsage());
     }
 }
\ No newline at end of file
@@ -4,25 +4,51 @@
  */
 package com.didalgo.intellij.chatgpt.chat.models;
 
+import com.didalgo.intellij.chatgpt.chat.metadata.RateLimitHeaders;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
 import org.springframework.ai.anthropic.AnthropicChatModel;
 import org.springframework.ai.anthropic.AnthropicChatOptions;
 import org.springframework.ai.anthropic.api.AnthropicApi;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
 
 public class AnthropicModelFamily implements ModelFamily {
 
+    private static final PromptCacheInterceptor PROMPT_CACHE_INTERCEPTOR = new PromptCacheInterceptor();
+
     @Override
     public AnthropicChatModel createChatModel(GeneralSettings.AssistantOptions config) {
         var baseUrl = config.isEnableCustomApiEndpointUrl() ? config.getApiEndpointUrl() : getDefaultApiEndpointUrl();
         var apiKey = config.getApiKey();
-        var api = new AnthropicApi(baseUrl, apiKey);
+        var restClientBuilder = RestClient.builder();
+        var webClientBuilder = WebClient.builder().filter(RateLimitHeaders.filter());
+        if (config.isEnablePromptCaching()) {
+            restClientBuilder.requestInterceptor(PROMPT_CACHE_INTERCEPTOR);
+            webClientBuilder.filter(PROMPT_CACHE_INTERCEPTOR);
+        }
+        var api = AnthropicApi.builder()
+                .baseUrl(baseUrl)
+                .apiKey(apiKey)
+                .restClientBuilder(restClientBuilder)
+                .webClientBuilder(webClientBuilder)
+                .build();
         var options = AnthropicChatOptions.builder()
                 .model(config.getModelName())
                 .temperature(config.getTemperature())
                 .topP(config.getTopP())
-                .maxTokens(4096)
+                .maxTokens(config.getModelType().getOutputTokenLimit())
                 .build();
-        return new AnthropicChatModel(api, options);
+        return new AnthropicChatModel(api, options, ModelFamily.noRetries());
+    }
+
+    @Override
+    public int getDefaultOutputTokenLimit() {
+        return 8192;
+    }
+
+    @Override
+    public AnthropicChatOptions createRequestOptions(int maxOutputTokens) {
+        return AnthropicChatOptions.builder().maxTokens(maxOutputTokens).build();
     }
 
     @Override
@@ -6,11 +6,15 @@ package com.didalgo.intellij.chatgpt.chat.models;
 
 import com.azure.ai.openai.OpenAIClientBuilder;
 import com.azure.core.credential.AzureKeyCredential;
+import com.azure.core.http.policy.FixedDelayOptions;
+import com.azure.core.http.policy.RetryOptions;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
 import org.springframework.ai.azure.openai.AzureOpenAiChatModel;
 import org.springframework.ai.azure.openai.AzureOpenAiChatOptions;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+
 public class AzureOpenAiModelFamily implements ModelFamily {
 
     @Override
@@ -19,8 +23,10 @@ public class AzureOpenAiModelFamily implements ModelFamily {
 
         var baseUrl = config.getAzureApiEndpoint();
         var apiKey = config.getApiKey();
+        // the retries of the failed requests are left to the RetryPolicy
         var api = new OpenAIClientBuilder().credential(new AzureKeyCredential(apiKey))
-                .endpoint(baseUrl);
+                .endpoint(baseUrl)
+                .retryOptions(new RetryOptions(new FixedDelayOptions(0, Duration.ZERO)));
         var options = AzureOpenAiChatOptions.builder()
                 .deploymentName(config.getAzureDeploymentName())
                 .temperature(config.getTemperature())
@@ -31,6 +37,11 @@ public class AzureOpenAiModelFamily implements ModelFamily {
         return new AzureOpenAiChatModel(api, options);
     }
 
+    @Override
+    public AzureOpenAiChatOptions createRequestOptions(int maxOutputTokens) {
+        return AzureOpenAiChatOptions.builder().maxTokens(maxOutputTokens).build();
+    }
+
     private static void checkConfigurationCompletness(GeneralSettings.AssistantOptions config) {
         if (!StringUtils.hasLength(config.getAzureApiEndpoint())) {
             throw new IllegalArgumentException("Azure OpenAI `apiEndpoint` is empty");
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.chat.metadata.ImmutableUsage;
+import com.didalgo.intellij.chatgpt.chat.metadata.PromptCacheUsage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.retry.NonTransientAiException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Reads the chunks of a streamed chat completion of the OpenAI compatible APIs with the streaming
+ * JSON parser, picking out only the content delta, the finish reason and the usage, and skipping
+ * everything else without building the object tree.
+ * <p>
+ * The chunks carrying only the content, which is nearly all of them, are given as the bare chat
+ * responses, with no metadata. The metadata is given with the chunks which end the response.
+ */
+final class ChatCompletionChunkParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ChatCompletionChunkParser() { }
+
+    /**
+     * Reads the chunk.
+     *
+     * @param json the JSON of the chunk, the data of the server-sent event
+     * @return the chat response of the chunk, or {@code null} if the chunk carries nothing of interest
+     * @throws NonTransientAiException if the chunk reports an error
+     */
+    static @Nullable ChatResponse parse(InputStream json) throws IOException {
+        try (var parser = JSON_FACTORY.createParser(json)) {
+            return parse(parser);
+        }
+    }
+
+    static @Nullable ChatResponse parse(byte[] json, int offset, int length) throws IOException {
+        try (var parser = JSON_FACTORY.createParser(json, offset, length)) {
+            return parse(parser);
+        }
+    }
+
+    private static @Nullable ChatResponse parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT)
+            return null;
+
+        String id = null, model = null, content = null, finishReason = null, error = null;
+        int promptTokens = -1, completionTokens = 0, cachedTokens = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.currentName();
+            var token = parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getValueAsString();
+                case "model" -> model = parser.getValueAsString();
+                case "choices" -> {
+                    if (token != JsonToken.START_ARRAY)
+                        break;
+                    // only the first choice is requested
+                    if (parser.nextToken() == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            var choiceField = parser.currentName();
+                            var choiceToken = parser.nextToken();
+                            if ("delta".equals(choiceField) && choiceToken == JsonToken.START_OBJECT) {
+                                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                    var deltaField = parser.currentName();
+                                    parser.nextToken();
+                                    if ("content".equals(deltaField))
+                                        content = parser.getValueAsString();
+                                    else
+                                        parser.skipChildren();
+                                }
+                            } else if ("finish_reason".equals(choiceField)) {
+                                finishReason = parser.getValueAsString();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                    if (parser.currentToken() != JsonToken.END_ARRAY)
+                        while (parser.nextToken() != JsonToken.END_ARRAY)
+                            parser.skipChildren();
+                }
+                case "usage" -> {
+                    if (token != JsonToken.START_OBJECT)
+                        break;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        var usageField = parser.currentName();
+                        var usageToken = parser.nextToken();
+                        switch (usageField) {
+                            case "prompt_tokens" -> promptTokens = parser.getValueAsInt();
+                            case "completion_tokens" -> completionTokens = parser.getValueAsInt();
+                            case "prompt_tokens_details" -> {
+                                if (usageToken != JsonToken.START_OBJECT)
+                                    break;
+                                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                    var detailsField = parser.currentName();
+                                    parser.nextToken();
+                                    if ("cached_tokens".equals(detailsField))
+                                        cachedTokens = parser.getValueAsInt();
+                                    else
+                                        parser.skipChildren();
+                                }
+                            }
+                            default -> parser.skipChildren();
+                        }
+                    }
+                }
+                case "error" -> {
+                    if (token == JsonToken.VALUE_STRING) {
+                        error = parser.getText();
+                        break;
+                    }
+                    while (token == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME) {
+                        var errorField = parser.currentName();
+                        parser.nextToken();
+                        if ("message".equals(errorField))
+                            error = parser.getValueAsString();
+                        else
+                            parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (error != null)
+            throw new NonTransientAiException(error);
+        if (finishReason == null && promptTokens < 0) {
+            return (content == null || content.isEmpty()) ? null
+                    : new ChatResponse(List.of(new Generation(new AssistantMessage(content))));
+        }
+
+        var generations = (finishReason == null && (content == null || content.isEmpty())) ? List.<Generation>of()
+                : List.of(new Generation(new AssistantMessage((content == null) ? "" : content),
+                        ChatGenerationMetadata.builder().finishReason(finishReason).build()));
+        var metadata = ChatResponseMetadata.builder();
+        if (id != null)
+            metadata.id(id);
+        if (model != null)
+            metadata.model(model);
+        if (promptTokens >= 0)
+            metadata.usage(new ImmutableUsage(promptTokens, completionTokens,
+                    (cachedTokens > 0) ? new PromptCacheUsage(cachedTokens, promptTokens - cachedTokens) : null));
+        return new ChatResponse(generations, metadata.build());
+    }
+}
@@ -4,17 +4,21 @@
  */
 package com.didalgo.intellij.chatgpt.chat.models;
 
+import com.didalgo.intellij.chatgpt.chat.metadata.RateLimitHeaders;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.web.reactive.function.client.WebClient;
 
 public class GeminiModelFamily implements ModelFamily {
 
     private static final String DEFAULT_BASE_URL = "https://generativelanguage.googleapis.com/v1beta/openai";
+    private static final String COMPLETIONS_PATH = "/chat/completions";
 
     @Override
-    public OpenAiChatModel createChatModel(GeneralSettings.AssistantOptions config) {
+    public ChatModel createChatModel(GeneralSettings.AssistantOptions config) {
         var baseUrl = config.isEnableCustomApiEndpointUrl()? config.getApiEndpointUrl(): getDefaultApiEndpointUrl();
         if ("https://generativelanguage.googleapis.com".equals(baseUrl)) {
             baseUrl = DEFAULT_BASE_URL;
@@ -22,9 +26,10 @@ public class GeminiModelFamily implements ModelFamily {
 
         var api = OpenAiApi.builder()
                 .baseUrl(baseUrl)
-                .completionsPath("/chat/completions")
+                .completionsPath(COMPLETIONS_PATH)
                 .embeddingsPath("/embeddings")
                 .apiKey(config.getApiKey())
+                .webClientBuilder(WebClient.builder().filter(RateLimitHeaders.filter()))
                 .build();
         var options = OpenAiChatOptions.builder()
                 .model(config.getModelName())
@@ -33,7 +38,25 @@ public class GeminiModelFamily implements ModelFamily {
                 .topP(config.getTopP())
                 .N(1)
                 .build();
-        return new OpenAiChatModel(api, options);
+        var chatModel = OpenAiChatModel.builder()
+                .openAiApi(api)
+                .defaultOptions(options)
+                .retryTemplate(ModelFamily.noRetries())
+                .build();
+        if (config.isEnableNativeStreaming())
+            return new OpenAiStreamingChatModel(chatModel, baseUrl + COMPLETIONS_PATH, config.getApiKey(), options, ModelFamily.readTimeout());
+
+        return chatModel;
+    }
+
+    @Override
+    public int getDefaultOutputTokenLimit() {
+        return 8192;
+    }
+
+    @Override
+    public OpenAiChatOptions createRequestOptions(int maxOutputTokens) {
+        return OpenAiChatOptions.builder().maxTokens(maxOutputTokens).build();
     }
 
     @Override
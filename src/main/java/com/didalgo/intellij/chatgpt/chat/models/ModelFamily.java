@@ -4,9 +4,13 @@
  */
 package com.didalgo.intellij.chatgpt.chat.models;
 
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.http.client.ReactorClientHttpRequestFactory;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.web.client.RestClient;
 import reactor.netty.http.client.HttpClient;
@@ -42,6 +46,61 @@ public interface ModelFamily {
         return "".equals(getApiKeysHomepage());
     }
 
+    /**
+     * Gives the maximum number of tokens the models of the family can produce in a response,
+     * unless known for the particular model.
+     */
+    default int getDefaultOutputTokenLimit() {
+        return 4096;
+    }
+
+    /**
+     * Creates the options of a single request, limiting the response to the given number of tokens.
+     *
+     * @param maxOutputTokens the maximum number of tokens in the response
+     * @return the request options, merged by the chat model with its default options
+     */
+    default ChatOptions createRequestOptions(int maxOutputTokens) {
+        return ChatOptions.builder().maxTokens(maxOutputTokens).build();
+    }
+
+    /**
+     * Creates the options of a single request, limiting the response to the given number of tokens,
+     * and passing along the predicted response, if the family supports it.
+     *
+     * @param maxOutputTokens the maximum number of tokens in the response
+     * @param predictedOutput the predicted response, or {@code null} if none
+     * @return the request options, merged by the chat model with its default options
+     */
+    default ChatOptions createRequestOptions(int maxOutputTokens, @Nullable PredictedOutput predictedOutput) {
+        return createRequestOptions(maxOutputTokens);
+    }
+
+    /**
+     * Gives the default number of times a passage may repeat in a row in a response, before
+     * the response is considered looping and is stopped, or {@code 0} to never stop it.
+     */
+    default int getDefaultRepetitionLimit() {
+        return 8;
+    }
+
+    /**
+     * Gives the default maximum length of a response in characters, or {@code 0} for no limit.
+     */
+    default int getDefaultMaxResponseChars() {
+        return 0;
+    }
+
+    /**
+     * Tells whether the chat model of the family keeps the conversations on the server, so that
+     * the conversation history doesn't need to be sent with each message.
+     *
+     * @see com.didalgo.intellij.chatgpt.chat.ConversationState
+     */
+    default boolean supportsConversationState(GeneralSettings.AssistantOptions config) {
+        return false;
+    }
+
     static ModelFamily create(Class<? extends ModelFamily> clazz) {
         return Arrays.stream(ModelFamily.class.getFields())
                 .filter(field -> field.getType().equals(clazz) && ReflectionUtils.isPublicStaticFinal(field))
@@ -65,9 +124,20 @@ public interface ModelFamily {
     static Consumer<RestClient.Builder> defaultTimeout() {
         return restClientBuilder -> {
             var reactorHttpClient = HttpClient.create()
-                    .responseTimeout(
-                            Duration.ofMillis(Integer.parseInt(GeneralSettings.getInstance().getReadTimeout())));
+                    .responseTimeout(readTimeout());
             restClientBuilder.requestFactory(new ReactorClientHttpRequestFactory(reactorHttpClient));
         };
     }
+
+    /**
+     * Gives the retry template of the chat models which doesn't retry, leaving the retries
+     * of the failed requests to the {@link com.didalgo.intellij.chatgpt.chat.client.RetryPolicy}.
+     */
+    static RetryTemplate noRetries() {
+        return RetryTemplate.builder().maxAttempts(1).build();
+    }
+
+    static Duration readTimeout() {
+        return Duration.ofMillis(Integer.parseInt(GeneralSettings.getInstance().getReadTimeout()));
+    }
 }
@@ -18,6 +18,13 @@ public interface ModelType {
 
     int getInputTokenLimit();
 
+    /**
+     * Gives the maximum number of tokens the model can produce in a response.
+     */
+    default int getOutputTokenLimit() {
+        return getFamily().getDefaultOutputTokenLimit();
+    }
+
     default boolean supportsStreaming() {
         return true;
     }
@@ -30,6 +37,14 @@ public interface ModelType {
         return false;
     }
 
+    /**
+     * Tells whether the model takes in the {@linkplain com.didalgo.intellij.chatgpt.chat.PredictedOutput
+     * predicted output} of a request.
+     */
+    default boolean supportsPredictedOutputs() {
+        return false;
+    }
+
     default ChatOptions incompatibleChatOptionsOverride() {
         return OVERRIDE_NONE;
     }
@@ -31,7 +31,14 @@ public class OllamaModelFamily implements ModelFamily {
                 .temperature(config.getTemperature())
                 .topP(config.getTopP())
                 .build();
-        return new OllamaChatModel(api, options, DEFAULT_TOOL_CALLING_MANAGER, ObservationRegistry.NOOP, ModelManagementOptions.defaults());
+        return OllamaChatModel.builder()
+                .ollamaApi(api)
+                .defaultOptions(options)
+                .toolCallingManager(DEFAULT_TOOL_CALLING_MANAGER)
+                .observationRegistry(ObservationRegistry.NOOP)
+                .modelManagementOptions(ModelManagementOptions.defaults())
+                .retryTemplate(ModelFamily.noRetries())
+                .build();
     }
 
     @Override
@@ -43,4 +50,19 @@ public class OllamaModelFamily implements ModelFamily {
     public String getApiKeysHomepage() {
         return "";
     }
+
+    @Override
+    public OllamaOptions createRequestOptions(int maxOutputTokens) {
+        return OllamaOptions.builder().numPredict(maxOutputTokens).build();
+    }
+
+    @Override
+    public int getDefaultRepetitionLimit() {
+        return 4;
+    }
+
+    @Override
+    public int getDefaultMaxResponseChars() {
+        return 60_000;
+    }
 }
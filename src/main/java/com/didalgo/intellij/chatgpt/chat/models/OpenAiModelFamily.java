@@ -4,19 +4,27 @@
  */
 package com.didalgo.intellij.chatgpt.chat.models;
 
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
+import com.didalgo.intellij.chatgpt.chat.metadata.RateLimitHeaders;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.ai.openai.api.common.OpenAiApiConstants;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.List;
 
 public class OpenAiModelFamily implements ModelFamily {
 
+    private static final PredictedOutputInterceptor PREDICTED_OUTPUT_INTERCEPTOR = new PredictedOutputInterceptor();
+    private static final String COMPLETIONS_PATH = "/v1/chat/completions";
+
     @Override
-    public OpenAiChatModel createChatModel(GeneralSettings.AssistantOptions config) {
+    public ChatModel createChatModel(GeneralSettings.AssistantOptions config) {
         var baseUrl = config.isEnableCustomApiEndpointUrl()? config.getApiEndpointUrl(): getDefaultApiEndpointUrl();
         var apiKey = config.getApiKey();
         var options = OpenAiChatOptions.builder()
@@ -27,15 +35,42 @@ public class OpenAiModelFamily implements ModelFamily {
                 .N(1)
                 .reasoningEffort(config.isReasoningEffortEnabled() ? config.getReasoningEffort() : null)
                 .build();
+        if (config.isEnableResponsesApi())
+            return new OpenAiResponsesChatModel(baseUrl, apiKey, options);
 
-        return OpenAiChatModel.builder()
+        var chatModel = OpenAiChatModel.builder()
                 .defaultOptions(options)
                 .openAiApi(OpenAiApi.builder()
                         .baseUrl(baseUrl)
                         .apiKey(apiKey)
-                        .restClientBuilder(RestClient.builder().apply(ModelFamily.defaultTimeout()))
+                        .restClientBuilder(RestClient.builder().apply(ModelFamily.defaultTimeout())
+                                .requestInterceptor(PREDICTED_OUTPUT_INTERCEPTOR))
+                        .webClientBuilder(WebClient.builder().filter(PREDICTED_OUTPUT_INTERCEPTOR).filter(RateLimitHeaders.filter()))
                         .build())
+                .retryTemplate(ModelFamily.noRetries())
                 .build();
+        if (config.isEnableNativeStreaming())
+            return new OpenAiStreamingChatModel(chatModel, baseUrl + COMPLETIONS_PATH, apiKey, options, ModelFamily.readTimeout());
+
+        return chatModel;
+    }
+
+    @Override
+    public OpenAiChatOptions createRequestOptions(int maxOutputTokens) {
+        return OpenAiChatOptions.builder().maxTokens(maxOutputTokens).build();
+    }
+
+    @Override
+    public OpenAiChatOptions createRequestOptions(int maxOutputTokens, @Nullable PredictedOutput predictedOutput) {
+        var options = createRequestOptions(maxOutputTokens);
+        if (predictedOutput != null)
+            options.setHttpHeaders(PredictedOutputInterceptor.toHttpHeaders(predictedOutput));
+        return options;
+    }
+
+    @Override
+    public boolean supportsConversationState(GeneralSettings.AssistantOptions config) {
+        return config.isEnableResponsesApi();
     }
 
     @Override
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.chat.ConversationState;
+import com.didalgo.intellij.chatgpt.chat.metadata.ImmutableUsage;
+import com.didalgo.intellij.chatgpt.chat.metadata.RateLimitHeaders;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The chat model of the OpenAI Responses API, which keeps the conversations on the server.
+ * <p>
+ * A prompt carrying the {@linkplain ConversationState#previousResponseId ID of the previous response}
+ * is sent as the continuation of the conversation up to that response, so it holds the new messages
+ * only. The system messages are sent as the instructions, which the server doesn't keep, so they're
+ * sent with each prompt. Each response reports the {@link ConversationState} it can be continued from.
+ */
+public class OpenAiResponsesChatModel implements ChatModel {
+
+    private static final String RESPONSES_PATH = "/v1/responses";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final OpenAiChatOptions defaultOptions;
+    private final RestClient restClient;
+    private final WebClient webClient;
+
+    public OpenAiResponsesChatModel(String baseUrl, String apiKey, OpenAiChatOptions defaultOptions) {
+        Consumer<HttpHeaders> headers = httpHeaders -> {
+            httpHeaders.setBearerAuth(apiKey);
+            httpHeaders.setContentType(MediaType.APPLICATION_JSON);
+        };
+        this.defaultOptions = defaultOptions;
+        this.restClient = RestClient.builder().apply(ModelFamily.defaultTimeout())
+                .baseUrl(baseUrl)
+                .defaultHeaders(headers)
+                .build();
+        this.webClient = WebClient.builder()
+                .filter(RateLimitHeaders.filter())
+                .baseUrl(baseUrl)
+                .defaultHeaders(headers)
+                .build();
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return defaultOptions;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        var response = restClient.post()
+                .uri(RESPONSES_PATH)
+                .body(createRequest(prompt, false))
+                .retrieve()
+                .body(JsonNode.class);
+        if (response == null)
+            throw new NonTransientAiException("No response from " + RESPONSES_PATH);
+
+        return toChatResponse(response, getText(response));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return webClient.post()
+                .uri(RESPONSES_PATH)
+                .bodyValue(createRequest(prompt, true))
+                .retrieve()
+                .bodyToFlux(String.class)
+                .transform(this::readEvents);
+    }
+
+    /**
+     * Maps the data of the server-sent events to the chat responses: the text deltas, and the
+     * final response, which reports the usage and the conversation state, with no text.
+     */
+    Flux<ChatResponse> readEvents(Flux<String> events) {
+        return events.handle((data, sink) -> {
+            var event = readTree(data);
+            switch (event.path("type").asText()) {
+                case "response.output_text.delta" ->
+                        sink.next(new ChatResponse(List.of(new Generation(new AssistantMessage(event.path("delta").asText())))));
+                case "response.completed", "response.incomplete" ->
+                        sink.next(toChatResponse(event.path("response"), ""));
+                case "response.failed" ->
+                        sink.error(toException(event.path("response").path("error")));
+                case "error" ->
+                        sink.error(toException(event));
+                default -> { }
+            }
+        });
+    }
+
+    ObjectNode createRequest(Prompt prompt, boolean stream) {
+        var request = OBJECT_MAPPER.createObjectNode()
+                .put("model", defaultOptions.getModel())
+                .put("stream", stream)
+                .put("store", true);
+
+        var maxTokens = (prompt.getOptions() != null && prompt.getOptions().getMaxTokens() != null)
+                ? prompt.getOptions().getMaxTokens() : defaultOptions.getMaxTokens();
+        if (maxTokens != null)
+            request.put("max_output_tokens", maxTokens);
+        if (defaultOptions.getReasoningEffort() != null) {
+            request.putObject("reasoning").put("effort", defaultOptions.getReasoningEffort());
+        } else {
+            if (defaultOptions.getTemperature() != null)
+                request.put("temperature", defaultOptions.getTemperature());
+            if (defaultOptions.getTopP() != null)
+                request.put("top_p", defaultOptions.getTopP());
+        }
+        ConversationState.previousResponseId(prompt).ifPresent(id -> request.put("previous_response_id", id));
+
+        var instructions = new StringBuilder();
+        var input = request.putArray("input");
+        for (Message message : prompt.getInstructions()) {
+            if (message instanceof SystemMessage) {
+                instructions.append(instructions.isEmpty() ? "" : "\n\n").append(message.getText());
+            } else if (message instanceof UserMessage userMessage) {
+                var item = input.addObject().put("role", "user");
+                if (userMessage.getMedia().isEmpty()) {
+                    item.put("content", userMessage.getText());
+                } else {
+                    var content = item.putArray("content");
+                    content.addObject().put("type", "input_text").put("text", userMessage.getText());
+                    for (var media : userMessage.getMedia()) {
+                        var url = (media.getData() instanceof byte[] bytes)
+                                ? "data:" + media.getMimeType() + ";base64," + Base64.getEncoder().encodeToString(bytes)
+                                : String.valueOf(media.getData());
+                        content.addObject().put("type", "input_image").put("image_url", url);
+                    }
+                }
+            } else if (message instanceof AssistantMessage) {
+                input.addObject().put("role", "assistant").put("content", message.getText());
+            }
+        }
+        if (!instructions.isEmpty())
+            request.put("instructions", instructions.toString());
+
+        return request;
+    }
+
+    ChatResponse toChatResponse(JsonNode response, String text) {
+        var truncated = "incomplete".equals(response.path("status").asText())
+                && "max_output_tokens".equals(response.path("incomplete_details").path("reason").asText());
+        var generation = new Generation(new AssistantMessage(text),
+                ChatGenerationMetadata.builder().finishReason(truncated ? "length" : "stop").build());
+
+        var usage = response.path("usage");
+        var metadata = ChatResponseMetadata.builder()
+                .id(response.path("id").asText())
+                .model(response.path("model").asText())
+                .usage(new ImmutableUsage(usage.path("input_tokens").asInt(), usage.path("output_tokens").asInt(), usage))
+                .keyValue(ConversationState.METADATA_KEY,
+                        new ConversationState(response.path("id").asText(), defaultOptions.getModel(), usage.path("total_tokens").asInt()))
+                .build();
+        return new ChatResponse(List.of(generation), metadata);
+    }
+
+    static String getText(JsonNode response) {
+        var text = new StringBuilder();
+        for (var item : response.path("output"))
+            if ("message".equals(item.path("type").asText()))
+                for (var content : item.path("content"))
+                    if ("output_text".equals(content.path("type").asText()))
+                        text.append(content.path("text").asText());
+        return text.toString();
+    }
+
+    private static RuntimeException toException(JsonNode error) {
+        var message = error.path("message").asText("The response failed");
+        return "server_error".equals(error.path("code").asText())
+                ? new TransientAiException(message) : new NonTransientAiException(message);
+    }
+
+    private static JsonNode readTree(String data) {
+        try {
+            return OBJECT_MAPPER.readTree(data);
+        } catch (JsonProcessingException e) {
+            throw new NonTransientAiException("Malformed response event: " + data, e);
+        }
+    }
+}
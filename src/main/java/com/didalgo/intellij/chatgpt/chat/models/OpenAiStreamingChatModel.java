@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.chat.metadata.RateLimitHeaders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import org.reactivestreams.Publisher;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * The chat model of the OpenAI compatible APIs, which streams the responses with its own light
+ * client instead of the Spring AI one, leaving the blocking calls to the latter.
+ * <p>
+ * The server-sent events are split into lines by the Netty pipeline, and each event is read
+ * straight from the network buffer by the {@link ChatCompletionChunkParser}, so the streamed
+ * chunks aren't mapped to the Spring AI objects of the whole chunk, nor copied as strings.
+ */
+public class OpenAiStreamingChatModel implements ChatModel {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+    private static final byte[] DATA_FIELD = "data:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+    private final ChatModel callDelegate;
+    private final String completionsUrl;
+    private final OpenAiChatOptions defaultOptions;
+    private final HttpClient httpClient;
+
+    public OpenAiStreamingChatModel(ChatModel callDelegate, String completionsUrl, String apiKey, OpenAiChatOptions defaultOptions, Duration readTimeout) {
+        this.callDelegate = callDelegate;
+        this.completionsUrl = completionsUrl;
+        this.defaultOptions = defaultOptions;
+        this.httpClient = HttpClient.create()
+                .responseTimeout(readTimeout)
+                .headers(headers -> headers
+                        .set(HttpHeaderNames.AUTHORIZATION, "Bearer " + apiKey)
+                        .set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                        .set(HttpHeaderNames.ACCEPT, "text/event-stream"))
+                .doOnResponse((response, connection) -> {
+                    // the error responses are read whole
+                    if (response.status().code() < 400)
+                        connection.addHandlerLast(new LineBasedFrameDecoder(MAX_LINE_LENGTH));
+                });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return defaultOptions;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return callDelegate.call(prompt);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Mono.fromCallable(() -> OBJECT_MAPPER.writeValueAsBytes(createRequest(prompt)))
+                .flatMapMany(body -> httpClient.post()
+                        .uri(completionsUrl)
+                        .send(Mono.fromSupplier(() -> Unpooled.wrappedBuffer(body)))
+                        .response((response, content) -> Flux.deferContextual(context -> {
+                            RateLimitHeaders.record(context, response.responseHeaders()::get);
+                            return readResponse(response, content);
+                        })));
+    }
+
+    private static Publisher<ChatResponse> readResponse(HttpClientResponse response, ByteBufFlux content) {
+        int status = response.status().code();
+        if (status >= 400)
+            return content.aggregate().asByteArray().defaultIfEmpty(new byte[0])
+                    .flatMap(error -> Mono.<ChatResponse>error(toException(response, error)));
+
+        return content.<ChatResponse>handle((line, sink) -> {
+            var chunk = parseEvent(line);
+            if (chunk != null)
+                sink.next(chunk);
+        });
+    }
+
+    /**
+     * Reads the line of the event stream.
+     *
+     * @return the chat response of the data line, or {@code null} if it's another kind of line or
+     *         carries nothing of interest
+     */
+    static ChatResponse parseEvent(ByteBuf line) {
+        int start = line.readerIndex(), end = line.writerIndex();
+        if (!startsWith(line, start, end, DATA_FIELD))
+            return null;
+
+        start += DATA_FIELD.length;
+        while (start < end && line.getByte(start) == ' ')
+            start++;
+        if (startsWith(line, start, end, DONE))
+            return null;
+
+        try {
+            if (line.hasArray())
+                return ChatCompletionChunkParser.parse(line.array(), line.arrayOffset() + start, end - start);
+            else
+                return ChatCompletionChunkParser.parse(new ByteBufInputStream(line.slice(start, end - start)));
+        } catch (IOException e) {
+            throw new NonTransientAiException("Malformed response event: " + line.toString(StandardCharsets.UTF_8), e);
+        }
+    }
+
+    private static boolean startsWith(ByteBuf line, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++)
+            if (line.getByte(start + i) != prefix[i])
+                return false;
+        return true;
+    }
+
+    ObjectNode createRequest(Prompt prompt) {
+        var options = prompt.getOptions();
+        var request = OBJECT_MAPPER.createObjectNode()
+                .put("model", defaultOptions.getModel())
+                .put("stream", true);
+        if (Boolean.TRUE.equals(defaultOptions.getStreamUsage()))
+            request.putObject("stream_options").put("include_usage", true);
+
+        var maxTokens = option(options, ChatOptions::getMaxTokens);
+        if (maxTokens != null)
+            request.put("max_tokens", maxTokens);
+        var temperature = option(options, ChatOptions::getTemperature);
+        if (temperature != null)
+            request.put("temperature", temperature);
+        var topP = option(options, ChatOptions::getTopP);
+        if (topP != null)
+            request.put("top_p", topP);
+        if (defaultOptions.getReasoningEffort() != null)
+            request.put("reasoning_effort", defaultOptions.getReasoningEffort());
+        if (options instanceof OpenAiChatOptions openAiOptions && openAiOptions.getHttpHeaders() != null) {
+            var prediction = openAiOptions.getHttpHeaders().get(PredictedOutputInterceptor.HEADER);
+            if (prediction != null)
+                request.putObject("prediction")
+                        .put("type", "content")
+                        .put("content", PredictedOutputInterceptor.decode(prediction));
+        }
+
+        var messages = request.putArray("messages");
+        for (Message message : prompt.getInstructions()) {
+            if (message instanceof SystemMessage) {
+                messages.addObject().put("role", "system").put("content", message.getText());
+            } else if (message instanceof UserMessage userMessage) {
+                var item = messages.addObject().put("role", "user");
+                if (userMessage.getMedia().isEmpty()) {
+                    item.put("content", userMessage.getText());
+                } else {
+                    var content = item.putArray("content");
+                    content.addObject().put("type", "text").put("text", userMessage.getText());
+                    for (var media : userMessage.getMedia()) {
+                        var url = (media.getData() instanceof byte[] bytes)
+                                ? "data:" + media.getMimeType() + ";base64," + Base64.getEncoder().encodeToString(bytes)
+                                : String.valueOf(media.getData());
+                        content.addObject().put("type", "image_url").putObject("image_url").put("url", url);
+                    }
+                }
+            } else if (message instanceof AssistantMessage) {
+                messages.addObject().put("role", "assistant").put("content", message.getText());
+            }
+        }
+        return request;
+    }
+
+    private <T> T option(ChatOptions options, Function<ChatOptions, T> getter) {
+        var value = (options == null) ? null : getter.apply(options);
+        return (value != null) ? value : getter.apply(defaultOptions);
+    }
+
+    /**
+     * Gives the exception of the error response, carrying its headers, so that e.g. the
+     * {@code Retry-After} of a "429 Too Many Requests" can be honored.
+     */
+    static WebClientResponseException toException(HttpClientResponse response, byte[] body) {
+        var headers = new HttpHeaders();
+        response.responseHeaders().forEach(header -> headers.add(header.getKey(), header.getValue()));
+        var status = HttpStatusCode.valueOf(response.status().code());
+        return WebClientResponseException.create(status, response.status().reasonPhrase(), headers, body, StandardCharsets.UTF_8, null);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Adds the {@linkplain PredictedOutput predicted output} to the chat completion requests of the
+ * OpenAI API, as the {@code "prediction"} parameter not exposed by the chat options.
+ * <p>
+ * The prediction travels with the request options as an internal HTTP header, which is taken
+ * off the request and turned into the parameter just before the request body is sent, both for
+ * the blocking and the streaming requests.
+ */
+final class PredictedOutputInterceptor implements ClientHttpRequestInterceptor, ExchangeFilterFunction {
+
+    static final String HEADER = "X-Didalgo-Predicted-Output";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Gives the HTTP headers carrying the prediction to the interceptor.
+     */
+    static Map<String, String> toHttpHeaders(PredictedOutput predictedOutput) {
+        var encoded = Base64.getEncoder().encodeToString(predictedOutput.content().getBytes(StandardCharsets.UTF_8));
+        return Map.of(HEADER, encoded);
+    }
+
+    static String decode(String header) {
+        return new String(Base64.getDecoder().decode(header), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds the {@code "prediction"} parameter to the JSON request body.
+     */
+    static byte[] withPrediction(byte[] body, String content) {
+        try {
+            var request = (ObjectNode) OBJECT_MAPPER.readTree(body);
+            request.putObject("prediction")
+                    .put("type", "content")
+                    .put("content", content);
+            return OBJECT_MAPPER.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        var header = request.getHeaders().getFirst(HEADER);
+        if (header == null)
+            return execution.execute(request, body);
+
+        request.getHeaders().remove(HEADER);
+        var predictedBody = withPrediction(body, decode(header));
+        request.getHeaders().setContentLength(predictedBody.length);
+        return execution.execute(request, predictedBody);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        var header = request.headers().getFirst(HEADER);
+        if (header == null)
+            return next.exchange(request);
+
+        var content = decode(header);
+        var inserter = request.body();
+        return next.exchange(ClientRequest.from(request)
+                .headers(headers -> headers.remove(HEADER))
+                .body((message, context) -> inserter.insert(new ClientHttpRequestDecorator(message) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        return DataBufferUtils.join(body).flatMap(buffer -> {
+                            var bytes = new byte[buffer.readableByteCount()];
+                            buffer.read(bytes);
+                            DataBufferUtils.release(buffer);
+
+                            var predictedBody = withPrediction(bytes, content);
+                            getHeaders().setContentLength(predictedBody.length);
+                            return super.writeWith(Mono.just(bufferFactory().wrap(predictedBody)));
+                        });
+                    }
+                }, context))
+                .build());
+    }
+}
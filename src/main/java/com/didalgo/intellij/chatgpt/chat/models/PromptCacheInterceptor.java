@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Adds the prompt cache breakpoints to the message requests of the Anthropic API, which caches
+ * the prompt prefixes marked with {@code "cache_control"} only, unlike the OpenAI API caching
+ * the prefixes automatically.
+ * <p>
+ * The breakpoints are put after the system prompt, which is followed by the pinned attachments,
+ * and after the conversation history, so that the next request of the conversation reads both
+ * from the cache, and sends anew only the messages added since.
+ */
+final class PromptCacheInterceptor implements ClientHttpRequestInterceptor, ExchangeFilterFunction {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Adds the cache breakpoints to the JSON request body, if it's a message request.
+     */
+    static byte[] withCacheBreakpoints(byte[] body) {
+        try {
+            if (!(OBJECT_MAPPER.readTree(body) instanceof ObjectNode request) || !(request.get("messages") instanceof ArrayNode messages))
+                return body;
+
+            var system = request.get("system");
+            if (system != null && system.isTextual() && !system.asText().isEmpty()) {
+                request.putArray("system").add(markedTextBlock(system.asText()));
+            } else if (system instanceof ArrayNode blocks && !blocks.isEmpty()) {
+                markLastBlock(blocks);
+            }
+
+            // the history ends with the message preceding the new turn
+            if (messages.size() > 1 && messages.get(messages.size() - 2) instanceof ObjectNode lastOfHistory) {
+                var content = lastOfHistory.get("content");
+                if (content != null && content.isTextual()) {
+                    lastOfHistory.putArray("content").add(markedTextBlock(content.asText()));
+                } else if (content instanceof ArrayNode blocks && !blocks.isEmpty()) {
+                    markLastBlock(blocks);
+                }
+            }
+            return OBJECT_MAPPER.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonNode markedTextBlock(String text) {
+        var block = OBJECT_MAPPER.createObjectNode()
+                .put("type", "text")
+                .put("text", text);
+        block.putObject("cache_control").put("type", "ephemeral");
+        return block;
+    }
+
+    private static void markLastBlock(ArrayNode blocks) {
+        if (blocks.get(blocks.size() - 1) instanceof ObjectNode block)
+            block.putObject("cache_control").put("type", "ephemeral");
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        var cachedBody = withCacheBreakpoints(body);
+        request.getHeaders().setContentLength(cachedBody.length);
+        return execution.execute(request, cachedBody);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        var inserter = request.body();
+        return next.exchange(ClientRequest.from(request)
+                .body((message, context) -> inserter.insert(new ClientHttpRequestDecorator(message) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        return DataBufferUtils.join(body).flatMap(buffer -> {
+                            var bytes = new byte[buffer.readableByteCount()];
+                            buffer.read(bytes);
+                            DataBufferUtils.release(buffer);
+
+                            var cachedBody = withCacheBreakpoints(bytes);
+                            getHeaders().setContentLength(cachedBody.length);
+                            return super.writeWith(Mono.just(bufferFactory().wrap(cachedBody)));
+                        });
+                    }
+                }, context))
+                .build());
+    }
+}
@@ -90,6 +90,23 @@ public enum StandardModel implements ModelType {
         return inputTokenLimit;
     }
 
+    @Override
+    public int getOutputTokenLimit() {
+        return switch (this) {
+            case CLAUDE_3_7_SONNET, CLAUDE_3_7_SONNET_20250219 -> 64000;
+            case CLAUDE_3_OPUS, CLAUDE_3_SONNET, CLAUDE_3_HAIKU -> 4096;
+            case GPT_3_5_TURBO, GPT_3_5_TURBO_0301, GPT_3_5_TURBO_0613, GPT_3_5_TURBO_16K, GPT_3_5_TURBO_16K_0613,
+                 GPT_3_5_TURBO_1106, GPT_3_5_TURBO_0125 -> 4096;
+            case GPT_4_TURBO, GPT_4_TURBO_PREVIEW, GPT_4_1106_PREVIEW, GPT_4_0125_PREVIEW -> 4096;
+            case GPT_4, GPT_4_0314, GPT_4_0613, GPT_4_32K, GPT_4_32K_0314, GPT_4_32K_0613 -> inputTokenLimit;
+            case GPT_4_O, GPT_4_O_MINI -> 16384;
+            case O1_PREVIEW, O1_PREVIEW_2024_09_12 -> 32768;
+            case O1_MINI, O1_MINI_2024_09_12 -> 65536;
+            case O1, O1_2024_12_17, O3_MINI, O3_MINI_2025_01_31 -> 100000;
+            default -> family.getDefaultOutputTokenLimit();
+        };
+    }
+
     @Override
     public ModelFamily getFamily() {
         return family;
@@ -110,6 +127,14 @@ public enum StandardModel implements ModelType {
         return supportsReasoningEffort;
     }
 
+    @Override
+    public boolean supportsPredictedOutputs() {
+        return switch (this) {
+            case GPT_4_O, GPT_4_O_MINI -> true;
+            default -> false;
+        };
+    }
+
     @Override
     public ChatOptions incompatibleChatOptionsOverride() {
         return incompatibleChatOptionsOverride;
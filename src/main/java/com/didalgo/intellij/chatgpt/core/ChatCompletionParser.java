@@ -5,11 +5,10 @@
 package com.didalgo.intellij.chatgpt.core;
 
 import com.didalgo.intellij.chatgpt.text.TextFragment;
+import com.didalgo.intellij.chatgpt.text.TextFragmentFormatter;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.model.Generation;
 
-import java.util.List;
-
 public class ChatCompletionParser {
 
     public static TextFragment parseTextContent(Generation generation) {
@@ -18,8 +17,17 @@ public class ChatCompletionParser {
             assistantMessage = new AssistantMessage("");
         }
 
-        TextFragment parseResult = TextFragment.of(assistantMessage.getText());
+        return parseTextContent(assistantMessage.getText());
+    }
+
+    public static TextFragment parseTextContent(CharSequence text) {
+        TextFragment parseResult = TextFragment.of(text.toString());
         parseResult.toHtml(); // pre-compute and cache HTML content in the current thread
         return parseResult;
     }
+
+    public static TextFragment parseTextContent(CharSequence text, TextFragmentFormatter formatter) {
+        TextFragment markdown = TextFragment.of(text.toString());
+        return TextFragment.of(markdown.markdown(), formatter.format(markdown));
+    }
 }
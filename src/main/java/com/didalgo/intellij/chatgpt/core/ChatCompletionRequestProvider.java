@@ -4,7 +4,9 @@
  */
 package com.didalgo.intellij.chatgpt.core;
 
+import com.didalgo.intellij.chatgpt.chat.ChatMessageUtils;
 import com.didalgo.intellij.chatgpt.chat.ConversationContext;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
 import com.intellij.openapi.components.Service;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
@@ -13,7 +15,11 @@ import org.springframework.ai.chat.prompt.Prompt;
 public final class ChatCompletionRequestProvider {
 
     public Prompt chatCompletionRequest(ConversationContext ctx, UserMessage userMessage) {
-        ctx.addChatMessage(userMessage);
-        return new Prompt(ctx.getChatMessages(ctx.getModelType(), userMessage));
+        var model = ctx.getModelType();
+        var messages = ctx.getChatMessages(model, userMessage);
+        int promptTokens = ChatMessageUtils.countTokens(messages, model.getTokenizer(), model.getChatFormatDescriptor());
+        int maxOutputTokens = ResponseLength.of(userMessage).getOutputTokenBudget(model, promptTokens);
+
+        return new Prompt(messages, model.getFamily().createRequestOptions(maxOutputTokens));
     }
 }
@@ -34,4 +34,14 @@ public class GPT4Panel extends ModelPagePanel implements Configurable {
     protected boolean isStreamOptionsApiAvailable() {
         return true;
     }
+
+    @Override
+    protected boolean isResponsesApiAvailable() {
+        return true;
+    }
+
+    @Override
+    protected boolean isNativeStreamingAvailable() {
+        return true;
+    }
 }
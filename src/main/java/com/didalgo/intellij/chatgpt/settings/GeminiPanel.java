@@ -25,4 +25,8 @@ public class GeminiPanel extends ModelPagePanel implements Configurable {
         return ChatGptBundle.message("ui.setting.menu.text");
     }
 
+    @Override
+    protected boolean isNativeStreamingAvailable() {
+        return true;
+    }
 }
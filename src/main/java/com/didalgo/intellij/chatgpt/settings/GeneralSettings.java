@@ -66,6 +66,17 @@ public class GeneralSettings implements PersistentStateComponent<GeneralSettings
     private volatile boolean enableAvatar = true;
     private volatile boolean enableLineWarp = true;
     private volatile Boolean enableInitialMessage = null;
+    private volatile int streamCoalescingDelayMillis = 16;
+    private volatile int streamCoalescingMaxChars = 256;
+    private volatile AssistantType.System hedgingAssistantType;
+    private volatile int hedgingDelayMillis = 0;
+    private volatile AssistantType.System draftAssistantType;
+    private volatile int chatMaxRetries = 2;
+    private volatile int circuitBreakerFailureThreshold = 5;
+    private volatile int circuitBreakerOpenSeconds = 30;
+    private volatile boolean useVirtualThreads = false;
+    private volatile int maxContinuations = 2;
+    private volatile boolean enableEditResponses = false;
 
     private volatile AssistantOptions gpt35Config;
     private volatile AssistantOptions gpt4Config;
@@ -159,6 +170,11 @@ public class GeneralSettings implements PersistentStateComponent<GeneralSettings
         private volatile String azureDeploymentName = "";
         private volatile List<String> apiEndpointUrlHistory = List.of(apiEndpointUrl);
         private volatile List<CustomModel> apiModels = List.of();
+        private volatile int repetitionLimit = -1;
+        private volatile int maxResponseChars = -1;
+        private volatile boolean enableResponsesApi = false;
+        private volatile boolean enablePromptCaching = true;
+        private volatile boolean enableNativeStreaming = false;
 
         public AssistantOptions() {
             this((CredentialStore) null);
@@ -209,7 +225,12 @@ public class GeneralSettings implements PersistentStateComponent<GeneralSettings
                     apiEndpointUrl,
                     azureApiEndpoint,
                     azureDeploymentName,
-                    defaultIfNull(apiModels, List.of())
+                    defaultIfNull(apiModels, List.of()),
+                    repetitionLimit,
+                    maxResponseChars,
+                    enableResponsesApi,
+                    enablePromptCaching,
+                    enableNativeStreaming
             );
         }
 
@@ -230,7 +251,12 @@ public class GeneralSettings implements PersistentStateComponent<GeneralSettings
                         && Objects.equals(apiEndpointUrl, that.apiEndpointUrl)
                         && Objects.equals(azureApiEndpoint, that.azureApiEndpoint)
                         && Objects.equals(azureDeploymentName, that.azureDeploymentName)
-                        && Objects.equals(defaultIfNull(apiModels, List.of()), defaultIfNull(that.apiModels, List.of()));
+                        && Objects.equals(defaultIfNull(apiModels, List.of()), defaultIfNull(that.apiModels, List.of()))
+                        && repetitionLimit == that.repetitionLimit
+                        && maxResponseChars == that.maxResponseChars
+                        && enableResponsesApi == that.enableResponsesApi
+                        && enablePromptCaching == that.enablePromptCaching
+                        && enableNativeStreaming == that.enableNativeStreaming;
             }
             return false;
         }
@@ -262,6 +288,13 @@ public class GeneralSettings implements PersistentStateComponent<GeneralSettings
             return () -> "";
         }
 
+        @Override
+        @Transient
+        public boolean isConversationStateOnServer() {
+            var family = (assistantType == null) ? null : assistantType.getFamily();
+            return family != null && family.supportsConversationState(this);
+        }
+
         private CredentialStore credentialStore() {
             return (credentialStore != null) ? credentialStore : CredentialStore.systemCredentialStore();
         }
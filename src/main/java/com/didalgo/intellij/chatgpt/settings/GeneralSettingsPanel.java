@@ -7,10 +7,14 @@ package com.didalgo.intellij.chatgpt.settings;
 import com.didalgo.intellij.chatgpt.chat.AssistantType;
 import com.intellij.openapi.application.ex.ApplicationManagerEx;
 import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.ui.ComboBox;
 import com.intellij.openapi.ui.MessageDialogBuilder;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.SimpleListCellRenderer;
 import com.intellij.ui.TitledSeparator;
 import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
@@ -20,6 +24,7 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class GeneralSettingsPanel implements Configurable {
@@ -36,6 +41,17 @@ public class GeneralSettingsPanel implements Configurable {
     private JLabel readTimeoutHelpLabel;
     private JLabel contentOrderHelpLabel;
     private JPanel openaiAssistantTitledBorderBox;
+    private JPanel resilienceTitledBorderBox;
+    private JPanel resilienceSettingsPanel;
+    private ComboBox<AssistantType.System> draftAssistantComboBox;
+    private ComboBox<AssistantType.System> hedgingAssistantComboBox;
+    private JBIntSpinner hedgingDelaySpinner;
+    private JBIntSpinner chatMaxRetriesSpinner;
+    private JBIntSpinner circuitBreakerFailureThresholdSpinner;
+    private JBIntSpinner circuitBreakerOpenSecondsSpinner;
+    private JBIntSpinner maxContinuationsSpinner;
+    private JCheckBox useVirtualThreadsCheckBox;
+    private JCheckBox enableEditResponsesCheckBox;
     private final String[] comboboxItemsString = {
             AssistantType.System.GPT_3_5.displayName(),
             AssistantType.System.ONLINE.displayName()};
@@ -63,6 +79,15 @@ public class GeneralSettingsPanel implements Configurable {
         secondCombobox.setSelectedItem(state.contentOrder.get(2));
         enableLineWarpCheckBox.setSelected(state.isEnableLineWarp());
         enableInitialMessageCheckBox.setSelected(Boolean.TRUE.equals(state.getEnableInitialMessage()));
+        draftAssistantComboBox.setSelectedItem(state.getDraftAssistantType());
+        hedgingAssistantComboBox.setSelectedItem(state.getHedgingAssistantType());
+        hedgingDelaySpinner.setNumber(state.getHedgingDelayMillis());
+        chatMaxRetriesSpinner.setNumber(state.getChatMaxRetries());
+        circuitBreakerFailureThresholdSpinner.setNumber(state.getCircuitBreakerFailureThreshold());
+        circuitBreakerOpenSecondsSpinner.setNumber(state.getCircuitBreakerOpenSeconds());
+        maxContinuationsSpinner.setNumber(state.getMaxContinuations());
+        useVirtualThreadsCheckBox.setSelected(state.isUseVirtualThreads());
+        enableEditResponsesCheckBox.setSelected(state.isEnableEditResponses());
         initHelp();
     }
 
@@ -86,7 +111,16 @@ public class GeneralSettingsPanel implements Configurable {
                 || !StringUtil.equals(state.contentOrder.get(1), (String)firstCombobox.getSelectedItem())
                 || !StringUtil.equals(state.contentOrder.get(2), (String)secondCombobox.getSelectedItem())
                 || !state.isEnableLineWarp() == enableLineWarpCheckBox.isSelected()
-                || !Boolean.TRUE.equals(state.getEnableInitialMessage()) == enableInitialMessageCheckBox.isSelected();
+                || !Boolean.TRUE.equals(state.getEnableInitialMessage()) == enableInitialMessageCheckBox.isSelected()
+                || state.getDraftAssistantType() != draftAssistantComboBox.getSelectedItem()
+                || state.getHedgingAssistantType() != hedgingAssistantComboBox.getSelectedItem()
+                || state.getHedgingDelayMillis() != hedgingDelaySpinner.getNumber()
+                || state.getChatMaxRetries() != chatMaxRetriesSpinner.getNumber()
+                || state.getCircuitBreakerFailureThreshold() != circuitBreakerFailureThresholdSpinner.getNumber()
+                || state.getCircuitBreakerOpenSeconds() != circuitBreakerOpenSecondsSpinner.getNumber()
+                || state.getMaxContinuations() != maxContinuationsSpinner.getNumber()
+                || state.isUseVirtualThreads() != useVirtualThreadsCheckBox.isSelected()
+                || state.isEnableEditResponses() != enableEditResponsesCheckBox.isSelected();
     }
 
     @Override
@@ -117,6 +151,15 @@ public class GeneralSettingsPanel implements Configurable {
         state.contentOrder.put(2, secondSelected);
         state.setEnableLineWarp(enableLineWarpCheckBox.isSelected());
         state.setEnableInitialMessage(enableInitialMessageCheckBox.isSelected());
+        state.setDraftAssistantType((AssistantType.System) draftAssistantComboBox.getSelectedItem());
+        state.setHedgingAssistantType((AssistantType.System) hedgingAssistantComboBox.getSelectedItem());
+        state.setHedgingDelayMillis(hedgingDelaySpinner.getNumber());
+        state.setChatMaxRetries(chatMaxRetriesSpinner.getNumber());
+        state.setCircuitBreakerFailureThreshold(circuitBreakerFailureThresholdSpinner.getNumber());
+        state.setCircuitBreakerOpenSeconds(circuitBreakerOpenSecondsSpinner.getNumber());
+        state.setMaxContinuations(maxContinuationsSpinner.getNumber());
+        state.setUseVirtualThreads(useVirtualThreadsCheckBox.isSelected());
+        state.setEnableEditResponses(enableEditResponsesCheckBox.isSelected());
 
         if (needRestart) {
             boolean yes = MessageDialogBuilder.yesNo("Content order changed!", "Changing " +
@@ -151,6 +194,43 @@ public class GeneralSettingsPanel implements Configurable {
         openaiAssistantTitledBorderBox = new JPanel(new BorderLayout());
         TitledSeparator oaUrl = new TitledSeparator("OpenAI Assistant");
         openaiAssistantTitledBorderBox.add(oaUrl,BorderLayout.CENTER);
+
+        resilienceTitledBorderBox = new JPanel(new BorderLayout());
+        TitledSeparator tsResilience = new TitledSeparator(ChatGptBundle.message("ui.setting.resilience.title"));
+        resilienceTitledBorderBox.add(tsResilience,BorderLayout.CENTER);
+
+        draftAssistantComboBox = createAssistantComboBox();
+        hedgingAssistantComboBox = createAssistantComboBox();
+        hedgingDelaySpinner = new JBIntSpinner(0, 0, 60_000, 100);
+        chatMaxRetriesSpinner = new JBIntSpinner(2, 0, 10);
+        circuitBreakerFailureThresholdSpinner = new JBIntSpinner(5, 1, 100);
+        circuitBreakerOpenSecondsSpinner = new JBIntSpinner(30, 0, 3600, 5);
+        maxContinuationsSpinner = new JBIntSpinner(2, 0, 10);
+        useVirtualThreadsCheckBox = new JCheckBox(ChatGptBundle.message("ui.setting.resilience.virtual_threads"));
+        enableEditResponsesCheckBox = new JCheckBox(ChatGptBundle.message("ui.setting.resilience.edit_responses"));
+        resilienceSettingsPanel = FormBuilder.createFormBuilder()
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.resilience.draft_assistant.label"), draftAssistantComboBox)
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.resilience.hedging_assistant.label"), hedgingAssistantComboBox)
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.resilience.hedging_delay.label"), hedgingDelaySpinner)
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.resilience.max_retries.label"), chatMaxRetriesSpinner)
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.resilience.circuit_breaker_threshold.label"), circuitBreakerFailureThresholdSpinner)
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.resilience.circuit_breaker_open.label"), circuitBreakerOpenSecondsSpinner)
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.resilience.max_continuations.label"), maxContinuationsSpinner)
+                .addComponent(useVirtualThreadsCheckBox)
+                .addComponent(enableEditResponsesCheckBox)
+                .getPanel();
+    }
+
+    private static ComboBox<AssistantType.System> createAssistantComboBox() {
+        var assistants = new ArrayList<AssistantType.System>();
+        assistants.add(null);
+        Arrays.stream(AssistantType.System.values())
+                .filter(assistant -> assistant.getFamily() != null)
+                .forEach(assistants::add);
+
+        var comboBox = new ComboBox<>(new DefaultComboBoxModel<>(assistants.toArray(AssistantType.System[]::new)));
+        comboBox.setRenderer(SimpleListCellRenderer.create(ChatGptBundle.message("ui.setting.resilience.none"), AssistantType.System::displayName));
+        return comboBox;
     }
 
     public void initHelp() {
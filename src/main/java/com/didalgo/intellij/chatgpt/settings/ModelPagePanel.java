@@ -23,11 +23,13 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.ui.MessageType;
 import com.intellij.openapi.ui.OptionAction;
+import com.intellij.ui.JBIntSpinner;
 import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.TextFieldWithHistory;
 import com.intellij.ui.TitledSeparator;
 import com.intellij.ui.components.JBOptionButton;
 import com.intellij.ui.components.JBPasswordField;
+import com.intellij.util.ui.FormBuilder;
 import com.intellij.util.ui.UIUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -71,6 +73,13 @@ public abstract class ModelPagePanel implements Configurable, Configurable.Compo
     private JButton refreshModelsButton;
     private JComboBox<String> reasoningEffortComboBox;
     private JLabel reasoningEffortLabel;
+    private JPanel responseTitledBorderBox;
+    private JPanel responseSettingsPanel;
+    private JBIntSpinner repetitionLimitSpinner;
+    private JBIntSpinner maxResponseCharsSpinner;
+    private JCheckBox enableResponsesApiCheckBox;
+    private JCheckBox enablePromptCachingCheckBox;
+    private JCheckBox enableNativeStreamingCheckBox;
 
     private final AssistantType type;
     private final Predicate<ModelType> modelFilter;
@@ -116,6 +125,15 @@ public abstract class ModelPagePanel implements Configurable, Configurable.Compo
         if (!isStreamOptionsApiAvailable()) {
             removeComponent(enableStreamOptionsCheckBox);
         }
+        if (!isResponsesApiAvailable()) {
+            removeComponent(enableResponsesApiCheckBox);
+        }
+        if (!isPromptCachingAvailable()) {
+            removeComponent(enablePromptCachingCheckBox);
+        }
+        if (!isNativeStreamingAvailable()) {
+            removeComponent(enableNativeStreamingCheckBox);
+        }
         updateReasoningEffortVisibility();
     }
     
@@ -156,6 +174,18 @@ public abstract class ModelPagePanel implements Configurable, Configurable.Compo
         return false;
     }
 
+    protected boolean isResponsesApiAvailable() {
+        return false;
+    }
+
+    protected boolean isPromptCachingAvailable() {
+        return false;
+    }
+
+    protected boolean isNativeStreamingAvailable() {
+        return false;
+    }
+
     protected JButton createRefreshModelsButton() {
         var refreshAction = new RefreshModelsAction();
         return new JBOptionButton(refreshAction, refreshAction.getOptions());
@@ -306,6 +336,11 @@ public abstract class ModelPagePanel implements Configurable, Configurable.Compo
         azureApiEndpointField.setText(config.getAzureApiEndpoint());
         azureDeploymentNameField.setText(config.getAzureDeploymentName());
         reasoningEffortComboBox.setSelectedItem(config.getReasoningEffort());
+        repetitionLimitSpinner.setNumber(config.getRepetitionLimit());
+        maxResponseCharsSpinner.setNumber(config.getMaxResponseChars());
+        enableResponsesApiCheckBox.setSelected(config.isEnableResponsesApi());
+        enablePromptCachingCheckBox.setSelected(config.isEnablePromptCaching());
+        enableNativeStreamingCheckBox.setSelected(config.isEnableNativeStreaming());
         updateReasoningEffortVisibility();
     }
 
@@ -330,6 +365,11 @@ public abstract class ModelPagePanel implements Configurable, Configurable.Compo
                 !config.getAzureApiEndpoint().equals(azureApiEndpointField.getText()) ||
                 !config.getAzureDeploymentName().equals(azureDeploymentNameField.getText()) ||
                 !config.getApiEndpointUrl().equals(customizeServerField.getText()) ||
+                config.getRepetitionLimit() != repetitionLimitSpinner.getNumber() ||
+                config.getMaxResponseChars() != maxResponseCharsSpinner.getNumber() ||
+                config.isEnableResponsesApi() != enableResponsesApiCheckBox.isSelected() ||
+                config.isEnablePromptCaching() != enablePromptCachingCheckBox.isSelected() ||
+                config.isEnableNativeStreaming() != enableNativeStreamingCheckBox.isSelected() ||
                 !defaultIfNull(config.getApiModels(), List.of()).equals(defaultIfNull(apiModels, List.of()));
     }
 
@@ -360,6 +400,11 @@ public abstract class ModelPagePanel implements Configurable, Configurable.Compo
         config.setApiEndpointUrl(customizeServerField.getText());
         config.setAzureApiEndpoint(azureApiEndpointField.getText());
         config.setAzureDeploymentName(azureDeploymentNameField.getText());
+        config.setRepetitionLimit(repetitionLimitSpinner.getNumber());
+        config.setMaxResponseChars(maxResponseCharsSpinner.getNumber());
+        config.setEnableResponsesApi(enableResponsesApiCheckBox.isSelected());
+        config.setEnablePromptCaching(enablePromptCachingCheckBox.isSelected());
+        config.setEnableNativeStreaming(enableNativeStreamingCheckBox.isSelected());
         if (!config.getApiEndpointUrlHistory().contains(config.getApiEndpointUrl()))
             customizeServerField.addCurrentTextToHistory();
         config.setApiEndpointUrlHistory(customizeServerField.getHistory());
@@ -399,6 +444,24 @@ public abstract class ModelPagePanel implements Configurable, Configurable.Compo
         TitledSeparator url = new TitledSeparator("Server Settings");
         urlTitledBox.add(url, BorderLayout.CENTER);
 
+        responseTitledBorderBox = new JPanel(new BorderLayout());
+        TitledSeparator response = new TitledSeparator(ChatGptBundle.message("ui.setting.response.title"));
+        responseTitledBorderBox.add(response, BorderLayout.CENTER);
+
+        repetitionLimitSpinner = new JBIntSpinner(-1, -1, 1000);
+        maxResponseCharsSpinner = new JBIntSpinner(-1, -1, 10_000_000, 1000);
+        enableResponsesApiCheckBox = new JCheckBox(ChatGptBundle.message("ui.setting.response.responses_api"));
+        enablePromptCachingCheckBox = new JCheckBox(ChatGptBundle.message("ui.setting.response.prompt_caching"));
+        enableNativeStreamingCheckBox = new JCheckBox(ChatGptBundle.message("ui.setting.response.native_streaming"));
+        responseSettingsPanel = FormBuilder.createFormBuilder()
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.response.repetition_limit.label"), repetitionLimitSpinner)
+                .addLabeledComponent(ChatGptBundle.message("ui.setting.response.max_chars.label"), maxResponseCharsSpinner)
+                .addTooltip(ChatGptBundle.message("ui.setting.response.default.remark"))
+                .addComponent(enableResponsesApiCheckBox)
+                .addComponent(enablePromptCachingCheckBox)
+                .addComponent(enableNativeStreamingCheckBox)
+                .getPanel();
+
         refreshModelsButton = createRefreshModelsButton();
         refreshModelsButton.setFocusable(true);
     }
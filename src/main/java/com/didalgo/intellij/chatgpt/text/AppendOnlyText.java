@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.text;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An append-only text accumulator backed by a list of immutable chunks.
+ * <p>
+ * Appending a chunk never copies the previously accumulated text, and {@link #snapshot()}
+ * returns a read-only {@link CharSequence} view of the current content in constant time.
+ * Snapshots share the chunk storage with the accumulator and stay unchanged while
+ * further chunks are appended.
+ * <p>
+ * The accumulator itself is meant to be written by a single thread at a time (e.g. by
+ * the subscriber of a reactive stream). Snapshots are immutable and may be freely
+ * passed to and read by other threads.
+ */
+public final class AppendOnlyText implements CharSequence {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] chunks = new String[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int count;
+    private int length;
+
+    /**
+     * Appends the given chunk of text to the end of this accumulator.
+     *
+     * @param chunk the text to append, {@code null} and empty chunks are ignored
+     * @return this accumulator
+     */
+    public AppendOnlyText append(CharSequence chunk) {
+        if (chunk == null || chunk.isEmpty())
+            return this;
+
+        if (count == chunks.length) {
+            // old snapshots keep referring to the previous arrays
+            chunks = Arrays.copyOf(chunks, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        chunks[count] = chunk.toString();
+        ends[count] = length = Math.addExact(length, chunk.length());
+        count++;
+        return this;
+    }
+
+    /**
+     * Gives a read-only view of the text accumulated so far.
+     *
+     * @return the immutable snapshot
+     */
+    public Snapshot snapshot() {
+        return (count == 0) ? Snapshot.EMPTY : new Snapshot(chunks, ends, count, length);
+    }
+
+    /**
+     * Gives the number of chunks appended so far.
+     */
+    public int chunkCount() {
+        return count;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return snapshot().charAt(index);
+    }
+
+    @Override
+    public @NotNull CharSequence subSequence(int start, int end) {
+        return snapshot().subSequence(start, end);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable view of the text accumulated up to a certain point.
+     */
+    public static final class Snapshot implements CharSequence {
+
+        static final Snapshot EMPTY = new Snapshot(new String[0], new int[0], 0, 0);
+
+        private final String[] chunks;
+        private final int[] ends;
+        private final int count;
+        private final int length;
+        private String string;
+
+        private Snapshot(String[] chunks, int[] ends, int count, int length) {
+            this.chunks = chunks;
+            this.ends = ends;
+            this.count = count;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            Objects.checkIndex(index, length);
+            int chunk = chunkIndexOf(index);
+            int start = (chunk == 0) ? 0 : ends[chunk - 1];
+            return chunks[chunk].charAt(index - start);
+        }
+
+        private int chunkIndexOf(int index) {
+            int pos = Arrays.binarySearch(ends, 0, count, index);
+            return (pos >= 0) ? pos + 1 : -pos - 1;
+        }
+
+        @Override
+        public @NotNull CharSequence subSequence(int start, int end) {
+            Objects.checkFromToIndex(start, end, length);
+            String cached = string;
+            if (cached != null)
+                return cached.substring(start, end);
+
+            return appendTo(new StringBuilder(end - start), start, end).toString();
+        }
+
+        /**
+         * Appends the characters of this snapshot to the given buffer without creating
+         * an intermediate {@code String}.
+         *
+         * @param buf the buffer to append to
+         * @return the buffer
+         */
+        public StringBuilder appendTo(StringBuilder buf) {
+            return appendTo(buf, 0, length);
+        }
+
+        private StringBuilder appendTo(StringBuilder buf, int start, int end) {
+            if (start == end)
+                return buf;
+
+            int chunk = chunkIndexOf(start);
+            int chunkStart = (chunk == 0) ? 0 : ends[chunk - 1];
+            while (chunkStart < end) {
+                String text = chunks[chunk];
+                buf.append(text, Math.max(start - chunkStart, 0), Math.min(end - chunkStart, text.length()));
+                chunkStart = ends[chunk++];
+            }
+            return buf;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            String result = string;
+            if (result == null) {
+                result = (count == 1) ? chunks[0] : appendTo(new StringBuilder(length)).toString();
+                string = result;
+            }
+            return result;
+        }
+    }
+}
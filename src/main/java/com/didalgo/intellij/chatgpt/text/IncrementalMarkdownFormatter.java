@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.text;
+
+import com.vladsch.flexmark.util.ast.Node;
+
+import java.util.regex.Pattern;
+
+/**
+ * A markdown to HTML formatter optimized for text which grows by appending, such as a
+ * streamed chat response.
+ * <p>
+ * The formatter remembers the HTML of the leading blocks which can no longer change when
+ * more text is appended, and on each call parses and renders only the trailing part of the
+ * text, starting from the last block which may still be open (e.g. an unterminated code
+ * fence, list or table). A block is considered closed when it is followed by a blank line
+ * and by the complete first line of another top-level block.
+ * <p>
+ * When the formatted text doesn't start with the previously cached prefix, or when it
+ * contains link reference definitions (which may affect blocks anywhere in the document),
+ * the formatter falls back to formatting the whole text. The output is always identical
+ * to {@link TextFragmentToHtmlFormatter#format(TextFragment)}.
+ * <p>
+ * Instances are stateful and meant to be used for a single growing text.
+ */
+public class IncrementalMarkdownFormatter implements TextFragmentFormatter {
+
+    private static final Pattern LINK_REFERENCE_DEFINITION = Pattern.compile("(?m)^ {0,3}\\[[^\\]\\n]+\\]:");
+
+    private final TextFragmentToHtmlFormatter formatter;
+
+    private CharSequence source = "";
+    private int stableLength;
+    private String stableHtml = "";
+    private boolean fullParseRequired;
+
+    public IncrementalMarkdownFormatter() {
+        this(TextFragmentToHtmlFormatter.getDefault());
+    }
+
+    public IncrementalMarkdownFormatter(TextFragmentToHtmlFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    @Override
+    public synchronized String format(TextFragment text) {
+        String markdown = text.markdown();
+        if (!startsWithStablePrefix(markdown))
+            reset();
+
+        source = markdown;
+        return formatTail(markdown.substring(stableLength));
+    }
+
+    /**
+     * Formats the text which extends the text formatted last, such as a newer snapshot of the
+     * same streamed response. Unlike {@link #format(TextFragment)}, the cached prefix isn't
+     * compared with the text, and only the part of the text following it is copied into a
+     * {@code String}.
+     *
+     * @param text the text starting with the text formatted last
+     * @return the HTML of the whole text
+     */
+    public synchronized String formatAppended(CharSequence text) {
+        if (text.length() < stableLength)
+            reset();
+
+        source = text;
+        return formatTail(text.subSequence(stableLength, text.length()).toString());
+    }
+
+    private String formatTail(String tail) {
+        if (!fullParseRequired && LINK_REFERENCE_DEFINITION.matcher(tail).find()) {
+            fullParseRequired = true;
+            if (stableLength > 0) {
+                stableLength = 0;
+                stableHtml = "";
+                tail = source.toString();
+            }
+        }
+
+        Node document = formatter.parse(tail);
+        String tailHtml = formatter.render(document);
+        if (!fullParseRequired)
+            advanceStablePrefix(tail, document);
+
+        return stableHtml.isEmpty() ? tailHtml : stableHtml.concat(tailHtml);
+    }
+
+    /**
+     * Gives the length of the leading part of the text, which HTML is currently cached.
+     *
+     * @return the number of characters of the cached markdown prefix
+     */
+    public synchronized int getStableLength() {
+        return stableLength;
+    }
+
+    private boolean startsWithStablePrefix(String markdown) {
+        if (markdown.length() < stableLength)
+            return false;
+        if (source instanceof String string)
+            return markdown.regionMatches(0, string, 0, stableLength);
+
+        for (int i = 0; i < stableLength; i++)
+            if (markdown.charAt(i) != source.charAt(i))
+                return false;
+        return true;
+    }
+
+    public synchronized void reset() {
+        source = "";
+        stableLength = 0;
+        stableHtml = "";
+        fullParseRequired = false;
+    }
+
+    private void advanceStablePrefix(String tail, Node document) {
+        int boundary = findStableBoundary(tail, document);
+        if (boundary > 0) {
+            stableHtml = stableHtml.concat(formatter.render(formatter.parse(tail.substring(0, boundary))));
+            stableLength += boundary;
+        }
+    }
+
+    private static int findStableBoundary(String tail, Node document) {
+        var parsedChars = document.getChars();
+        int boundary = 0;
+        int line = 0, parsedPos = 0;
+        int prevLineStart = 0, lineStart = 0;
+
+        for (Node block = document.getFirstChild(); block != null; block = block.getNext()) {
+            // line numbers are the same in source and in escaped text
+            int blockStart = block.getStartOffset();
+            for (; parsedPos < blockStart; parsedPos++) {
+                if (parsedChars.charAt(parsedPos) == '\n') {
+                    line++;
+                    prevLineStart = lineStart;
+                    lineStart = tail.indexOf('\n', lineStart) + 1;
+                }
+            }
+
+            if (line > 0 && block != document.getFirstChild()
+                    && tail.substring(prevLineStart, lineStart).isBlank()
+                    && tail.indexOf('\n', lineStart) >= 0) {
+                boundary = lineStart;
+            }
+        }
+        return boundary;
+    }
+}
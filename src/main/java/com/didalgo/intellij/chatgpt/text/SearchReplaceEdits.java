@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the code changes given as search/replace blocks, instead of the whole rewritten code.
+ * <p>
+ * The blocks are requested with the {@link #FORMAT_INSTRUCTIONS} and have the form:
+ * <pre>
+ * &lt;&lt;&lt;&lt;&lt;&lt;&lt; SEARCH
+ * original lines
+ * =======
+ * replacement lines
+ * &gt;&gt;&gt;&gt;&gt;&gt;&gt; REPLACE
+ * </pre>
+ * Each block is applied to the code as changed by the blocks before it. The original lines are
+ * looked up exactly first, and then line by line ignoring the leading and trailing whitespace,
+ * in which case the replacement lines are re-indented to the indentation of the matched lines.
+ *
+ * @author Mariusz Bernacki
+ */
+public final class SearchReplaceEdits {
+
+    public static final String FORMAT_INSTRUCTIONS = """
+
+            Respond with the changes only, as one or more SEARCH/REPLACE blocks in the format below, without repeating the unchanged code. \
+            The SEARCH lines must match the original code exactly, including the whitespace, and be just long enough to be unique. \
+            Put the blocks in the order of the code.
+
+            <<<<<<< SEARCH
+            original lines
+            =======
+            replacement lines
+            >>>>>>> REPLACE
+            """;
+
+    private static final Pattern SEARCH = Pattern.compile("^<{5,9} ?SEARCH\\s*$");
+    private static final Pattern DIVIDER = Pattern.compile("^={5,9}\\s*$");
+    private static final Pattern REPLACE = Pattern.compile("^>{5,9} ?REPLACE\\s*$");
+
+    private SearchReplaceEdits() { }
+
+    /**
+     * A single change of the code.
+     *
+     * @param search the original lines
+     * @param replace the replacement lines
+     */
+    public record Edit(String search, String replace) { }
+
+    /**
+     * Thrown when an edit can't be applied, as its original lines aren't found in the code.
+     */
+    public static class MismatchException extends Exception {
+        public MismatchException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Parses the search/replace blocks from the response, skipping any other text around them.
+     *
+     * @return the edits, or an empty list if the response has none
+     */
+    public static List<Edit> parse(CharSequence response) {
+        var edits = new ArrayList<Edit>();
+        StringBuilder search = null, replace = null;
+
+        for (String line : response.toString().split("\n", -1)) {
+            if (SEARCH.matcher(line).matches()) {
+                search = new StringBuilder();
+                replace = null;
+            } else if (search != null && replace == null && DIVIDER.matcher(line).matches()) {
+                replace = new StringBuilder();
+            } else if (replace != null && REPLACE.matcher(line).matches()) {
+                edits.add(new Edit(search.toString(), replace.toString()));
+                search = replace = null;
+            } else if (replace != null) {
+                replace.append(line).append('\n');
+            } else if (search != null) {
+                search.append(line).append('\n');
+            }
+        }
+        return edits;
+    }
+
+    /**
+     * Applies the edits to the code.
+     *
+     * @param code the original code
+     * @param edits the edits to apply in order
+     * @return the changed code
+     * @throws MismatchException if the original lines of any of the edits are not found
+     */
+    public static String apply(String code, List<Edit> edits) throws MismatchException {
+        for (int i = 0; i < edits.size(); i++) {
+            var edit = edits.get(i);
+            if (edit.search().isBlank()) {
+                if (!code.isBlank())
+                    throw new MismatchException("Edit " + (i + 1) + " of " + edits.size() + " has no original lines");
+                code = edit.replace();
+                continue;
+            }
+
+            int index = code.indexOf(edit.search());
+            if (index >= 0) {
+                code = code.substring(0, index) + edit.replace() + code.substring(index + edit.search().length());
+                continue;
+            }
+
+            var fuzzy = applyIgnoringWhitespace(code, edit);
+            if (fuzzy == null)
+                throw new MismatchException("Edit " + (i + 1) + " of " + edits.size() + " does not match the code");
+            code = fuzzy;
+        }
+        return code;
+    }
+
+    private static String applyIgnoringWhitespace(String code, Edit edit) {
+        var lines = code.split("\n", -1);
+        var searchLines = stripTrailingNewline(edit.search()).split("\n", -1);
+
+        int match = -1;
+        for (int start = 0; start + searchLines.length <= lines.length && match < 0; start++) {
+            match = start;
+            for (int j = 0; j < searchLines.length; j++) {
+                if (!lines[start + j].strip().equals(searchLines[j].strip())) {
+                    match = -1;
+                    break;
+                }
+            }
+        }
+        if (match < 0)
+            return null;
+
+        int startOffset = 0;
+        for (int j = 0; j < match; j++)
+            startOffset += lines[j].length() + 1;
+        int endOffset = startOffset;
+        for (int j = match; j < match + searchLines.length; j++)
+            endOffset += lines[j].length() + 1;
+        endOffset = Math.min(endOffset - 1, code.length());
+
+        var replacement = reindent(stripTrailingNewline(edit.replace()), indentOf(searchLines), indentOf(lines, match, searchLines.length));
+        return code.substring(0, startOffset) + replacement + code.substring(endOffset);
+    }
+
+    private static String reindent(String text, String fromIndent, String toIndent) {
+        if (fromIndent.equals(toIndent))
+            return text;
+
+        var buf = new StringBuilder();
+        for (String line : text.split("\n", -1)) {
+            if (buf.length() > 0)
+                buf.append('\n');
+            buf.append(line.startsWith(fromIndent) ? toIndent + line.substring(fromIndent.length()) : line);
+        }
+        return buf.toString();
+    }
+
+    private static String indentOf(String[] lines) {
+        return indentOf(lines, 0, lines.length);
+    }
+
+    private static String indentOf(String[] lines, int from, int count) {
+        for (int j = from; j < from + count; j++)
+            if (!lines[j].isBlank())
+                return lines[j].substring(0, lines[j].length() - lines[j].stripLeading().length());
+        return "";
+    }
+
+    private static String stripTrailingNewline(String text) {
+        return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+    }
+}
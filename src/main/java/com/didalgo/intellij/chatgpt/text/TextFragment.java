@@ -27,6 +27,15 @@ public interface TextFragment extends CharSequence, TextContent {
         return of("");
     }
 
+    /**
+     * Creates the fragment of a text still growing, such as a snapshot of a streamed response,
+     * with its HTML already rendered. The text is copied into a {@code String} only when its
+     * {@linkplain #markdown() markdown} is asked for.
+     */
+    static TextFragment ofStreamed(CharSequence markdown, String html) {
+        return new Streamed(markdown, html);
+    }
+
     record Of(String markdown, AtomicReference<String> html) implements TextFragment {
         public Of {
             requireNonNull(markdown, "markdown");
@@ -52,6 +61,43 @@ public interface TextFragment extends CharSequence, TextContent {
         }
     }
 
+    record Streamed(CharSequence text, String html) implements TextFragment {
+        public Streamed {
+            requireNonNull(text, "text");
+            requireNonNull(html, "html");
+        }
+
+        @Override
+        public String markdown() {
+            return text.toString();
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toHtml() {
+            return html;
+        }
+
+        @Override
+        public String toString() {
+            return markdown();
+        }
+    }
+
     @Override
     default int length() {
         return markdown().length();
@@ -47,8 +47,28 @@ public final class TextFragmentToHtmlFormatter implements TextFragmentFormatter
 
     @Override
     public String format(TextFragment markdown) {
-        String escaped = Escaping.escapeHtml(markdown.markdown(), false);
-        Node document = getMarkdownParser().parse(escaped);
+        return render(parse(markdown.markdown()));
+    }
+
+    /**
+     * Parses the given markdown text into a document tree. Any HTML present in the text
+     * is escaped beforehand, so node offsets refer to the escaped text.
+     *
+     * @param markdown the markdown text
+     * @return the parsed document
+     */
+    public Node parse(String markdown) {
+        String escaped = Escaping.escapeHtml(markdown, false);
+        return getMarkdownParser().parse(escaped);
+    }
+
+    /**
+     * Renders the document returned by {@link #parse(String)} into HTML.
+     *
+     * @param document the parsed document
+     * @return the HTML
+     */
+    public String render(Node document) {
         String html = getHtmlRenderer().render(document);
         return unescapeCode(html);
     }
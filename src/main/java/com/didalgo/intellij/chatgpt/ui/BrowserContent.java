@@ -6,17 +6,19 @@ package com.didalgo.intellij.chatgpt.ui;
 
 import com.didalgo.intellij.chatgpt.chat.*;
 import com.didalgo.intellij.chatgpt.ui.action.browser.*;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionToolbar;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.actionSystem.Separator;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.ui.jcef.JBCefApp;
 import com.intellij.ui.jcef.JBCefBrowser;
 import com.intellij.util.ui.JBUI;
 import org.jetbrains.annotations.NotNull;
-import reactor.core.Disposable;
-import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.awt.*;
 import javax.swing.*;
@@ -28,12 +30,12 @@ import javax.swing.*;
  * The panel includes a toolbar with options to refresh the page, clear cookies, and adjust zoom level.
  * If JCEF is not supported by the current IDE, a message is displayed instead of the browser.
  */
-public class BrowserContent implements ChatLinkProvider {
+public class BrowserContent implements ChatLinkProvider, Disposable {
 
     public static final String DEFAULT_URL = "https://chat.openai.com/chat";
     private final JPanel contentPanel;
     private final JBCefBrowser browser;
-    private final ChatLink chatLink;
+    private final ChatLinkService chatLink;
 
     public BrowserContent(Project project) {
         this(project, DEFAULT_URL);
@@ -43,6 +45,9 @@ public class BrowserContent implements ChatLinkProvider {
         contentPanel = new JPanel(new BorderLayout());
         browser = new JBCefBrowser(url);
         chatLink = new ChatLinkService(project, new BrowserConversationHandler(), null);
+        Disposer.register(project, this);
+        Disposer.register(this, chatLink);
+        Disposer.register(this, browser);
 
         if (!JBCefApp.isSupported()) {
             contentPanel.add(theJCEFisNotStrongWithThisOne(), BorderLayout.CENTER);
@@ -69,6 +74,14 @@ public class BrowserContent implements ChatLinkProvider {
         return chatLink;
     }
 
+    /**
+     * Called when the tool window content or the project is closed. The chat link and the browser
+     * are disposed along with the content.
+     */
+    @Override
+    public void dispose() {
+    }
+
     @NotNull
     private static JTextPane theJCEFisNotStrongWithThisOne() {
         String message = "The current IDE does not support Online ChatGPT, because the JVM runtime does not support JCEF.";
@@ -99,9 +112,8 @@ public class BrowserContent implements ChatLinkProvider {
     private class BrowserConversationHandler implements ConversationHandler {
 
         @Override
-        public Disposable push(ConversationContext ctx, ChatMessageEvent.Starting event, ChatMessageListener listener) {
-            handleUserInput(event.getUserMessage().getText());
-            return Disposables.never();
+        public Flux<?> push(ConversationContext ctx, ChatMessageEvent.Starting event, ChatMessageListener listener) {
+            return Mono.fromRunnable(() -> handleUserInput(event.getUserMessage().getText())).flux();
         }
     }
 }
@@ -13,8 +13,8 @@ import com.didalgo.intellij.chatgpt.core.ChatCompletionRequestProvider;
 import com.didalgo.intellij.chatgpt.ui.tool.window.ChatPanel;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
-import reactor.core.Disposable;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public class MainConversationHandler implements ConversationHandler {
 
@@ -27,15 +27,15 @@ public class MainConversationHandler implements ConversationHandler {
     }
 
     @Override
-    public Disposable push(ConversationContext ctx, ChatMessageEvent.Starting event, ChatMessageListener listener) {
+    public Flux<?> push(ConversationContext ctx, ChatMessageEvent.Starting event, ChatMessageListener listener) {
         var application = ApplicationManager.getApplication();
         var userMessage = event.getUserMessage();
         var chatCompletionRequestProvider = application.getService(ChatCompletionRequestProvider.class);
-        var chatCompletionRequest = chatCompletionRequestProvider.chatCompletionRequest(ctx, userMessage);
 
-        return application.getService(ChatHandler.class)
-                .handle(ctx, event.initiating(chatCompletionRequest), listener)
-                .subscribeOn(Schedulers.boundedElastic())
-                .subscribe();
+        // trimming the conversation to fit the context window may take a while, so it's part of the exchange
+        return Mono.fromCallable(() -> chatCompletionRequestProvider.chatCompletionRequest(ctx, userMessage))
+                .doOnError(cause -> listener.exchangeFailed(event.failed(cause)))
+                .flatMapMany(chatCompletionRequest -> application.getService(ChatHandler.class)
+                        .handle(ctx, event.initiating(chatCompletionRequest), listener));
     }
 }
@@ -5,6 +5,7 @@
 package com.didalgo.intellij.chatgpt.ui.action.editor;
 
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
 import com.didalgo.intellij.chatgpt.settings.CustomAction;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
 import com.intellij.openapi.actionSystem.ActionManager;
@@ -26,7 +27,7 @@ public class ActionsUtil {
             group.add(new FindBugAction());
             group.add(new OptimizeAction());
             group.add(new MinimizeAction());
-            group.add(new GenericEditorAction(() -> ChatGptBundle.message("action.code.test.menu"), "Add test case for this code."));
+            group.add(new GenericEditorAction(() -> ChatGptBundle.message("action.code.test.menu"), "Add test case for this code.", ResponseLength.LONG));
 
             group.addSeparator();
             for (CustomAction customAction : GeneralSettings.getInstance().getCustomActionsPrefix()) {
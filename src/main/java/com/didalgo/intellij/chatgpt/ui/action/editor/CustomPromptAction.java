@@ -6,6 +6,8 @@ package com.didalgo.intellij.chatgpt.ui.action.editor;
 
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
 import com.didalgo.intellij.chatgpt.chat.ChatLink;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
+import com.didalgo.intellij.chatgpt.chat.client.RateLimitScheduler.Priority;
 import com.didalgo.intellij.chatgpt.settings.CustomAction;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
 import com.didalgo.intellij.chatgpt.text.CodeFragment;
@@ -209,7 +211,8 @@ public class CustomPromptAction extends GenericEditorAction {
 
             @Override
             protected void doAction(ActionEvent e) {
-                ChatLink.forProject(project).pushMessage(question.getText(), List.of(CodeFragment.of(editor.getDocument().getText())));
+                ChatLink.forProject(project).pushMessage(question.getText(), List.of(CodeFragment.of(editor.getDocument().getText())),
+                        ResponseLength.STANDARD, null, null, Priority.BACKGROUND);
                 dispose();
                 close(OK_EXIT_CODE);
             }
@@ -230,7 +233,8 @@ public class CustomPromptAction extends GenericEditorAction {
                 String defaultName = question.getText();
                 String name = Messages.showInputDialog(project, "Enter a name for the custom action:", "Save Custom Action", null, defaultName, null);
                 if (name != null && !name.isEmpty()) {
-                    ChatLink.forProject(project).pushMessage(question.getText(), List.of(CodeFragment.of(editor.getDocument().getText())));
+                    ChatLink.forProject(project).pushMessage(question.getText(), List.of(CodeFragment.of(editor.getDocument().getText())),
+                        ResponseLength.STANDARD, null, null, Priority.BACKGROUND);
                     if (!StringUtils.isEmpty(question.getText())) {
                         List<CustomAction> customActionsPrefix = GeneralSettings.getInstance().getCustomActionsPrefix();
                         customActionsPrefix.add(new CustomAction(name, question.getText()));
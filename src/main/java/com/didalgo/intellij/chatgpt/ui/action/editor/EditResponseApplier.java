@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.action.editor;
+
+import com.didalgo.intellij.chatgpt.chat.ChatMessageEvent;
+import com.didalgo.intellij.chatgpt.chat.ChatMessageListener;
+import com.didalgo.intellij.chatgpt.text.SearchReplaceEdits;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Applies the {@linkplain SearchReplaceEdits search/replace edits} of the response to the code
+ * the edits were requested for, in a single undoable command.
+ * <p>
+ * The code is tracked with a range marker, so that it's found even if the document changed while
+ * waiting for the response. If the edits don't match the code, or the response was cut short and
+ * so may miss some of them, the fallback is run instead, which requests the whole rewritten code.
+ * A response with no edits at all is left as it is.
+ */
+class EditResponseApplier implements ChatMessageListener {
+
+    private static final Logger LOG = Logger.getInstance(EditResponseApplier.class);
+
+    private final Project project;
+    private final Document document;
+    private final RangeMarker target;
+    private final Runnable fallback;
+
+    EditResponseApplier(Project project, Document document, RangeMarker target, Runnable fallback) {
+        this.project = project;
+        this.document = document;
+        this.target = target;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void exchangeStarting(ChatMessageEvent.Starting event) { }
+
+    @Override
+    public void exchangeStarted(ChatMessageEvent.Started event) { }
+
+    @Override
+    public void responseArriving(ChatMessageEvent.ResponseArriving event) { }
+
+    @Override
+    public void responseArrived(ChatMessageEvent.ResponseArrived event) {
+        var truncationReason = event.getTruncationReason();
+        if (truncationReason.isPresent()) {
+            LOG.info("Response truncated (" + truncationReason.get() + "), requesting the whole code instead");
+            target.dispose();
+            ApplicationManager.getApplication().invokeLater(fallback, project.getDisposed());
+            return;
+        }
+
+        var result = event.getResponse().getResult();
+        var response = (result == null || result.getOutput().getText() == null) ? "" : result.getOutput().getText();
+        var edits = SearchReplaceEdits.parse(response);
+        if (edits.isEmpty()) {
+            target.dispose();
+            return;
+        }
+
+        ApplicationManager.getApplication().invokeLater(() -> {
+            try {
+                if (!target.isValid())
+                    return;
+
+                var code = document.getText(target.getTextRange());
+                var changedCode = SearchReplaceEdits.apply(code, edits);
+                WriteCommandAction.runWriteCommandAction(project, "Apply Edits", null,
+                        () -> document.replaceString(target.getStartOffset(), target.getEndOffset(), changedCode));
+                LOG.info("Applied " + edits.size() + " edit(s), " + response.length() + " characters of response for "
+                        + code.length() + " characters of code");
+            } catch (SearchReplaceEdits.MismatchException e) {
+                LOG.info(e.getMessage() + ", requesting the whole code instead");
+                fallback.run();
+            } finally {
+                target.dispose();
+            }
+        }, project.getDisposed());
+    }
+
+    @Override
+    public void exchangeFailed(ChatMessageEvent.Failed event) {
+        target.dispose();
+    }
+
+    @Override
+    public void exchangeCancelled(ChatMessageEvent.Cancelled event) {
+        target.dispose();
+    }
+}
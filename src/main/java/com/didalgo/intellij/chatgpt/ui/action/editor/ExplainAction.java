@@ -5,9 +5,10 @@
 package com.didalgo.intellij.chatgpt.ui.action.editor;
 
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
 
 public class ExplainAction extends GenericEditorAction {
     public ExplainAction() {
-        super(() -> ChatGptBundle.message("action.code.explain.menu"), "Explain this code");
+        super(() -> ChatGptBundle.message("action.code.explain.menu"), "Explain this code", ResponseLength.SHORT);
     }
 }
@@ -1,7 +1,12 @@
 package com.didalgo.intellij.chatgpt.ui.action.editor;
 
 import com.didalgo.intellij.chatgpt.chat.ChatLink;
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
+import com.didalgo.intellij.chatgpt.chat.client.RateLimitScheduler.Priority;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
 import com.didalgo.intellij.chatgpt.text.CodeFragmentFactory;
+import com.didalgo.intellij.chatgpt.text.SearchReplaceEdits;
 import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerEx;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
 import com.intellij.lang.annotation.HighlightSeverity;
@@ -29,6 +34,12 @@ public class FixCompilationErrorsAction extends AbstractEditorAction {
             Return the corrected code without {error|warning} highlights, or provide comprehensive guidance on further steps if you feel there is insufficient context to fix the {error|warning}(s).
             """;
 
+    private static final String EDITS_PROMPT = """
+            Pretty please identify and resolve compilation {error|warning}(s) in the provided code snippet, highlighted using embedded `<Highlight>` tags.
+            Review the highlighted {error|warning} descriptions for the compiler's feedback.
+            Return the fixes as edits of the code, leaving the `<Highlight>` tags out of the SEARCH lines, as they are not part of the code, or provide comprehensive guidance on further steps if you feel there is insufficient context to fix the {error|warning}(s).
+            """;
+
     public FixCompilationErrorsAction() {
         super("Fix Compilation Errors", "Saving the day by magically fixing those pesky compilation errors or warnings", null);
     }
@@ -60,14 +71,26 @@ public class FixCompilationErrorsAction extends AbstractEditorAction {
             severity = "warning";
         }
 
-        StringBuilder buf = new StringBuilder(editor.getDocument().getText());
+        String text = editor.getDocument().getText();
+        StringBuilder buf = new StringBuilder(text);
         highlights.sort(Comparator.comparing(HighlightInfo::getEndOffset));
 
         addHighlightTagsToText(buf, highlights);
 
-        ChatLink.forProject(project)
-                .pushMessage(getPrompt(severity, highlights.size()),
-                        List.of(CodeFragmentFactory.create(editor, buf.toString())));
+        var prompt = getPrompt(DEFAULT_PROMPT, severity, highlights.size());
+        var code = List.of(CodeFragmentFactory.create(editor, buf.toString()));
+        var chatLink = ChatLink.forProject(project);
+        // the corrected code is expected to be the original code, without the highlights
+        Runnable pushWholeCode = () -> chatLink.pushMessage(prompt, code, ResponseLength.LONG, new PredictedOutput(text), null, Priority.BACKGROUND);
+        if (!GeneralSettings.getInstance().isEnableEditResponses()) {
+            pushWholeCode.run();
+        } else {
+            var document = editor.getDocument();
+            var target = document.createRangeMarker(0, document.getTextLength());
+            var editsPrompt = getPrompt(EDITS_PROMPT, severity, highlights.size());
+            chatLink.pushMessage(editsPrompt + SearchReplaceEdits.FORMAT_INSTRUCTIONS, code, ResponseLength.STANDARD, null,
+                    new EditResponseApplier(project, document, target, pushWholeCode), Priority.BACKGROUND);
+        }
     }
 
     private void addHighlightTagsToText(StringBuilder text, List<HighlightInfo> highlights) {
@@ -94,8 +117,8 @@ public class FixCompilationErrorsAction extends AbstractEditorAction {
         return highlights;
     }
 
-    private static String getPrompt(String severity, int numHighlights) {
-        return DEFAULT_PROMPT.replace("{error|warning}", severity)
+    private static String getPrompt(String template, String severity, int numHighlights) {
+        return template.replace("{error|warning}", severity)
                 .replace("(s)", numHighlights == 1 ? "" : "s");
     }
 }
@@ -5,7 +5,12 @@
 package com.didalgo.intellij.chatgpt.ui.action.editor;
 
 import com.didalgo.intellij.chatgpt.chat.ChatLink;
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
+import com.didalgo.intellij.chatgpt.chat.client.RateLimitScheduler.Priority;
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
 import com.didalgo.intellij.chatgpt.text.CodeFragmentFactory;
+import com.didalgo.intellij.chatgpt.text.SearchReplaceEdits;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsActions;
@@ -18,19 +23,51 @@ import java.util.function.Supplier;
 public class GenericEditorAction extends AbstractEditorAction {
 
     private final String prompt;
+    private final ResponseLength responseLength;
+    private final boolean rewritesCode;
 
     public GenericEditorAction(@NotNull Supplier<@NlsActions.ActionText String> dynamicText, String prompt) {
+        this(dynamicText, prompt, ResponseLength.STANDARD);
+    }
+
+    public GenericEditorAction(@NotNull Supplier<@NlsActions.ActionText String> dynamicText, String prompt, ResponseLength responseLength) {
+        this(dynamicText, prompt, responseLength, false);
+    }
+
+    /**
+     * @param rewritesCode whether the response is the selected code rewritten, and so the code
+     *                     can be sent as its {@linkplain PredictedOutput predicted output}, or the
+     *                     response can be just the {@linkplain SearchReplaceEdits edits} of the code
+     */
+    public GenericEditorAction(@NotNull Supplier<@NlsActions.ActionText String> dynamicText, String prompt, ResponseLength responseLength, boolean rewritesCode) {
         super(dynamicText, () -> prompt);
         this.prompt = prompt;
+        this.responseLength = responseLength;
+        this.rewritesCode = rewritesCode;
     }
 
     public GenericEditorAction(String text, String prompt, Icon icon) {
         super(text, prompt, icon);
         this.prompt = prompt;
+        this.responseLength = ResponseLength.STANDARD;
+        this.rewritesCode = false;
     }
 
     @Override
     protected void actionPerformed(Project project, Editor editor, String selectedText) {
-        ChatLink.forProject(project).pushMessage(prompt, List.of(CodeFragmentFactory.create(editor, selectedText)));
+        var code = CodeFragmentFactory.create(editor, selectedText);
+        var chatLink = ChatLink.forProject(project);
+        if (!rewritesCode) {
+            chatLink.pushMessage(prompt, List.of(code), responseLength, null, null, Priority.BACKGROUND);
+        } else if (!GeneralSettings.getInstance().isEnableEditResponses()) {
+            chatLink.pushMessage(prompt, List.of(code), responseLength, PredictedOutput.of(code), null, Priority.BACKGROUND);
+        } else {
+            // ask for the changes only, and apply them to the selection; the whole code is asked for only if they don't match it
+            var selection = editor.getSelectionModel();
+            var target = editor.getDocument().createRangeMarker(selection.getSelectionStart(), selection.getSelectionEnd());
+            chatLink.pushMessage(prompt + SearchReplaceEdits.FORMAT_INSTRUCTIONS, List.of(code), ResponseLength.STANDARD, null,
+                    new EditResponseApplier(project, editor.getDocument(), target,
+                            () -> chatLink.pushMessage(prompt, List.of(code), responseLength, PredictedOutput.of(code), null, Priority.BACKGROUND)), Priority.BACKGROUND);
+        }
     }
 }
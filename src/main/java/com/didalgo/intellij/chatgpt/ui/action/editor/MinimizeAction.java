@@ -5,9 +5,10 @@
 package com.didalgo.intellij.chatgpt.ui.action.editor;
 
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
 
 public class MinimizeAction extends GenericEditorAction {
     public MinimizeAction() {
-        super(() -> ChatGptBundle.message("action.code.minimize.menu"), "Rewrite this code in the shortest and the most concise form as you can think of.");
+        super(() -> ChatGptBundle.message("action.code.minimize.menu"), "Rewrite this code in the shortest and the most concise form as you can think of.", ResponseLength.LONG, true);
     }
 }
@@ -5,9 +5,10 @@
 package com.didalgo.intellij.chatgpt.ui.action.editor;
 
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
+import com.didalgo.intellij.chatgpt.chat.ResponseLength;
 
 public class OptimizeAction extends GenericEditorAction {
     public OptimizeAction() {
-        super(() -> ChatGptBundle.message("action.code.optimize.menu"), "Optimize this code");
+        super(() -> ChatGptBundle.message("action.code.optimize.menu"), "Optimize this code", ResponseLength.LONG, true);
     }
 }
@@ -42,7 +42,7 @@ public class SubmitListener extends AbstractAction implements OptionAction, Hype
 
     public void submitPrompt(String prompt) {
         Project project = chatLink.getProject();
-        chatLink.pushMessage(prompt, snippetizer.fetchSnippets(project));
+        chatLink.queueMessage(prompt, snippetizer.fetchSnippets(project));
     }
 
     @Override
@@ -4,8 +4,8 @@
  */
 package com.didalgo.intellij.chatgpt.ui.prompt.context;
 
+import com.didalgo.intellij.chatgpt.BlockingCallExecutor;
 import com.didalgo.intellij.chatgpt.chat.PromptAttachment;
-import com.intellij.openapi.application.ApplicationManager;
 
 import javax.swing.*;
 import java.util.function.ToIntFunction;
@@ -46,7 +46,7 @@ public abstract class AbstractPromptAttachment implements PromptAttachment {
     public int getEstimatedTokenCount(ToIntFunction<? super PromptAttachment> estimator) {
         var tokenCount = this.tokenCount;
         if (tokenCount < 0 && estimator != null) {
-            ApplicationManager.getApplication().executeOnPooledThread(() -> setTokenCount(estimateTokenCount(estimator)));
+            BlockingCallExecutor.getExecutor().execute(() -> setTokenCount(estimateTokenCount(estimator)));
         }
         return tokenCount;
     }
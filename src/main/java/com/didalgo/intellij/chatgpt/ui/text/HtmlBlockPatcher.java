@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.text;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Updates the body of an {@link HTMLDocument} in place, replacing only the top-level
+ * blocks which have changed since the previous update.
+ * <p>
+ * The patcher remembers the top-level blocks (e.g. {@code <p>}, {@code <pre>},
+ * {@code <ul>}) of the HTML the document was last built from. When new HTML shares
+ * a prefix of blocks with the previous one, only the differing trailing blocks are
+ * replaced or appended after the last unchanged block, so that the elements, views
+ * and embedded components of the unchanged blocks are preserved. This is the
+ * typical case for a streamed response, where only the last block keeps growing.
+ * <p>
+ * Whenever the document structure doesn't match the remembered blocks, or the HTML
+ * cannot be split into top-level blocks, {@link #patch} returns {@code false} and the
+ * caller is expected to rebuild the document and call {@link #reset}.
+ * <p>
+ * Instances are not thread-safe and should be used on the EDT, like the document itself.
+ */
+public class HtmlBlockPatcher {
+
+    private static final Set<String> VOID_ELEMENTS = Set.of(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source", "wbr");
+
+    private List<String> blocks = List.of();
+    private int extraElements = -1;
+
+    /**
+     * Remembers the blocks of the HTML the document has just been fully built from.
+     *
+     * @param document the document
+     * @param bodyHtml the HTML content of the document body
+     */
+    public void reset(HTMLDocument document, String bodyHtml) {
+        var newBlocks = splitBlocks(bodyHtml);
+        var body = findBody(document);
+        if (newBlocks == null || body == null || body.getElementCount() < newBlocks.size()) {
+            blocks = List.of();
+            extraElements = -1;
+        } else {
+            blocks = newBlocks;
+            extraElements = body.getElementCount() - newBlocks.size();
+        }
+    }
+
+    /**
+     * Updates the document body to the given HTML by replacing only the changed trailing blocks.
+     *
+     * @param document the document previously passed to {@link #reset}
+     * @param bodyHtml the new HTML content of the document body
+     * @return {@code true} if the document has been updated, or {@code false} if it has to
+     *         be rebuilt from scratch
+     */
+    public boolean patch(HTMLDocument document, String bodyHtml) {
+        var body = findBody(document);
+        if (blocks.isEmpty() || body == null || body.getElementCount() != blocks.size() + extraElements)
+            return false;
+
+        var newBlocks = splitBlocks(bodyHtml);
+        if (newBlocks == null)
+            return false;
+
+        int common = 0;
+        int limit = Math.min(blocks.size(), newBlocks.size());
+        while (common < limit && blocks.get(common).equals(newBlocks.get(common)))
+            common++;
+        if (common == blocks.size() && common == newBlocks.size())
+            return true;
+        if (newBlocks.isEmpty())
+            return false;
+
+        try {
+            String changedHtml = String.join("", newBlocks.subList(common, newBlocks.size()));
+            for (int i = blocks.size() - 1; i > common; i--)
+                document.removeElement(body.getElement(i));
+            if (common == blocks.size())
+                document.insertAfterEnd(body.getElement(common - 1), changedHtml);
+            else if (common < newBlocks.size())
+                document.setOuterHTML(body.getElement(common), changedHtml);
+            else
+                document.removeElement(body.getElement(common));
+        } catch (BadLocationException | IOException | RuntimeException e) {
+            blocks = List.of();
+            return false;
+        }
+
+        body = findBody(document);
+        if (body == null || body.getElementCount() != newBlocks.size() + extraElements) {
+            blocks = List.of();
+            return false;
+        }
+        blocks = newBlocks;
+        return true;
+    }
+
+    static Element findBody(HTMLDocument document) {
+        var root = document.getDefaultRootElement();
+        for (int i = 0; i < root.getElementCount(); i++) {
+            var elem = root.getElement(i);
+            if (elem.getAttributes().getAttribute(StyleConstants.NameAttribute) == HTML.Tag.BODY)
+                return elem;
+        }
+        return null;
+    }
+
+    /**
+     * Splits the HTML into top-level elements.
+     *
+     * @param html the HTML to split
+     * @return the list of top-level elements, or {@code null} if the HTML contains
+     *         top-level text, comments or unbalanced tags
+     */
+    static List<String> splitBlocks(String html) {
+        var blocks = new ArrayList<String>();
+        int depth = 0, blockStart = -1;
+        int pos = 0, length = html.length();
+        while (pos < length) {
+            char ch = html.charAt(pos);
+            if (ch != '<') {
+                if (depth == 0 && !Character.isWhitespace(ch))
+                    return null;
+                pos++;
+                continue;
+            }
+
+            int tagEnd = html.indexOf('>', pos);
+            if (tagEnd < 0 || html.startsWith("<!", pos))
+                return null;
+            boolean closing = html.charAt(pos + 1) == '/';
+            String tagName = tagName(html, closing ? pos + 2 : pos + 1, tagEnd);
+            if (tagName.isEmpty())
+                return null;
+
+            if (closing) {
+                if (--depth < 0)
+                    return null;
+            } else {
+                if (depth == 0)
+                    blockStart = pos;
+                if (html.charAt(tagEnd - 1) != '/' && !VOID_ELEMENTS.contains(tagName))
+                    depth++;
+            }
+            pos = tagEnd + 1;
+
+            if (!closing && tagName.equals("code") && depth > 0) {
+                // code content is not escaped and may contain anything looking like tags
+                int codeEnd = html.indexOf("</code>", pos);
+                if (codeEnd < 0)
+                    return null;
+                pos = codeEnd;
+            } else if (depth == 0 && blockStart >= 0) {
+                blocks.add(html.substring(blockStart, pos));
+                blockStart = -1;
+            }
+        }
+        return (depth == 0) ? blocks : null;
+    }
+
+    private static String tagName(String html, int start, int end) {
+        int pos = start;
+        while (pos < end && Character.isLetterOrDigit(html.charAt(pos)))
+            pos++;
+        return html.substring(start, pos).toLowerCase();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the refresh interval of a streamed message based on how long the recent
+ * updates took to render.
+ * <p>
+ * The interval is kept long enough for rendering to take at most a quarter of the EDT
+ * time, and grows with the size of the rendered content, whose layout and painting
+ * happen after the measured update. It shrinks back towards the minimum as soon as the
+ * updates become cheap again.
+ */
+public class AdaptiveFramePacer {
+
+    public static final int MIN_INTERVAL_MILLIS = 16;
+    public static final int MAX_INTERVAL_MILLIS = 250;
+
+    private static final int RENDER_TIME_MULTIPLIER = 4;
+    private static final int CHARS_PER_MILLI = 500;
+    private static final double SMOOTHING = 0.3;
+
+    private final int minIntervalMillis;
+    private final int maxIntervalMillis;
+    private volatile int intervalMillis;
+    private volatile long lastRenderNanos;
+    private volatile double averageRenderNanos = -1;
+
+    public AdaptiveFramePacer() {
+        this(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+    }
+
+    public AdaptiveFramePacer(int minIntervalMillis, int maxIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.intervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Records the duration of a completed update and recomputes the refresh interval.
+     *
+     * @param renderNanos the time the update took
+     * @param contentLength the length of the rendered content
+     */
+    public void recordRender(long renderNanos, int contentLength) {
+        lastRenderNanos = renderNanos;
+        double average = averageRenderNanos;
+        average = (average < 0) ? renderNanos : average + SMOOTHING * (renderNanos - average);
+        averageRenderNanos = average;
+
+        long renderBudgetMillis = TimeUnit.NANOSECONDS.toMillis((long) average * RENDER_TIME_MULTIPLIER);
+        long sizeBudgetMillis = contentLength / CHARS_PER_MILLI;
+        intervalMillis = (int) Math.max(minIntervalMillis, Math.min(maxIntervalMillis, Math.max(renderBudgetMillis, sizeBudgetMillis)));
+    }
+
+    public int getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public long getLastRenderNanos() {
+        return lastRenderNanos;
+    }
+
+    public long getAverageRenderNanos() {
+        return (long) Math.max(averageRenderNanos, 0);
+    }
+}
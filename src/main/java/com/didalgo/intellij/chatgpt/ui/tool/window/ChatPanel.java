@@ -28,7 +28,9 @@ import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.ui.OnePixelSplitter;
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
 import com.intellij.util.ui.JBUI;
@@ -38,7 +40,6 @@ import org.reactivestreams.Subscription;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.Generation;
-import reactor.core.Disposable;
 
 import javax.swing.*;
 import javax.swing.event.HyperlinkListener;
@@ -49,11 +50,14 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.awt.event.InputEvent.*;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
-public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
+public class ChatPanel implements ChatMessageListener, ChatLinkProvider, Disposable {
 
     private final ExpandableTextFieldExt userMessageTextField;
     private final JButton submitButton;
@@ -63,10 +67,10 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
     private final OnePixelSplitter splitter;
     private final Project myProject;
     private JPanel actionPanel;
-    private volatile Object requestHolder;
+    private final Map<Long, Exchange> exchanges = new ConcurrentHashMap<>();
     private final MainConversationHandler conversationHandler;
     private ListStack contextStack;
-    private final ChatLink chatLink;
+    private final ChatLinkService chatLink;
 
     public static final KeyStroke SUBMIT_KEYSTROKE = KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, CTRL_DOWN_MASK);
 
@@ -75,6 +79,8 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
         conversationHandler = new MainConversationHandler(this);
         chatLink = new ChatLinkService(project, conversationHandler, configuration.withSystemPrompt(() -> getContentPanel().getSystemMessage()));
         chatLink.addChatMessageListener(this);
+        Disposer.register(project, this);
+        Disposer.register(this, chatLink);
         ContextAwareSnippetizer snippetizer = ApplicationManager.getApplication().getService(ContextAwareSnippetizer.class);
         SubmitListener submitAction = new SubmitListener(chatLink, this::getSearchText, snippetizer);
 
@@ -94,21 +100,22 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
         submitButton = new JButton(submitAction);
         submitButton.setUI(new DarculaButtonUI());
 
+        // the button is shown while any exchange of the tab is in progress, and stops all of them
         stopGenerating = new JButton("Stop", AllIcons.Actions.Suspend);
+        stopGenerating.setToolTipText("Stop all the responses in progress");
         stopGenerating.addActionListener(e -> {
             aroundRequest(false);
-            if (requestHolder instanceof Disposable disposable) {
-                disposable.dispose();
-            } else if (requestHolder instanceof Subscription subscription) {
-                subscription.cancel();
-            }
+            exchanges.values().forEach(Exchange::cancel);
         });
         stopGenerating.setUI(new DarculaButtonUI());
 
         actionPanel = new JPanel(new BorderLayout());
         progressBar = new JProgressBar();
         progressBar.setVisible(false);
-        actionPanel.add(createContextSnippetsComponent(), BorderLayout.NORTH);
+        var queuePanel = new JPanel(new BorderLayout());
+        queuePanel.add(createPromptQueueComponent(), BorderLayout.NORTH);
+        queuePanel.add(createContextSnippetsComponent(), BorderLayout.CENTER);
+        actionPanel.add(queuePanel, BorderLayout.NORTH);
         actionPanel.add(userMessageTextField, BorderLayout.CENTER);
         actionPanel.add(submitButton, BorderLayout.EAST);
         contentPanel = new ConversationPanel(chatLink, project);
@@ -119,6 +126,35 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
         splitter.setSecondComponent(actionPanel);
     }
 
+    private JComponent createPromptQueueComponent() {
+        var promptQueue = chatLink.getPromptQueue();
+        var list = new PromptQueueList(promptQueue, this::editQueuedPrompt);
+        list.setBackground(actionPanel.getBackground());
+        promptQueue.addListener(new PromptQueue.Listener() {
+            @Override
+            public void promptQueued(PromptQueue.Entry entry) {
+                SwingUtilities.invokeLater(() -> {
+                    if (getSearchText().equals(entry.prompt()))
+                        setSearchText("");
+                });
+            }
+
+            @Override
+            public void promptDequeued(PromptQueue.Entry entry) { }
+        });
+        return list;
+    }
+
+    /**
+     * Takes the queued prompt back into the prompt field for editing, if the field is empty.
+     */
+    void editQueuedPrompt(PromptQueue.Entry entry) {
+        if (getSearchText().isBlank() && chatLink.getPromptQueue().remove(entry)) {
+            setSearchText(entry.prompt());
+            userMessageTextField.requestFocusInWindow();
+        }
+    }
+
     private JComponent createContextSnippetsComponent() {
         // Creating an instance of ListPopupShower for testing
         ListStackFactory listStackFactory = new ListStackFactory();
@@ -197,28 +233,91 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
             throw new ChatExchangeAbortException("Preset check failed");
         }
 
-        ApplicationManager.getApplication().invokeAndWait(() -> {
-            answer = new ConversationTurnPanel(new AssistantMessage("Thinking..."), getModelType());
-        });
+        // the chat link sends the request only after this runs, so the responses find the answer panel in place
         SwingUtilities.invokeLater(() -> {
-            setSearchText("");
             aroundRequest(true);
 
+            var answer = new ConversationTurnPanel(new AssistantMessage("Thinking..."), getModelType()).awaitingResponse();
+            exchanges.put(event.getExchangeId(), new Exchange(answer));
             ConversationPanel contentPanel = getContentPanel();
             contentPanel.add(new ConversationTurnPanel(event.getUserMessage(), null));
             contentPanel.add(answer);
         });
     }
 
-    private volatile ConversationTurnPanel answer;
+    /**
+     * The render target and the cancellation handle of an exchange in progress.
+     */
+    private static final class Exchange {
+        private final ConversationTurnPanel answer;
+        private volatile Subscription subscription;
+        private volatile boolean cancelled;
+        // guarded by this
+        private boolean responding;
+
+        Exchange(ConversationTurnPanel answer) {
+            this.answer = answer;
+        }
+
+        synchronized void showDraft(CharSequence draftText) {
+            if (!responding)
+                answer.setStreamingContent(draftText, true);
+        }
+
+        /**
+         * Stops showing the draft, as the actual response, or its failure, arrives.
+         */
+        synchronized ConversationTurnPanel responding() {
+            responding = true;
+            return answer;
+        }
+
+        void started(Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled)
+                subscription.cancel();
+        }
+
+        void cancel() {
+            cancelled = true;
+            var subscription = this.subscription;
+            if (subscription != null)
+                subscription.cancel();
+        }
+    }
+
+    private void showDraft(ChatMessageEvent.Starting event, CharSequence draftText) {
+        var exchange = exchanges.get(event.getExchangeId());
+        if (exchange != null)
+            exchange.showDraft(draftText);
+    }
+
+    private Optional<ConversationTurnPanel> getRespondingAnswer(ChatMessageEvent.Starting event) {
+        return Optional.ofNullable(exchanges.get(event.getExchangeId())).map(Exchange::responding);
+    }
+
+    private Optional<ConversationTurnPanel> finishExchange(ChatMessageEvent.Starting event) {
+        var exchange = exchanges.remove(event.getExchangeId());
+        SwingUtilities.invokeLater(() -> aroundRequest(!exchanges.isEmpty()));
+        return Optional.ofNullable(exchange).map(Exchange::responding);
+    }
 
     @Override
     public void exchangeStarted(ChatMessageEvent.Started event) {
-        setRequestHolder(event.getSubscription());
+        var exchange = exchanges.get(event.getExchangeId());
+        if (exchange != null)
+            exchange.started(event.getSubscription());
 
         SwingUtilities.invokeLater(contentPanel::updateLayout);
     }
 
+    @Override
+    public void exchangeWaiting(ChatMessageEvent.Waiting event) {
+        var text = "_Waiting for the rate limit of the endpoint (" + event.getQueueDepth() + " queued, about "
+                + Math.max(1L, event.getExpectedWait().toSeconds()) + " s)…_";
+        showDraft(event, text);
+    }
+
     protected boolean presetCheck() {
         var settings = GeneralSettings.getInstance();
         var assistantType = getChatLink().getConversationContext().getAssistantType();
@@ -266,40 +365,52 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
         return true;
     }
 
+    @Override
+    public void draftArriving(ChatMessageEvent.DraftArriving event) {
+        showDraft(event, event.getDraftText());
+    }
+
     @Override
     public void responseArriving(ChatMessageEvent.ResponseArriving event) {
-        setContent(event.getPartialResponseChoices());
+        getRespondingAnswer(event).ifPresent(answer -> answer.setStreamingContent(event.getPartialText(), false));
     }
 
     @Override
     public void responseArrived(ChatMessageEvent.ResponseArrived event) {
-        setContent(event.getGenerations());
-
-        Usage usage = event.getResponse().getMetadata().getUsage();
-        SwingUtilities.invokeLater(() -> {
-            aroundRequest(false);
-            contentPanel.updateUsage(usage, getChatLink().getConversationContext().getModelType());
+        finishExchange(event).ifPresent(answer -> {
+            var truncationReason = event.getTruncationReason();
+            if (truncationReason.isPresent())
+                setContent(answer, event.getGenerations().get(0).getOutput().getText()
+                        + "\n\n_(Stopped early: " + truncationReason.get() + ".)_");
+            else
+                setContent(answer, event.getGenerations());
+
+            Usage usage = event.getResponse().getMetadata().getUsage();
+            Usage continuationUsage = event.getContinuationUsage().orElse(null);
+            SwingUtilities.invokeLater(() -> contentPanel.updateUsage(usage, continuationUsage, getChatLink().getConversationContext().getModelType()));
         });
     }
 
-    public void setContent(List<Generation> content) {
+    private static void setContent(ConversationTurnPanel answer, String text) {
+        answer.setContent(new AssistantMessage(text), ChatCompletionParser.parseTextContent(text, answer.getStreamingFormatter()));
+    }
+
+    private static void setContent(ConversationTurnPanel answer, List<Generation> content) {
         if (!content.isEmpty()) {
-            var generation = content.get(0);
-            answer.setContent(generation.getOutput(), ChatCompletionParser.parseTextContent(generation));
+            var output = content.get(0).getOutput();
+            var text = (output == null) ? "" : output.getText();
+            answer.setContent(output, ChatCompletionParser.parseTextContent(text, answer.getStreamingFormatter()));
         }
     }
 
     @Override
     public void exchangeFailed(ChatMessageEvent.Failed event) {
-        if (answer != null) {
-            answer.setErrorContent(Errors.getWebClientErrorMessage(event.getCause()));
-        }
-        aroundRequest(false);
+        finishExchange(event).ifPresent(answer -> answer.setErrorContent(Errors.getWebClientErrorMessage(event.getCause())));
     }
 
     @Override
     public void exchangeCancelled(ChatMessageEvent.Cancelled event) {
-
+        finishExchange(event);
     }
 
     public Project getProject() {
@@ -322,10 +433,20 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
         return splitter;
     }
 
+    /**
+     * Called when the tool window content or the project is closed. The chat link is disposed
+     * along with the panel, cancelling the exchanges in progress.
+     */
+    @Override
+    public void dispose() {
+        chatLink.removeChatMessageListener(this);
+    }
+
     public void aroundRequest(boolean status) {
         progressBar.setIndeterminate(status);
         progressBar.setVisible(status);
         submitButton.setEnabled(!status);
+        userMessageTextField.getEmptyText().setText(status ? "Type a prompt to queue it" : "Type a prompt here");
         if (status) {
             actionPanel.remove(submitButton);
             actionPanel.add(stopGenerating, BorderLayout.EAST);
@@ -337,10 +458,6 @@ public class ChatPanel implements ChatMessageListener, ChatLinkProvider {
         actionPanel.repaint();
     }
 
-    public void setRequestHolder(Object eventSource) {
-        this.requestHolder = eventSource;
-    }
-
     public JButton getSubmitButton() {
         return submitButton;
     }
@@ -152,10 +152,12 @@ public class ChatToolWindowFactory implements ToolWindowFactory, DumbAware {
             if (type == AssistantType.System.ONLINE) {
                 BrowserContent browser = new BrowserContent(project);
                 content = contentFactory.createContent(browser.getContentPanel(), type.displayName(), false);
+                content.setDisposer(browser);
                 provider = browser;
             } else {
                 ChatPanel chatPanel = new ChatPanel(project, settings.getAssistantOptions(type));
                 content = contentFactory.createContent(chatPanel.init(), type.displayName(), false);
+                content.setDisposer(chatPanel);
                 provider = chatPanel;
             }
             content.putUserData(ACTIVE_TAB, type);
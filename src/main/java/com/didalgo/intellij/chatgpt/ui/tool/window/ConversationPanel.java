@@ -29,7 +29,6 @@ import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.components.JBTextField;
 import com.intellij.ui.components.labels.LinkLabel;
 import com.intellij.ui.components.panels.NonOpaquePanel;
-import com.intellij.ui.components.panels.VerticalLayout;
 import com.intellij.util.ui.JBFont;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
@@ -45,7 +44,7 @@ import java.awt.event.*;
 import static com.didalgo.intellij.chatgpt.settings.GeneralSettings.BASE_PROMPT;
 
 public class ConversationPanel extends JBPanel<ConversationPanel> implements NullableComponent, SystemMessageHolder {
-    private final JPanel myList = new JPanel(new VerticalLayout(0));
+    private final VirtualizedListPanel myList = new VirtualizedListPanel();
     private final JBScrollPane myScrollPane = new JBScrollPane(myList, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
                                       ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
     private int myScrollValue = 0;
@@ -120,7 +119,7 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
         newChat.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                myList.removeAll();
+                myList.removeAllItems();
                 addAssistantTipsIfEnabled(false);
                 myList.updateUI();
                 chatLink.getConversationContext().clear();
@@ -149,12 +148,11 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
         addAssistantTipsIfEnabled(true);
     }
 
-    public void addSeparator(JComponent comp) {
+    public void addSeparator(VirtualizedListPanel comp) {
         SwingUtilities.invokeLater(() -> {
             JSeparator separator = new JSeparator();
             separator.setForeground(JBColor.border());
-            comp.add(separator);
-            updateLayout();
+            comp.addItem(separator);
             invalidate();
             validate();
             repaint();
@@ -168,7 +166,7 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
         if (!firstUse && introEnabled == null)
             GeneralSettings.getInstance().setEnableInitialMessage(introEnabled = false);
         if (!Boolean.FALSE.equals(introEnabled))
-            myList.add(createAssistantTips());
+            myList.addItem(createAssistantTips());
     }
 
     protected ConversationTurnPanel createAssistantTips() {
@@ -187,8 +185,7 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
 
     public void add(ConversationTurnPanel conversationTurnPanel) {
         SwingUtilities.invokeLater(() -> {
-            myList.add(conversationTurnPanel);
-            updateLayout();
+            myList.addItem(conversationTurnPanel);
             scrollToBottom();
             invalidate();
             validate();
@@ -202,9 +199,9 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
 
     public ConversationTurnPanel getConversationTurnPanel(int n) {
         if (n >= 0)
-            return (ConversationTurnPanel) myList.getComponent(n);
+            return (ConversationTurnPanel) myList.getItem(n);
         else
-            return (ConversationTurnPanel) myList.getComponent(myList.getComponentCount() + n);
+            return (ConversationTurnPanel) myList.getItem(myList.getItemCount() + n);
     }
 
     public void scrollToBottom() {
@@ -212,12 +209,8 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
     }
 
     public void updateLayout() {
-        LayoutManager layout = myList.getLayout();
-        int componentCount = myList.getComponentCount();
-        for (int i = 0; i < componentCount; i++) {
-            layout.removeLayoutComponent(myList.getComponent(i));
-            layout.addLayoutComponent(null, myList.getComponent(i));
-        }
+        myList.revalidate();
+        myList.repaint();
     }
 
     @Override
@@ -233,9 +226,9 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
     @Override
     public boolean isVisible() {
         if (super.isVisible()) {
-            int count = myList.getComponentCount();
+            int count = myList.getItemCount();
             for (int i = 0 ; i < count ; i++) {
-                if (myList.getComponent(i).isVisible()) {
+                if (myList.getItem(i).isVisible()) {
                     return true;
                 }
             }
@@ -256,4 +249,8 @@ public class ConversationPanel extends JBPanel<ConversationPanel> implements Nul
     public void updateUsage(Usage usage, ModelType model) {
         usagePanel.updateUsage(usage, model);
     }
+
+    public void updateUsage(Usage usage, Usage continuationUsage, ModelType model) {
+        usagePanel.updateUsage(usage, continuationUsage, model);
+    }
 }
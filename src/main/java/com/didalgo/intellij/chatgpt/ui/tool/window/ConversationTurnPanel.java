@@ -7,6 +7,7 @@ package com.didalgo.intellij.chatgpt.ui.tool.window;
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
 import com.didalgo.intellij.chatgpt.chat.models.ModelType;
 import com.didalgo.intellij.chatgpt.text.CodeSnippetManipulator;
+import com.didalgo.intellij.chatgpt.text.IncrementalMarkdownFormatter;
 import com.didalgo.intellij.chatgpt.text.TextFragment;
 import com.intellij.icons.AllIcons;
 import com.intellij.notification.Notification;
@@ -39,9 +40,10 @@ import java.awt.datatransfer.Transferable;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class ConversationTurnPanel extends JBPanel<ConversationTurnPanel> {
+public class ConversationTurnPanel extends JBPanel<ConversationTurnPanel> implements VirtualizedListPanel.Dehydratable {
 
     private static final Logger LOG = Logger.getInstance(ConversationTurnPanel.class);
 
@@ -100,7 +102,8 @@ public class ConversationTurnPanel extends JBPanel<ConversationTurnPanel> {
     }
 
     public TextFragment getMessageText() {
-        return TextFragment.of(message.getText());
+        var text = streamingText;
+        return TextFragment.of((text != null) ? text.toString() : message.getText());
     }
 
     public String toDisplayText(TextFragment text, boolean fromUser) {
@@ -165,18 +168,73 @@ public class ConversationTurnPanel extends JBPanel<ConversationTurnPanel> {
         return new MessagePanel(message, messagePanel);
     }
 
+    private final IncrementalMarkdownFormatter streamingFormatter = new IncrementalMarkdownFormatter();
     private final AtomicReference<TextFragment> pendingTextContent = new AtomicReference<>();
-    private final Timer updateContentTimer = new Timer(20, this::updateContentIncrementally);
+    private volatile boolean draft;
+    private volatile boolean finished = true;
+    private volatile CharSequence streamingText;
+    private final AdaptiveFramePacer framePacer = new AdaptiveFramePacer();
+    private final Timer updateContentTimer = new Timer(AdaptiveFramePacer.MIN_INTERVAL_MILLIS, this::updateContentIncrementally);
+
+    /**
+     * Marks the turn as awaiting its response, so that it isn't dehydrated until the response,
+     * or the error, is {@linkplain #setContent set}.
+     */
+    public ConversationTurnPanel awaitingResponse() {
+        this.finished = false;
+        return this;
+    }
 
     public void setContent(AssistantMessage message, TextFragment textContent) {
         this.message = message;
+        this.streamingText = null;
+        showContent(textContent, false);
+        this.finished = true;
+    }
+
+    /**
+     * Shows the response, or its draft, still arriving. The text is a snapshot of the response
+     * accumulated so far, extending the previous one, so only its newly arrived part is formatted.
+     * The draft is dimmed until replaced with the actual response.
+     */
+    public void setStreamingContent(CharSequence partialText, boolean draft) {
+        // the response doesn't extend its draft
+        if (draft != this.draft)
+            streamingFormatter.reset();
+        this.streamingText = partialText;
+        this.finished = false;
+        showContent(TextFragment.ofStreamed(partialText, streamingFormatter.formatAppended(partialText)), draft);
+    }
+
+    private void showContent(TextFragment textContent, boolean draft) {
+        this.draft = draft;
         this.pendingTextContent.set(textContent);
         if (!updateContentTimer.isRunning()) {
             updateContentTimer.setRepeats(false);
+            updateContentTimer.setInitialDelay(framePacer.getIntervalMillis());
             updateContentTimer.start();
         }
     }
 
+    public IncrementalMarkdownFormatter getStreamingFormatter() {
+        return streamingFormatter;
+    }
+
+    @Override
+    public boolean dehydrate() {
+        if (!finished || updateContentTimer.isRunning() || pendingTextContent.get() != null)
+            return false;
+
+        messagePanel.dehydrate();
+        streamingFormatter.reset();
+        return true;
+    }
+
+    @Override
+    public void rehydrate() {
+        messagePanel.rehydrate();
+    }
+
     public void setErrorContent(String errorMessage) {
         setContent(new AssistantMessage(errorMessage), TextFragment.of(errorMessage));
     }
@@ -186,8 +244,19 @@ public class ConversationTurnPanel extends JBPanel<ConversationTurnPanel> {
         try {
             pending = pendingTextContent.get();
             if (pending != null) {
+                long startTime = System.nanoTime();
+                messagePanel.setDimmed(draft);
                 messagePanel.updateTextContent(pending);
-                pendingTextContent.compareAndSet(pending, null);
+                int lastInterval = framePacer.getIntervalMillis();
+                framePacer.recordRender(System.nanoTime() - startTime, pending.length());
+                if (LOG.isDebugEnabled() && framePacer.getIntervalMillis() != lastInterval)
+                    LOG.debug("Refresh interval changed to " + framePacer.getIntervalMillis() + " ms, render took "
+                            + TimeUnit.NANOSECONDS.toMicros(framePacer.getLastRenderNanos()) + " us, average "
+                            + TimeUnit.NANOSECONDS.toMicros(framePacer.getAverageRenderNanos()) + " us, content length " + pending.length());
+                if (!pendingTextContent.compareAndSet(pending, null) && !updateContentTimer.isRunning()) {
+                    updateContentTimer.setInitialDelay(framePacer.getIntervalMillis());
+                    updateContentTimer.start();
+                }
             }
         } catch (Exception e) {
             LOG.error("ChatGPT Exception in processing response: response: {}, error: {}", e, String.valueOf(pending), e.getMessage());
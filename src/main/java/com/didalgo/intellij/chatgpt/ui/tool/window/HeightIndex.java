@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import java.util.Arrays;
+
+/**
+ * Heights of a sequence of stacked items, supporting logarithmic-time updates,
+ * offset lookups and item lookups by offset (a Fenwick tree).
+ */
+class HeightIndex {
+
+    private int[] heights = new int[16];
+    private long[] tree = new long[17];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(heights, 0);
+        Arrays.fill(tree, 0L);
+    }
+
+    public void add(int height) {
+        if (size == heights.length) {
+            heights = Arrays.copyOf(heights, size * 2);
+            var oldTree = tree;
+            tree = new long[size * 2 + 1];
+            System.arraycopy(oldTree, 0, tree, 0, oldTree.length);
+        }
+        int node = size + 1;
+        heights[size] = height;
+        // the new node covers the range (node - lowbit(node), node]
+        tree[node] = height + prefixSum(size) - prefixSum(node - Integer.lowestOneBit(node));
+        size++;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return heights[index];
+    }
+
+    public void set(int index, int height) {
+        checkIndex(index);
+        int delta = height - heights[index];
+        if (delta == 0)
+            return;
+
+        heights[index] = height;
+        for (int node = index + 1; node <= size; node += Integer.lowestOneBit(node))
+            tree[node] += delta;
+    }
+
+    /**
+     * Gives the offset at which the item at the given index starts.
+     *
+     * @param index the item index, between {@code 0} and {@code size()} inclusive
+     * @return the total height of the items preceding the given index
+     */
+    public long prefixSum(int index) {
+        long sum = 0;
+        for (int node = index; node > 0; node -= Integer.lowestOneBit(node))
+            sum += tree[node];
+        return sum;
+    }
+
+    public long total() {
+        return prefixSum(size);
+    }
+
+    /**
+     * Finds the item covering the given offset.
+     *
+     * @param offset the offset
+     * @return the index of the item covering the offset, clamped to the valid index range,
+     *         or {@code -1} if there are no items
+     */
+    public int indexAt(long offset) {
+        if (size == 0)
+            return -1;
+
+        int node = 0;
+        long remaining = offset;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            int next = node + step;
+            if (next <= size && tree[next] <= remaining) {
+                node = next;
+                remaining -= tree[next];
+            }
+        }
+        return Math.min(node, size - 1);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+}
@@ -40,4 +40,19 @@ public class MessagePanel extends JBPanel<MessagePanel> {
     public void updateTextContent(TextFragment newContent) {
         textPanel.updateMessage(newContent);
     }
+
+    /**
+     * Renders the text in the disabled text color, e.g. while it's only a draft.
+     */
+    public void setDimmed(boolean dimmed) {
+        textPanel.setEnabled(!dimmed);
+    }
+
+    public void dehydrate() {
+        textPanel.dehydrate();
+    }
+
+    public void rehydrate() {
+        textPanel.rehydrate();
+    }
 }
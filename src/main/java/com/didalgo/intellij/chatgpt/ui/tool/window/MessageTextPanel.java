@@ -7,6 +7,7 @@ package com.didalgo.intellij.chatgpt.ui.tool.window;
 import com.didalgo.intellij.chatgpt.compat.LegacyHtmlPanel;
 import com.didalgo.intellij.chatgpt.text.TextFragment;
 import com.didalgo.intellij.chatgpt.ui.MessageRenderer;
+import com.didalgo.intellij.chatgpt.ui.text.HtmlBlockPatcher;
 import com.didalgo.intellij.chatgpt.ui.view.*;
 import com.didalgo.intellij.chatgpt.util.StandardLanguage;
 import com.intellij.ui.ColorUtil;
@@ -20,6 +21,7 @@ import org.jetbrains.annotations.NotNull;
 import javax.swing.event.HyperlinkEvent;
 import javax.swing.text.*;
 import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
 import javax.swing.text.html.HTMLEditorKit;
 import java.awt.*;
 
@@ -27,6 +29,8 @@ public class MessageTextPanel extends LegacyHtmlPanel implements MessageRenderer
 
     private final boolean fromUser;
     private volatile TextFragment text;
+    private volatile TextFragment dehydratedText;
+    private final HtmlBlockPatcher blockPatcher = new HtmlBlockPatcher();
 
     public MessageTextPanel(boolean fromUser) {
         setEditorKit(new HTMLEditorKitBuilder()
@@ -75,7 +79,43 @@ public class MessageTextPanel extends LegacyHtmlPanel implements MessageRenderer
 
     public void updateMessage(TextFragment updateMessage) {
         this.text = updateMessage;
-        update();
+        this.dehydratedText = null;
+        if (!fromUser && getDocument() instanceof HTMLDocument document && blockPatcher.patch(document, getBody())) {
+            revalidate();
+            repaint();
+        } else {
+            update();
+        }
+    }
+
+    @Override
+    public void update() {
+        super.update();
+        // may be called from the superclass constructor, before the patcher is initialized
+        if (blockPatcher != null && getDocument() instanceof HTMLDocument document)
+            blockPatcher.reset(document, getBody());
+    }
+
+    /**
+     * Clears the document, keeping only the message source needed to restore it later.
+     * The HTML of assistant messages is dropped as well, as it's re-created from markdown.
+     */
+    public void dehydrate() {
+        var content = text;
+        if (dehydratedText == null && content != null) {
+            updateMessage(TextFragment.empty());
+            dehydratedText = fromUser ? content : TextFragment.of(content.markdown());
+        }
+    }
+
+    public void rehydrate() {
+        var content = dehydratedText;
+        if (content != null)
+            updateMessage(content);
+    }
+
+    public boolean isDehydrated() {
+        return dehydratedText != null;
     }
 
     private static Color linkColor() {
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import com.didalgo.intellij.chatgpt.chat.PromptQueue;
+import com.intellij.icons.AllIcons;
+import com.intellij.ui.DoubleClickListener;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBList;
+import com.intellij.util.ui.JBUI;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.function.Consumer;
+
+/**
+ * Shows the prompts waiting in a {@link PromptQueue}. A queued prompt can be removed with
+ * Delete, or taken back for editing with Enter or a double-click.
+ */
+class PromptQueueList extends JBList<PromptQueue.Entry> implements PromptQueue.Listener {
+
+    private static final int MAX_PROMPT_LENGTH = 80;
+
+    private final PromptQueue queue;
+    private final DefaultListModel<PromptQueue.Entry> model;
+    private final Consumer<PromptQueue.Entry> editAction;
+
+    PromptQueueList(PromptQueue queue, Consumer<PromptQueue.Entry> editAction) {
+        super(new DefaultListModel<>());
+        this.queue = queue;
+        this.model = (DefaultListModel<PromptQueue.Entry>) getModel();
+        this.editAction = editAction;
+
+        setCellRenderer(SimpleListCellRenderer.create((label, entry, index) -> {
+            label.setIcon(AllIcons.Vcs.History);
+            label.setText(StringUtils.abbreviate(entry.prompt(), MAX_PROMPT_LENGTH) + "  (" + entry.tokenCount() + " tokens)");
+        }));
+        setToolTipText("Queued prompts: Enter to edit, Delete to remove");
+        setBorder(JBUI.Borders.emptyTop(3));
+        setVisible(false);
+
+        registerKeyboardAction(this::removeSelected, KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), WHEN_FOCUSED);
+        registerKeyboardAction(this::removeSelected, KeyStroke.getKeyStroke(KeyEvent.VK_BACK_SPACE, 0), WHEN_FOCUSED);
+        registerKeyboardAction(__ -> editSelected(), KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), WHEN_FOCUSED);
+        new DoubleClickListener() {
+            @Override
+            protected boolean onDoubleClick(@NotNull MouseEvent event) {
+                editSelected();
+                return true;
+            }
+        }.installOn(this);
+
+        queue.addListener(this);
+    }
+
+    @Override
+    public void promptQueued(PromptQueue.Entry entry) {
+        SwingUtilities.invokeLater(this::syncModel);
+    }
+
+    @Override
+    public void promptDequeued(PromptQueue.Entry entry) {
+        SwingUtilities.invokeLater(this::syncModel);
+    }
+
+    private void syncModel() {
+        model.clear();
+        queue.getEntries().forEach(model::addElement);
+        if (isVisible() == model.isEmpty()) {
+            setVisible(!model.isEmpty());
+            if (getParent() != null)
+                getParent().revalidate();
+        }
+    }
+
+    private void removeSelected(ActionEvent event) {
+        getSelectedValuesList().forEach(queue::remove);
+    }
+
+    private void editSelected() {
+        var entry = getSelectedValue();
+        if (entry != null)
+            editAction.accept(entry);
+    }
+}
@@ -6,6 +6,8 @@ package com.didalgo.intellij.chatgpt.ui.tool.window;
 
 import com.didalgo.intellij.chatgpt.ChatGptBundle;
 import com.didalgo.intellij.chatgpt.chat.metadata.ImmutableUsage;
+import com.didalgo.intellij.chatgpt.chat.metadata.PredictionUsage;
+import com.didalgo.intellij.chatgpt.chat.metadata.PromptCacheUsage;
 import com.didalgo.intellij.chatgpt.chat.models.ModelType;
 import com.intellij.icons.AllIcons;
 import com.intellij.ui.components.JBLabel;
@@ -32,10 +34,20 @@ public class UsagePanel extends JPanel {
     }
 
     public void updateUsage(Usage usage, ModelType model) {
+        updateUsage(usage, null, model);
+    }
+
+    /**
+     * Shows the usage of the last request, along with the tokens used to continue the response
+     * when it was cut off by the output token limit, the prompt tokens read from the prompt cache
+     * and processed anew, and the predicted tokens accepted and rejected when the response was
+     * given a predicted output.
+     */
+    public void updateUsage(Usage usage, Usage continuationUsage, ModelType model) {
         if (usage == null) {
             usage = ImmutableUsage.empty();
         }
-        label.setText(createLabelText(usage, model));
+        label.setText(createLabelText(usage, continuationUsage, model));
 
         boolean notEmpty = usage.getTotalTokens() != null && !Long.valueOf(0L).equals(usage.getTotalTokens());
         if (isVisible() != notEmpty) {
@@ -48,18 +60,29 @@ public class UsagePanel extends JPanel {
     }
 
     private JBLabel createLabel() {
-        return new JBLabel(createLabelText(ImmutableUsage.empty(), null));
+        return new JBLabel(createLabelText(ImmutableUsage.empty(), null, null));
     }
 
-    protected String createLabelText(Usage usage, ModelType model) {
+    protected String createLabelText(Usage usage, Usage continuationUsage, ModelType model) {
         int inputTokenLimit = (model == null) ? Integer.MAX_VALUE : model.getInputTokenLimit();
-        return String.format("<html><small>%s</small></html>",
+        var continued = (continuationUsage == null) ? ""
+                : ChatGptBundle.message("usage.continued", continuationUsage.getPromptTokens(), continuationUsage.getCompletionTokens());
+        var cached = PromptCacheUsage.of(usage)
+                .map(cache -> ChatGptBundle.message("usage.cached", cache.cachedTokens(), cache.uncachedTokens()))
+                .orElse("");
+        var predicted = PredictionUsage.of(usage)
+                .map(prediction -> ChatGptBundle.message("usage.predicted", prediction.acceptedTokens(), prediction.rejectedTokens()))
+                .orElse("");
+        return String.format("<html><small>%s%s%s%s</small></html>",
                 ChatGptBundle.message(
                         (inputTokenLimit == Integer.MAX_VALUE) ? "usage.in.out" : "usage.in.out.max",
                         usage.getPromptTokens(),
                         usage.getCompletionTokens(),
                         inputTokenLimit
-                )
+                ),
+                cached,
+                continued,
+                predicted
         );
     }
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import com.intellij.util.ui.JBUI;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A vertical list of components, meant as a view of a {@link JScrollPane}, which keeps
+ * only the items near the visible area realized as its children.
+ * <p>
+ * Items are stacked one below another, using the full width of the panel. The heights of
+ * the realized items are measured on each layout, while the remaining items are accounted
+ * for with their last measured (or initially estimated) heights. Items scrolled away
+ * farther than about one viewport height are removed from the component hierarchy, so
+ * that neither layout nor painting has to visit them, and are added back when they
+ * come near the visible area again. Scrolling and appending thus cost time proportional
+ * to the number of realized items, not to the length of the list. When the measured heights
+ * of the items above the visible area differ from the ones accounted for, the view is scrolled
+ * by the difference, so that the visible content stays in place.
+ * <p>
+ * Items implementing {@link Dehydratable} are additionally asked to release their heavy
+ * state once they have stayed off-screen while more than {@code maxHydratedOffscreen}
+ * other such items were added or scrolled away after them, and to restore it before they
+ * are realized again. Their heights are retained, so the scrolling extent doesn't change.
+ * <p>
+ * Items must be added via {@link #addItem(Component)}, not via {@code add}.
+ */
+public class VirtualizedListPanel extends JPanel {
+
+    /**
+     * An item able to release its resources while it's not realized.
+     */
+    public interface Dehydratable {
+
+        /**
+         * Releases the resources which can be restored later, e.g. the rendered document.
+         *
+         * @return {@code true} if dehydrated, or {@code false} if the item can't be
+         *         dehydrated right now (e.g. its content is still being updated)
+         */
+        boolean dehydrate();
+
+        /**
+         * Restores the item after {@link #dehydrate()}. Does nothing if not dehydrated.
+         */
+        void rehydrate();
+    }
+
+    public static final int DEFAULT_MAX_HYDRATED_OFFSCREEN = 16;
+
+    private final List<Component> items = new ArrayList<>();
+    private final HeightIndex heights = new HeightIndex();
+    private final int estimatedItemHeight;
+    private final int maxHydratedOffscreen;
+    private final Deque<Component> hydratedOffscreen = new ArrayDeque<>();
+    private final ChangeListener viewportListener = __ -> viewportChanged();
+    private JViewport viewport;
+    private int firstRealized;
+    private int lastRealized = -1;
+
+    public VirtualizedListPanel() {
+        this(JBUI.scale(80), DEFAULT_MAX_HYDRATED_OFFSCREEN);
+    }
+
+    public VirtualizedListPanel(int estimatedItemHeight, int maxHydratedOffscreen) {
+        super(null);
+        this.estimatedItemHeight = estimatedItemHeight;
+        this.maxHydratedOffscreen = maxHydratedOffscreen;
+        setLayout(new VirtualizedLayout());
+    }
+
+    public void addItem(Component item) {
+        items.add(item);
+        heights.add(estimatedItemHeight);
+        // the items added out of the visible area, e.g. of a restored conversation, are never realized
+        if (item instanceof Dehydratable)
+            hydratedOffscreen.addLast(item);
+        revalidate();
+        repaint();
+    }
+
+    public void removeAllItems() {
+        items.clear();
+        heights.clear();
+        hydratedOffscreen.clear();
+        firstRealized = 0;
+        lastRealized = -1;
+        removeAll();
+        revalidate();
+        repaint();
+    }
+
+    public int getItemCount() {
+        return items.size();
+    }
+
+    public Component getItem(int index) {
+        return items.get(index);
+    }
+
+    public List<Component> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    public boolean isRealized(Component item) {
+        return item.getParent() == this;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (getParent() instanceof JViewport parent) {
+            viewport = parent;
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+        super.removeNotify();
+    }
+
+    private void viewportChanged() {
+        int first = firstVisibleIndex(), last = lastVisibleIndex();
+        if (first != firstRealized || last != lastRealized) {
+            revalidate();
+            repaint();
+        }
+    }
+
+    private long visibleTop() {
+        var visible = getVisibleRect();
+        return Math.max(0, visible.y - getInsets().top - margin(visible));
+    }
+
+    private long visibleBottom() {
+        var visible = getVisibleRect();
+        return Math.max(0, (long) visible.y + visible.height - getInsets().top + margin(visible));
+    }
+
+    private static int margin(Rectangle visible) {
+        return Math.max(visible.height, JBUI.scale(200));
+    }
+
+    private int firstVisibleIndex() {
+        return items.isEmpty() ? 0 : heights.indexAt(visibleTop());
+    }
+
+    private int lastVisibleIndex() {
+        return items.isEmpty() ? -1 : heights.indexAt(visibleBottom());
+    }
+
+    private void unrealize(Component item) {
+        remove(item);
+        if (item instanceof Dehydratable) {
+            hydratedOffscreen.remove(item);
+            hydratedOffscreen.addLast(item);
+        }
+    }
+
+    private void realize(Component item) {
+        if (item instanceof Dehydratable dehydratable) {
+            hydratedOffscreen.remove(item);
+            dehydratable.rehydrate();
+        }
+        add(item);
+    }
+
+    private void dehydrateExcessOffscreenItems() {
+        var busyItems = new ArrayList<Component>();
+        while (hydratedOffscreen.size() > maxHydratedOffscreen) {
+            var item = hydratedOffscreen.pollFirst();
+            if (!isRealized(item) && !((Dehydratable) item).dehydrate())
+                busyItems.add(item);
+        }
+        hydratedOffscreen.addAll(busyItems);
+    }
+
+    private int measureHeight(Component item, int width) {
+        if (item.getWidth() != width) {
+            item.setSize(width, Math.max(item.getHeight(), 1));
+            item.validate();
+        }
+        return item.getPreferredSize().height;
+    }
+
+    private class VirtualizedLayout implements LayoutManager {
+
+        @Override
+        public void addLayoutComponent(String name, Component comp) { }
+
+        @Override
+        public void removeLayoutComponent(Component comp) { }
+
+        @Override
+        public Dimension preferredLayoutSize(Container parent) {
+            var insets = parent.getInsets();
+            int width = 0;
+            for (int i = 0; i < parent.getComponentCount(); i++)
+                width = Math.max(width, parent.getComponent(i).getPreferredSize().width);
+
+            long height = heights.total() + insets.top + insets.bottom;
+            return new Dimension(width + insets.left + insets.right, (int) Math.min(height, Integer.MAX_VALUE));
+        }
+
+        @Override
+        public Dimension minimumLayoutSize(Container parent) {
+            return preferredLayoutSize(parent);
+        }
+
+        @Override
+        public void layoutContainer(Container parent) {
+            var insets = parent.getInsets();
+            int width = Math.max(0, parent.getWidth() - insets.left - insets.right);
+            long oldTotal = heights.total();
+            // the item at the top of the viewport, which is to stay in place
+            int anchor = items.isEmpty() ? 0 : heights.indexAt(Math.max(0, getVisibleRect().y - insets.top));
+            long anchorShift = 0;
+
+            for (int i = firstRealized; i <= lastRealized; i++) {
+                var item = items.get(i);
+                if (isRealized(item))
+                    anchorShift += updateHeight(i, measureHeight(item, width), anchor);
+            }
+
+            int first = firstVisibleIndex(), last = lastVisibleIndex();
+            for (int i = firstRealized; i <= lastRealized; i++)
+                if (i < first || i > last)
+                    unrealize(items.get(i));
+            for (int i = first; i <= last; i++) {
+                var item = items.get(i);
+                if (!isRealized(item)) {
+                    realize(item);
+                    anchorShift += updateHeight(i, measureHeight(item, width), anchor);
+                }
+            }
+            dehydrateExcessOffscreenItems();
+            firstRealized = first;
+            lastRealized = last;
+
+            for (int i = first; i <= last; i++)
+                items.get(i).setBounds(insets.left, insets.top + (int) heights.prefixSum(i), width, heights.get(i));
+
+            if (anchorShift != 0 && viewport != null) {
+                var position = viewport.getViewPosition();
+                int height = (int) Math.min(heights.total() + insets.top + insets.bottom, Integer.MAX_VALUE);
+                viewport.setViewSize(new Dimension(getWidth(), height));
+                viewport.setViewPosition(new Point(position.x, (int) Math.max(0, position.y + anchorShift)));
+            }
+            // the parents are being validated, so the new preferred size has to be picked up by another pass
+            if (heights.total() != oldTotal)
+                SwingUtilities.invokeLater(VirtualizedListPanel.this::revalidate);
+        }
+
+        /**
+         * Updates the height of the item, giving the change of the position of the anchor item.
+         */
+        private int updateHeight(int index, int height, int anchor) {
+            int delta = height - heights.get(index);
+            heights.set(index, height);
+            return (index < anchor) ? delta : 0;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.view;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.fife.ui.rsyntaxtextarea.Theme;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded pool of code block components, keyed by the syntax style (language mime type).
+ * <p>
+ * Creating an {@code RSyntaxTextArea} together with its scroll pane and action panel is
+ * expensive, and each rebuild of a message document used to create them anew for every
+ * code block. Components released by discarded views are kept here and rebound to the
+ * views created afterwards. The pool, as well as the shared syntax {@link Theme}, is
+ * invalidated whenever the Look and Feel changes.
+ * <p>
+ * Accessed from the EDT only.
+ */
+final class CodeBlockComponentPool {
+
+    private static final Logger log = Logger.getInstance(CodeBlockComponentPool.class);
+
+    static final int MAX_IDLE_PER_SYNTAX_STYLE = 4;
+
+    private static final Map<String, Deque<RSyntaxTextAreaView.CodeBlockScrollPane>> idleComponents = new HashMap<>();
+    private static LookAndFeel lookAndFeel;
+    private static Theme theme;
+    private static boolean themeLoaded;
+
+    private CodeBlockComponentPool() { }
+
+    static RSyntaxTextAreaView.CodeBlockScrollPane acquire(String syntaxStyle, Function<String, RSyntaxTextAreaView.CodeBlockScrollPane> factory) {
+        checkLookAndFeel();
+        var idle = idleComponents.get(syntaxStyle);
+        var component = (idle == null) ? null : idle.pollFirst();
+        return (component != null) ? component : factory.apply(syntaxStyle);
+    }
+
+    static void release(String syntaxStyle, RSyntaxTextAreaView.CodeBlockScrollPane component) {
+        checkLookAndFeel();
+        if (component.getLookAndFeel() != lookAndFeel)
+            return;
+
+        var idle = idleComponents.computeIfAbsent(syntaxStyle, __ -> new ArrayDeque<>());
+        if (idle.size() < MAX_IDLE_PER_SYNTAX_STYLE)
+            idle.addFirst(component);
+    }
+
+    static Theme getTheme() {
+        checkLookAndFeel();
+        if (!themeLoaded) {
+            themeLoaded = true;
+            try {
+                theme = Theme.load(CodeBlockComponentPool.class.getResourceAsStream("/org/fife/ui/rsyntaxtextarea/themes/dark.xml"));
+            } catch (IOException e) {
+                log.warn("Unable to load RSyntaxTextArea theme due to " + e, e);
+            }
+        }
+        return theme;
+    }
+
+    static LookAndFeel currentLookAndFeel() {
+        checkLookAndFeel();
+        return lookAndFeel;
+    }
+
+    private static void checkLookAndFeel() {
+        var current = UIManager.getLookAndFeel();
+        if (current != lookAndFeel) {
+            lookAndFeel = current;
+            idleComponents.clear();
+            theme = null;
+            themeLoaded = false;
+        }
+    }
+}
@@ -18,7 +18,6 @@ import com.intellij.ide.DataManager;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.actionSystem.impl.ActionButton;
 import com.intellij.openapi.command.WriteCommandAction;
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.SelectionModel;
 import com.intellij.openapi.fileEditor.FileEditorManager;
@@ -43,7 +42,6 @@ import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.datatransfer.Transferable;
 import java.awt.event.*;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -51,9 +49,6 @@ import static com.didalgo.intellij.chatgpt.ui.text.TextEditorHelper.TEXT_AREA_KE
 
 public class RSyntaxTextAreaView extends ComponentView {
 
-    private static final Logger log = Logger.getInstance(RSyntaxTextAreaView.class);
-    private static Theme defaultTheme;
-
     private Language language;
 
     public RSyntaxTextAreaView(Element element, Language language) {
@@ -80,8 +75,8 @@ public class RSyntaxTextAreaView extends ComponentView {
     }
 
     protected void updateText() {
-        Component comp = getComponent();
-        if (comp instanceof RTextScrollPane scrollPane && scrollPane.getTextArea() instanceof RSyntaxTextArea textArea)
+        if (getComponent() instanceof CodeBlockScrollPane scrollPane && scrollPane.getView() == this
+                && scrollPane.getTextArea() instanceof RSyntaxTextArea textArea)
             updateText(scrollPane, textArea);
     }
 
@@ -112,6 +107,17 @@ public class RSyntaxTextAreaView extends ComponentView {
         }
     }
 
+    @Override
+    public void setParent(View parent) {
+        super.setParent(parent);
+        // the text package discards views once they are unparented, so their components can be reused
+        if (parent == null && SwingUtilities.isEventDispatchThread()
+                && getComponent() instanceof CodeBlockScrollPane scrollPane && scrollPane.getView() == this) {
+            scrollPane.unbind();
+            CodeBlockComponentPool.release(language.mimeType(), scrollPane);
+        }
+    }
+
     protected static class MyRSyntaxTextArea extends RSyntaxTextArea implements DataProvider {
 
         @Override
@@ -123,9 +129,17 @@ public class RSyntaxTextAreaView extends ComponentView {
     }
 
     protected Component createComponent0() {
+        CodeBlockScrollPane scrollPane = CodeBlockComponentPool.acquire(language.mimeType(), RSyntaxTextAreaView::createScrollPane);
+        scrollPane.bind(this);
+        updateText(scrollPane, (RSyntaxTextArea) scrollPane.getTextArea());
+        scrollPane.getTextArea().discardAllEdits();
+        return scrollPane;
+    }
+
+    protected static CodeBlockScrollPane createScrollPane(String syntaxStyle) {
         RSyntaxTextArea textArea = new MyRSyntaxTextArea();
         textArea.setUI(new RSyntaxTextAreaUIEx(textArea));
-        textArea.setSyntaxEditingStyle(language.mimeType());
+        textArea.setSyntaxEditingStyle(syntaxStyle);
         textArea.setEditable(false);
         textArea.setCodeFoldingEnabled(true);
         textArea.setAnimateBracketMatching(false);
@@ -134,22 +148,11 @@ public class RSyntaxTextAreaView extends ComponentView {
         textArea.setSize(4000, 4000);
         textArea.setMarkOccurrences(true);
         textArea.setMarkOccurrencesDelay(500);
-        Theme theme = getDefaultTheme();
+        Theme theme = CodeBlockComponentPool.getTheme();
         if (theme != null)
             theme.apply(textArea);
 
-        RTextScrollPane scrollPane = new RTextScrollPane(textArea) {
-            @Override
-            public Dimension getPreferredSize() {
-                Container cont = RSyntaxTextAreaView.this.getContainer();
-                if (cont != null && (getWidth() == 0 || getWidth() > cont.getWidth())) {
-                    setSize(RSyntaxTextAreaView.this.getContainer().getWidth(), Integer.MAX_VALUE / 2);
-                    doLayout();
-                    getViewport().doLayout();
-                }
-                return super.getPreferredSize();
-            }
-        };
+        CodeBlockScrollPane scrollPane = new CodeBlockScrollPane(textArea, CodeBlockComponentPool.currentLookAndFeel());
         scrollPane.setLineNumbersEnabled(false);
         scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER);
         scrollPane.setBorder(BorderFactory.createEmptyBorder(6, 0, 5, 0));
@@ -158,30 +161,6 @@ public class RSyntaxTextAreaView extends ComponentView {
         for (MouseWheelListener listener : scrollPane.getMouseWheelListeners())
             scrollPane.removeMouseWheelListener(listener);
 
-        Icon icon1 = IconUtil.scale(IconLoader.getIcon("/icons/expui/action/copy_dark.svg", RSyntaxTextArea.class), null, 1.25f);
-        JButton copyAction = new JButton(icon1);
-        copyAction.setMargin(JBUI.emptyInsets());
-        copyAction.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        copyAction.setFocusable(false);
-
-        ActionGroup actionGroup = new ActionGroup() {
-            @Override
-            public AnAction @NotNull [] getChildren(@Nullable AnActionEvent e) {
-                return new AnAction[] { new MyCopyAction(icon1) };
-            }
-        };
-
-        Presentation presentation = new Presentation();
-        presentation.setIcon(Actions.More);
-        presentation.putClientProperty(ActionButton.HIDE_DROPDOWN_ICON, Boolean.TRUE);
-        ActionButton myCorner = new ActionButton(actionGroup, presentation, ActionPlaces.UNKNOWN, new Dimension(20, 20)) {
-            @Override
-            protected DataContext getDataContext() {
-                return DataManager.getInstance().getDataContext(this);
-            }
-        };
-        myCorner.setNoIconsInPopup(true);
-
         JComponent corner = new CodeBlockActionPanel(textArea);
 
         textArea.add(corner);
@@ -200,10 +179,53 @@ public class RSyntaxTextAreaView extends ComponentView {
             }
         });
 
-        updateText(scrollPane, textArea);
         return scrollPane;
     }
 
+    /**
+     * The code block component, which may be rebound from one view to another.
+     */
+    public static class CodeBlockScrollPane extends RTextScrollPane {
+
+        private final LookAndFeel lookAndFeel;
+        private RSyntaxTextAreaView view;
+
+        public CodeBlockScrollPane(RSyntaxTextArea textArea, LookAndFeel lookAndFeel) {
+            super(textArea);
+            this.lookAndFeel = lookAndFeel;
+        }
+
+        public RSyntaxTextAreaView getView() {
+            return view;
+        }
+
+        LookAndFeel getLookAndFeel() {
+            return lookAndFeel;
+        }
+
+        void bind(RSyntaxTextAreaView view) {
+            this.view = view;
+            setSize(0, 0);
+        }
+
+        void unbind() {
+            this.view = null;
+            getTextArea().setText("");
+            getTextArea().discardAllEdits();
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            Container cont = (view == null) ? null : view.getContainer();
+            if (cont != null && (getWidth() == 0 || getWidth() > cont.getWidth())) {
+                setSize(cont.getWidth(), Integer.MAX_VALUE / 2);
+                doLayout();
+                getViewport().doLayout();
+            }
+            return super.getPreferredSize();
+        }
+    }
+
     public static class CodeBlockActionPanel extends JPanel {
         public static Icon COPY_ICON_16x16_DARK = IconLoader.getIcon("/icons/expui/action/copy_dark.svg", RSyntaxTextArea.class);
         public static Icon COPY_ICON_22x22_DARK = IconUtil.scale(COPY_ICON_16x16_DARK, null, 1.25f);
@@ -414,15 +436,4 @@ public class RSyntaxTextAreaView extends ComponentView {
             });
         }
     }
-
-    private Theme getDefaultTheme() {
-        if (defaultTheme == null) {
-            try {
-                defaultTheme = Theme.load(getClass().getResourceAsStream("/org/fife/ui/rsyntaxtextarea/themes/dark.xml"));
-            } catch (IOException e) {
-                log.warn("Unable to load RSyntaxTextArea theme due to " + e, e);
-            }
-        }
-        return defaultTheme;
-    }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BlockingCallExecutorTest {
+
+    @Test
+    void virtual_threads_are_supported_only_on_java_21_or_later() {
+        var executor = BlockingCallExecutor.newVirtualThreadExecutor();
+        try {
+            assertEquals(Runtime.version().feature() >= 21, executor.isPresent());
+        } finally {
+            executor.ifPresent(ExecutorService::shutdown);
+        }
+    }
+
+    @Test
+    void uses_the_application_pool_unless_virtual_threads_are_enabled() {
+        assertSame(AppExecutorUtil.getAppExecutorService(), BlockingCallExecutor.getExecutor(false));
+        assertSame(Schedulers.boundedElastic(), BlockingCallExecutor.getScheduler(false));
+    }
+
+    @Test
+    void uses_virtual_threads_when_enabled_and_supported() {
+        assumeTrue(BlockingCallExecutor.isVirtualThreadsSupported(), "virtual threads not supported");
+
+        assertNotSame(AppExecutorUtil.getAppExecutorService(), BlockingCallExecutor.getExecutor(true));
+        assertNotSame(Schedulers.boundedElastic(), BlockingCallExecutor.getScheduler(true));
+        assertSame(BlockingCallExecutor.getScheduler(true), BlockingCallExecutor.getScheduler(true));
+    }
+
+    @Test
+    void falls_back_to_the_application_pool_when_virtual_threads_are_not_supported() {
+        assumeTrue(!BlockingCallExecutor.isVirtualThreadsSupported(), "virtual threads supported");
+
+        assertSame(AppExecutorUtil.getAppExecutorService(), BlockingCallExecutor.getExecutor(true));
+        assertSame(Schedulers.boundedElastic(), BlockingCallExecutor.getScheduler(true));
+    }
+}
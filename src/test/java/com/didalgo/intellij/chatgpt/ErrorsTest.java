@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt;
+
+import com.didalgo.intellij.chatgpt.Errors.Category;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErrorsTest {
+
+    @Test
+    void classifies_http_errors_by_status() {
+        assertEquals(Category.RATE_LIMITED, Errors.classify(httpError(429, new HttpHeaders())));
+        assertEquals(Category.TIMEOUT, Errors.classify(httpError(408, new HttpHeaders())));
+        assertEquals(Category.SERVER_ERROR, Errors.classify(httpError(503, new HttpHeaders())));
+        assertEquals(Category.CLIENT_ERROR, Errors.classify(httpError(401, new HttpHeaders())));
+    }
+
+    @Test
+    void classifies_spring_ai_errors_by_the_status_in_the_message() {
+        assertEquals(Category.RATE_LIMITED, Errors.classify(new TransientAiException("429 - Rate limit reached")));
+        assertEquals(Category.SERVER_ERROR, Errors.classify(new TransientAiException("Overloaded")));
+        assertEquals(Category.CLIENT_ERROR, Errors.classify(new NonTransientAiException("400 - Invalid request")));
+    }
+
+    @Test
+    void classifies_by_the_causes_of_wrapped_errors() {
+        assertEquals(Category.TIMEOUT, Errors.classify(new CompletionException(new SocketTimeoutException("Read timed out"))));
+        assertEquals(Category.CONNECTION, Errors.classify(new RuntimeException(new IOException("Connection reset"))));
+        assertEquals(Category.OTHER, Errors.classify(new IllegalStateException("Unexpected")));
+    }
+
+    @Test
+    void tells_which_categories_are_retryable() {
+        assertTrue(Category.RATE_LIMITED.isRetryable());
+        assertTrue(Category.CONNECTION.isRetryable());
+        assertFalse(Category.TIMEOUT.isRetryable());
+        assertTrue(Category.TIMEOUT.isEndpointFailure());
+        assertFalse(Category.CLIENT_ERROR.isEndpointFailure());
+    }
+
+    @Test
+    void parses_retry_after_in_delta_seconds() {
+        assertEquals(Optional.of(Duration.ofSeconds(120)), Errors.parseRetryAfter(retryAfter(HttpHeaders.RETRY_AFTER, "120")));
+        assertEquals(Optional.of(Duration.ofMillis(1500)), Errors.parseRetryAfter(retryAfter("retry-after-ms", "1500")));
+    }
+
+    @Test
+    void parses_retry_after_as_http_date() {
+        var retryAt = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30);
+
+        var delay = Errors.parseRetryAfter(retryAfter(HttpHeaders.RETRY_AFTER, DateTimeFormatter.RFC_1123_DATE_TIME.format(retryAt))).orElseThrow();
+
+        assertTrue(delay.compareTo(Duration.ofSeconds(25)) >= 0 && delay.compareTo(Duration.ofSeconds(30)) <= 0, delay::toString);
+    }
+
+    @Test
+    void retry_after_http_date_in_the_past_gives_no_delay() {
+        var retryAt = ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(1);
+
+        assertEquals(Optional.of(Duration.ZERO),
+                Errors.parseRetryAfter(retryAfter(HttpHeaders.RETRY_AFTER, DateTimeFormatter.RFC_1123_DATE_TIME.format(retryAt))));
+    }
+
+    @Test
+    void ignores_malformed_or_missing_retry_after() {
+        assertEquals(Optional.empty(), Errors.parseRetryAfter(retryAfter(HttpHeaders.RETRY_AFTER, "soon")));
+        assertEquals(Optional.empty(), Errors.parseRetryAfter(new HttpHeaders()));
+    }
+
+    @Test
+    void reads_retry_after_of_the_wrapped_http_error() {
+        var cause = new RuntimeException(httpError(429, retryAfter(HttpHeaders.RETRY_AFTER, "7")));
+
+        assertEquals(Optional.of(Duration.ofSeconds(7)), Errors.getRetryAfter(cause));
+    }
+
+    private static HttpHeaders retryAfter(String name, String value) {
+        var headers = new HttpHeaders();
+        headers.set(name, value);
+        return headers;
+    }
+
+    private static WebClientResponseException httpError(int status, HttpHeaders headers) {
+        return WebClientResponseException.create(status, "", headers, new byte[0], StandardCharsets.UTF_8);
+    }
+}
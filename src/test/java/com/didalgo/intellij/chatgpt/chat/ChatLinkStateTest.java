@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import com.didalgo.intellij.chatgpt.chat.models.StandardModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatLinkStateTest {
+
+    private static final StandardModel MODEL = StandardModel.GPT_4_O;
+    private static final ConversationState STATE = new ConversationState("resp_1", MODEL.id(), 1200);
+
+    private final AssistantConfiguration configuration = mock(AssistantConfiguration.class);
+    private final ChatLinkState state = new ChatLinkState(configuration);
+    private final UserMessage nextMessage = new UserMessage("And now?");
+
+    @BeforeEach
+    void setUp() {
+        when(configuration.getSystemPrompt()).thenReturn(() -> "");
+        when(configuration.isConversationStateOnServer()).thenReturn(true);
+        state.addChatExchange(new UserMessage("Hi"), STATE.applyTo(new AssistantMessage("Hello")));
+    }
+
+    @Test
+    void continues_the_conversation_kept_by_the_server() {
+        var messages = state.getChatMessages(MODEL, nextMessage);
+
+        assertEquals(1, messages.size());
+        assertEquals("And now?", messages.get(0).getText());
+        assertEquals(Optional.of("resp_1"), previousResponseId(messages));
+    }
+
+    @Test
+    void sends_the_whole_conversation_when_the_state_is_not_kept_on_the_server() {
+        when(configuration.isConversationStateOnServer()).thenReturn(false);
+
+        assertWholeConversation(state.getChatMessages(MODEL, nextMessage), "Hi", "Hello", "And now?");
+    }
+
+    @Test
+    void sends_the_whole_conversation_after_the_history_was_cleared() {
+        state.clear();
+
+        assertWholeConversation(state.getChatMessages(MODEL, nextMessage), "And now?");
+    }
+
+    @Test
+    void sends_the_whole_conversation_after_the_model_was_switched() {
+        assertWholeConversation(state.getChatMessages(StandardModel.GPT_4_O_MINI, nextMessage), "Hi", "Hello", "And now?");
+    }
+
+    @Test
+    void sends_the_whole_conversation_when_the_server_context_would_overflow() {
+        state.addChatExchange(new UserMessage("Hi again"),
+                new ConversationState("resp_2", MODEL.id(), MODEL.getInputTokenLimit()).applyTo(new AssistantMessage("Hello again")));
+
+        var messages = state.getChatMessages(MODEL, nextMessage);
+
+        assertEquals(Optional.empty(), previousResponseId(messages));
+        assertEquals("And now?", messages.get(messages.size() - 1).getText());
+    }
+
+    @Test
+    void sends_the_whole_conversation_after_the_state_was_invalidated() {
+        state.invalidateConversationState();
+
+        assertWholeConversation(state.getChatMessages(MODEL, nextMessage), "Hi", "Hello", "And now?");
+    }
+
+    @Test
+    void continues_the_conversation_from_the_response_following_the_invalidated_one() {
+        state.invalidateConversationState();
+        state.addChatExchange(new UserMessage("Retry"),
+                new ConversationState("resp_2", MODEL.id(), 1500).applyTo(new AssistantMessage("Retried")));
+
+        var messages = state.getChatMessages(MODEL, nextMessage);
+
+        assertEquals(1, messages.size());
+        assertEquals(Optional.of("resp_2"), previousResponseId(messages));
+    }
+
+    private static void assertWholeConversation(List<Message> messages, String... texts) {
+        assertEquals(List.of(texts), messages.stream().map(Message::getText).toList());
+        assertEquals(Optional.empty(), previousResponseId(messages));
+    }
+
+    private static Optional<String> previousResponseId(List<Message> messages) {
+        return ConversationState.previousResponseId(new Prompt(messages));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConversationStateTest {
+
+    private static final ConversationState STATE = new ConversationState("resp_1", "gpt-4o", 1200);
+
+    @Test
+    void state_is_carried_by_the_response_metadata_and_the_response() {
+        var metadata = ChatResponseMetadata.builder().keyValue(ConversationState.METADATA_KEY, STATE).build();
+
+        assertEquals(Optional.of(STATE), ConversationState.of(metadata));
+        assertEquals(Optional.of(STATE), ConversationState.of(STATE.applyTo(new AssistantMessage("Hello"))));
+        assertEquals(Optional.empty(), ConversationState.of(new AssistantMessage("Hello")));
+    }
+
+    @Test
+    void chained_prompt_continues_from_the_previous_response() {
+        var prompt = new Prompt(List.of(new SystemMessage("You are helpful"), STATE.chain(new UserMessage("And now?"))));
+
+        assertEquals(Optional.of("resp_1"), ConversationState.previousResponseId(prompt));
+    }
+
+    @Test
+    void continuation_of_chained_prompt_keeps_the_previous_response() {
+        var prompt = new Prompt(List.of(STATE.chain(new UserMessage("And now?")),
+                new AssistantMessage("Partial"), new UserMessage("Continue")));
+
+        assertEquals(Optional.of("resp_1"), ConversationState.previousResponseId(prompt));
+    }
+
+    @Test
+    void whole_conversation_prompt_has_no_previous_response() {
+        var prompt = new Prompt(List.of(new UserMessage("Hi"), new AssistantMessage("Hello"), new UserMessage("And now?")));
+
+        assertEquals(Optional.empty(), ConversationState.previousResponseId(prompt));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptQueueTest {
+
+    private final PromptQueue queue = new PromptQueue();
+    private final List<String> notifications = new ArrayList<>();
+
+    PromptQueueTest() {
+        queue.addListener(new PromptQueue.Listener() {
+            @Override
+            public void promptQueued(PromptQueue.Entry entry) {
+                notifications.add("queued " + entry.prompt());
+            }
+
+            @Override
+            public void promptDequeued(PromptQueue.Entry entry) {
+                notifications.add("dequeued " + entry.prompt());
+            }
+        });
+    }
+
+    @Test
+    void polls_entries_in_the_order_they_were_added() {
+        var first = anEntry("first");
+        var second = anEntry("second");
+        var third = anEntry("third");
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+
+        assertEquals(List.of(first, second, third), queue.getEntries());
+        assertEquals(Optional.of(first), queue.poll());
+        assertEquals(Optional.of(second), queue.poll());
+        assertEquals(Optional.of(third), queue.poll());
+        assertEquals(Optional.empty(), queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void removed_entry_is_not_polled() {
+        var first = anEntry("first");
+        var second = anEntry("second");
+        queue.add(first);
+        queue.add(second);
+
+        assertTrue(queue.remove(first));
+        assertFalse(queue.remove(first));
+        assertEquals(List.of(second), queue.getEntries());
+        assertEquals(Optional.of(second), queue.poll());
+    }
+
+    @Test
+    void notifies_listeners_of_added_and_taken_entries() {
+        var first = anEntry("first");
+        var second = anEntry("second");
+        queue.add(first);
+        queue.add(second);
+        queue.remove(second);
+        queue.remove(second);
+        queue.poll();
+        queue.poll();
+
+        assertEquals(List.of("queued first", "queued second", "dequeued second", "dequeued first"), notifications);
+    }
+
+    @Test
+    void gives_a_snapshot_of_the_entries() {
+        queue.add(anEntry("first"));
+        var entries = queue.getEntries();
+        queue.add(anEntry("second"));
+
+        assertEquals(1, entries.size());
+        assertThrows(UnsupportedOperationException.class, () -> entries.add(anEntry("third")));
+    }
+
+    private static PromptQueue.Entry anEntry(String prompt) {
+        return new PromptQueue.Entry(prompt, new UserMessage(prompt), prompt.length());
+    }
+}
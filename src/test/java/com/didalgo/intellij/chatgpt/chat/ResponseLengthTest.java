@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat;
+
+import com.didalgo.intellij.chatgpt.chat.models.StandardModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseLengthTest {
+
+    @Test
+    void short_responses_get_small_budget_regardless_of_free_context() {
+        assertEquals(1024, ResponseLength.SHORT.getOutputTokenBudget(StandardModel.GPT_4_O, 1000));
+    }
+
+    @Test
+    void long_responses_get_whole_output_limit_of_the_model() {
+        assertEquals(16384, ResponseLength.LONG.getOutputTokenBudget(StandardModel.GPT_4_O, 1000));
+        assertEquals(64000, ResponseLength.LONG.getOutputTokenBudget(StandardModel.CLAUDE_3_7_SONNET, 1000));
+    }
+
+    @Test
+    void budget_shrinks_with_the_context_left_by_large_prompt() {
+        // 8192 - 6000 - 10% margin
+        assertEquals(1592, ResponseLength.LONG.getOutputTokenBudget(StandardModel.GPT_4, 6000));
+    }
+
+    @Test
+    void reserves_at_most_third_of_context_window_for_the_response() {
+        assertEquals(2730, ResponseLength.LONG.getReservedTokens(StandardModel.GPT_4));
+        assertEquals(1024, ResponseLength.SHORT.getReservedTokens(StandardModel.GPT_4));
+    }
+
+    @Test
+    void response_length_is_carried_by_the_message() {
+        var message = new UserMessage("Explain this code");
+
+        assertEquals(ResponseLength.STANDARD, ResponseLength.of(message));
+        assertEquals(ResponseLength.SHORT, ResponseLength.of(ResponseLength.SHORT.applyTo(message)));
+    }
+}
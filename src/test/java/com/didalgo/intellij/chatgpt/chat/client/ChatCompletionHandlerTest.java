@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.ChatLink;
+import com.didalgo.intellij.chatgpt.chat.ChatMessageEvent;
+import com.didalgo.intellij.chatgpt.chat.ChatMessageListener;
+import com.didalgo.intellij.chatgpt.chat.ConversationContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ChatCompletionHandlerTest {
+
+    private static final Duration MAX_DELAY = Duration.ofMillis(50);
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+    private final RecordingListener listener = new RecordingListener();
+    private final UserMessage userMessage = new UserMessage("Hi");
+    private final ChatHandler.ChatCompletionHandler handler = new ChatHandler.ChatCompletionHandler(
+            listener, new StreamCoalescingPolicy(MAX_DELAY, 10), scheduler);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    void delivers_first_chunk_right_away_and_coalesces_the_next_within_the_time_window() {
+        start();
+        chunk("Hel");
+        chunk("lo");
+        chunk(" you");
+        assertEquals(List.of("Hel"), deltas());
+
+        scheduler.advanceTimeBy(MAX_DELAY.minusMillis(1));
+        assertEquals(List.of("Hel"), deltas());
+
+        scheduler.advanceTimeBy(Duration.ofMillis(1));
+        assertEquals(List.of("Hel", "lo you"), deltas());
+    }
+
+    @Test
+    void delivers_right_away_once_the_size_window_fills() {
+        start();
+        chunk("a");
+        chunk("bcdef");
+        chunk("ghijklmnop");
+
+        assertEquals(List.of("a", "bcdefghijklmnop"), deltas());
+    }
+
+    @Test
+    void completes_with_the_whole_text_including_the_held_back_tail() {
+        start();
+        chunk("a");
+        chunk("b");
+        handler.onComplete(mock(ConversationContext.class)).run();
+        scheduler.advanceTimeBy(MAX_DELAY);
+
+        assertEquals(List.of("a"), deltas());
+        var arrived = assertInstanceOf(ChatMessageEvent.ResponseArrived.class, listener.events.get(listener.events.size() - 1));
+        assertEquals("ab", arrived.getGenerations().get(0).getOutput().getText());
+    }
+
+    @Test
+    void delivers_the_held_back_tail_before_failing() {
+        start();
+        chunk("a");
+        chunk("b");
+        handler.onError(mock(ConversationContext.class)).accept(new RuntimeException("Connection reset"));
+        scheduler.advanceTimeBy(MAX_DELAY);
+
+        assertEquals(List.of("a", "b"), deltas());
+        assertInstanceOf(ChatMessageEvent.Failed.class, listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    void flush_waiting_for_the_lock_delivers_nothing_after_completion() throws Exception {
+        start();
+        chunk("a");
+        chunk("b");
+
+        Thread flusher;
+        synchronized (handler) {
+            flusher = new Thread(() -> scheduler.advanceTimeBy(MAX_DELAY));
+            flusher.start();
+            while (flusher.getState() != Thread.State.BLOCKED)
+                Thread.onSpinWait();
+            handler.onComplete(mock(ConversationContext.class)).run();
+        }
+        flusher.join();
+
+        assertEquals(List.of("a"), deltas());
+        assertInstanceOf(ChatMessageEvent.ResponseArrived.class, listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    void flush_waiting_for_the_lock_delivers_nothing_after_cancellation() throws Exception {
+        start();
+        chunk("a");
+        chunk("b");
+
+        Thread flusher;
+        synchronized (handler) {
+            flusher = new Thread(() -> scheduler.advanceTimeBy(MAX_DELAY));
+            flusher.start();
+            while (flusher.getState() != Thread.State.BLOCKED)
+                Thread.onSpinWait();
+            handler.onCancel(mock(ConversationContext.class)).run();
+        }
+        flusher.join();
+
+        assertEquals(List.of("a"), deltas());
+        assertInstanceOf(ChatMessageEvent.Cancelled.class, listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    void records_the_user_message_of_the_completed_exchange_along_with_the_response() {
+        var ctx = mock(ConversationContext.class);
+        start();
+        chunk("Hello");
+        handler.onComplete(ctx).run();
+
+        verify(ctx).addChatExchange(same(userMessage), argThat(response -> "Hello".equals(response.getText())));
+        verify(ctx, never()).addChatMessage(any());
+    }
+
+    @Test
+    void records_the_user_message_of_the_failed_exchange() {
+        var ctx = mock(ConversationContext.class);
+        start();
+        chunk("Hel");
+        handler.onError(ctx).accept(new RuntimeException("Connection reset"));
+
+        verify(ctx).addChatMessage(same(userMessage));
+        verify(ctx, never()).addChatExchange(any(), any());
+    }
+
+    @Test
+    void records_the_user_message_of_the_cancelled_exchange() {
+        var ctx = mock(ConversationContext.class);
+        start();
+        chunk("Hel");
+        handler.onCancel(ctx).run();
+
+        verify(ctx).addChatMessage(same(userMessage));
+        verify(ctx, never()).addChatExchange(any(), any());
+    }
+
+    private void start() {
+        var initiating = ChatMessageEvent.starting(mock(ChatLink.class), userMessage)
+                .initiating(new Prompt(userMessage));
+        handler.onSubscribe(initiating).accept(mock(Subscription.class));
+    }
+
+    private void chunk(String text) {
+        handler.onNextChunk().accept(new ChatResponse(List.of(new Generation(new AssistantMessage(text)))));
+    }
+
+    private List<String> deltas() {
+        return listener.events.stream()
+                .filter(ChatMessageEvent.ResponseArriving.class::isInstance)
+                .map(event -> ((ChatMessageEvent.ResponseArriving) event).getDelta())
+                .toList();
+    }
+
+    static class RecordingListener implements ChatMessageListener {
+        final List<ChatMessageEvent> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void exchangeStarting(ChatMessageEvent.Starting event) { }
+
+        @Override
+        public void exchangeStarted(ChatMessageEvent.Started event) {
+            events.add(event);
+        }
+
+        @Override
+        public void responseArriving(ChatMessageEvent.ResponseArriving event) {
+            events.add(event);
+        }
+
+        @Override
+        public void responseArrived(ChatMessageEvent.ResponseArrived event) {
+            events.add(event);
+        }
+
+        @Override
+        public void exchangeFailed(ChatMessageEvent.Failed event) {
+            events.add(event);
+        }
+
+        @Override
+        public void exchangeCancelled(ChatMessageEvent.Cancelled event) {
+            events.add(event);
+        }
+    }
+}
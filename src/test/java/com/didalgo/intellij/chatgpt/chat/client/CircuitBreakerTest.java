@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.client.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN_DURATION, nanoTime::get);
+
+    @Test
+    void stays_closed_below_the_failure_threshold() {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(Duration.ZERO, breaker.getRemainingOpenTime());
+    }
+
+    @Test
+    void success_resets_the_consecutive_failures() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void opens_after_consecutive_failures_and_rejects_requests_for_the_open_duration() {
+        openBreaker();
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        advance(OPEN_DURATION.minusSeconds(10));
+        assertFalse(breaker.tryAcquire());
+        assertEquals(Duration.ofSeconds(10), breaker.getRemainingOpenTime());
+    }
+
+    @Test
+    void lets_a_single_trial_request_through_once_half_open() {
+        openBreaker();
+        advance(OPEN_DURATION);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void closes_when_the_trial_request_succeeds() {
+        openBreaker();
+        advance(OPEN_DURATION);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onSuccess();
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void opens_again_when_the_trial_request_fails() {
+        openBreaker();
+        advance(OPEN_DURATION);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(OPEN_DURATION, breaker.getRemainingOpenTime());
+    }
+
+    @Test
+    void released_trial_lets_another_trial_request_through() {
+        openBreaker();
+        advance(OPEN_DURATION);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.release();
+
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 3; i++)
+            breaker.onFailure();
+    }
+
+    private void advance(Duration duration) {
+        nanoTime.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
+import com.didalgo.intellij.chatgpt.chat.ChatLink;
+import com.didalgo.intellij.chatgpt.chat.ChatMessageEvent;
+import com.didalgo.intellij.chatgpt.chat.client.ChatHandler.AssistantResponse;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.PublisherProbe;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class HedgingPolicyTest {
+
+    static final AssistantType PRIMARY = AssistantType.System.GPT_4;
+    static final AssistantType SECONDARY = AssistantType.System.CLAUDE;
+    static final Duration DEADLINE = Duration.ofSeconds(2);
+
+    final HedgingPolicy policy = new HedgingPolicy(SECONDARY, DEADLINE);
+    final Prompt prompt = new Prompt(new UserMessage("Hi"));
+    final ChatModel primaryModel = mock(ChatModel.class);
+    final ChatModel secondaryModel = mock(ChatModel.class);
+
+    @Test
+    void primary_responding_within_the_deadline_is_not_hedged() {
+        when(primaryModel.stream(any(Prompt.class))).thenReturn(respondingAfter(Duration.ofSeconds(1), "primary"));
+
+        StepVerifier.withVirtualTime(() -> policy.hedge(responses(PRIMARY, primaryModel), responses(SECONDARY, secondaryModel)))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(1))
+                .assertNext(response -> assertEquals(PRIMARY, response.assistantType()))
+                .verifyComplete();
+        verify(secondaryModel, never()).stream(any(Prompt.class));
+    }
+
+    @Test
+    void secondary_assistant_starts_only_after_the_deadline() {
+        when(primaryModel.stream(any(Prompt.class))).thenReturn(respondingAfter(Duration.ofSeconds(10), "primary"));
+        when(secondaryModel.stream(any(Prompt.class))).thenReturn(respondingAfter(Duration.ofSeconds(1), "secondary"));
+
+        StepVerifier.withVirtualTime(() -> policy.hedge(responses(PRIMARY, primaryModel), responses(SECONDARY, secondaryModel)))
+                .expectSubscription()
+                .thenAwait(DEADLINE.minusMillis(1))
+                .then(() -> verify(secondaryModel, never()).stream(any(Prompt.class)))
+                .thenAwait(Duration.ofMillis(1))
+                .then(() -> verify(secondaryModel).stream(prompt))
+                .thenAwait(Duration.ofSeconds(1))
+                .assertNext(response -> assertEquals(SECONDARY, response.assistantType()))
+                .verifyComplete();
+    }
+
+    @Test
+    void primary_failing_fast_does_not_win_the_race() {
+        var primaryError = new CircuitBreakerOpenException(PRIMARY, Duration.ofSeconds(30));
+        when(primaryModel.stream(any(Prompt.class))).thenReturn(Flux.error(primaryError));
+        when(secondaryModel.stream(any(Prompt.class))).thenReturn(respondingAfter(Duration.ofSeconds(1), "secondary"));
+
+        StepVerifier.withVirtualTime(() -> policy.hedge(responses(PRIMARY, primaryModel), responses(SECONDARY, secondaryModel)))
+                .expectSubscription()
+                .thenAwait(DEADLINE.plusSeconds(1))
+                .assertNext(response -> assertEquals(SECONDARY, response.assistantType()))
+                .verifyComplete();
+    }
+
+    @Test
+    void primary_error_is_given_when_neither_request_responds() {
+        var primaryError = new IllegalStateException("primary");
+        when(primaryModel.stream(any(Prompt.class))).thenReturn(Flux.error(primaryError));
+        when(secondaryModel.stream(any(Prompt.class))).thenReturn(Flux.error(new IllegalStateException("secondary")));
+
+        StepVerifier.withVirtualTime(() -> policy.hedge(responses(PRIMARY, primaryModel), responses(SECONDARY, secondaryModel)))
+                .expectSubscription()
+                .thenAwait(DEADLINE)
+                .expectErrorMatches(e -> e == primaryError)
+                .verify();
+    }
+
+    @Test
+    void losing_request_is_cancelled() {
+        var primaryProbe = PublisherProbe.of(respondingAfter(Duration.ofSeconds(10), "primary"));
+        var secondaryProbe = PublisherProbe.of(respondingAfter(Duration.ofSeconds(1), "secondary"));
+        when(primaryModel.stream(any(Prompt.class))).thenReturn(primaryProbe.flux());
+        when(secondaryModel.stream(any(Prompt.class))).thenReturn(secondaryProbe.flux());
+
+        StepVerifier.withVirtualTime(() -> policy.hedge(responses(PRIMARY, primaryModel), responses(SECONDARY, secondaryModel)))
+                .expectSubscription()
+                .thenAwait(DEADLINE.plusSeconds(1))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        primaryProbe.assertWasCancelled();
+        secondaryProbe.assertWasNotCancelled();
+    }
+
+    @Test
+    void started_event_reports_the_winner_as_the_responding_assistant() {
+        when(primaryModel.stream(any(Prompt.class))).thenReturn(respondingAfter(Duration.ofSeconds(10), "primary"));
+        when(secondaryModel.stream(any(Prompt.class))).thenReturn(respondingAfter(Duration.ofSeconds(1), "secondary"));
+        var listener = new ChatCompletionHandlerTest.RecordingListener();
+        var handler = new ChatHandler.ChatCompletionHandler(listener);
+        handler.onSubscribe(ChatMessageEvent.starting(mock(ChatLink.class), new UserMessage("Hi")).initiating(prompt))
+                .accept(mock(Subscription.class));
+
+        StepVerifier.withVirtualTime(() -> policy.hedge(responses(PRIMARY, primaryModel), responses(SECONDARY, secondaryModel))
+                        .doOnNext(handler.onNextResponse()))
+                .expectSubscription()
+                .thenAwait(DEADLINE.plusSeconds(1))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(Optional.of(SECONDARY), handler.getRespondingAssistant());
+        var arriving = assertInstanceOf(ChatMessageEvent.ResponseArriving.class, listener.events.get(listener.events.size() - 1));
+        assertEquals(Optional.of(SECONDARY), arriving.getRespondingAssistant());
+        assertEquals("secondary", arriving.getDelta());
+    }
+
+    private Flux<AssistantResponse> responses(AssistantType assistantType, ChatModel chatModel) {
+        return Flux.defer(() -> chatModel.stream(prompt))
+                .map(response -> new AssistantResponse(assistantType, response, true));
+    }
+
+    private static Flux<ChatResponse> respondingAfter(Duration delay, String text) {
+        return Mono.delay(delay).thenMany(Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage(text))))));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.AssistantType;
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
+import com.didalgo.intellij.chatgpt.chat.client.ChatHandler.PromptFingerprint;
+import com.didalgo.intellij.chatgpt.chat.models.ModelFamily;
+import com.didalgo.intellij.chatgpt.chat.models.ModelType;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.Media;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PromptFingerprintTest {
+
+    private final ModelType modelType = mock(ModelType.class);
+
+    PromptFingerprintTest() {
+        when(modelType.id()).thenReturn("gpt-4o");
+    }
+
+    @Test
+    void separately_built_equal_options_give_the_same_fingerprint() {
+        var first = fingerprint(ModelFamily.OPEN_AI.createRequestOptions(1024));
+        var second = fingerprint(ModelFamily.OPEN_AI.createRequestOptions(1024));
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+
+    @Test
+    void options_of_different_values_give_different_fingerprints() {
+        assertNotEquals(fingerprint(ModelFamily.OPEN_AI.createRequestOptions(1024)),
+                fingerprint(ModelFamily.OPEN_AI.createRequestOptions(2048)));
+        assertNotEquals(fingerprint(ChatOptions.builder().temperature(0.2).build()),
+                fingerprint(ChatOptions.builder().temperature(0.7).build()));
+        assertNotEquals(fingerprint(ChatOptions.builder().topP(0.5).build()),
+                fingerprint(ChatOptions.builder().topP(0.9).build()));
+    }
+
+    @Test
+    void predicted_output_is_part_of_the_fingerprint() {
+        assertEquals(fingerprint(ModelFamily.OPEN_AI.createRequestOptions(1024, new PredictedOutput("int x;"))),
+                fingerprint(ModelFamily.OPEN_AI.createRequestOptions(1024, new PredictedOutput("int x;"))));
+        assertNotEquals(fingerprint(ModelFamily.OPEN_AI.createRequestOptions(1024, new PredictedOutput("int x;"))),
+                fingerprint(ModelFamily.OPEN_AI.createRequestOptions(1024, new PredictedOutput("int y;"))));
+    }
+
+    @Test
+    void prompt_with_media_is_not_fingerprinted() {
+        var message = mock(UserMessage.class);
+        when(message.getMedia()).thenReturn(List.of(mock(Media.class)));
+
+        assertTrue(PromptFingerprint.of(AssistantType.System.GPT_4, modelType, new Prompt(message)).isEmpty());
+    }
+
+    private PromptFingerprint fingerprint(ChatOptions options) {
+        var prompt = new Prompt(List.of(new SystemMessage("Be brief"), new UserMessage("Hi")), options);
+        return PromptFingerprint.of(AssistantType.System.GPT_4, modelType, prompt).orElseThrow();
+    }
+}
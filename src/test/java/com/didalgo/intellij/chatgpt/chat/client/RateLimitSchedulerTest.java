@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.client.RateLimitScheduler.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.openai.metadata.OpenAiRateLimit;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitSchedulerTest {
+
+    private static final Duration RESET = Duration.ofSeconds(20);
+
+    private final VirtualTimeScheduler timer = VirtualTimeScheduler.create();
+    private final RateLimitScheduler scheduler = new RateLimitScheduler(() -> timer.now(TimeUnit.NANOSECONDS), timer);
+
+    @AfterEach
+    void disposeTimer() {
+        timer.dispose();
+    }
+
+    @Test
+    void lets_requests_through_while_within_the_limits() {
+        scheduler.update(new OpenAiRateLimit(10L, 2L, Duration.ofMinutes(1), 1000L, 1000L, Duration.ofMinutes(1)));
+
+        assertTrue(acquire(Priority.INTERACTIVE, 10).isDone());
+        assertTrue(acquire(Priority.INTERACTIVE, 10).isDone());
+        assertFalse(acquire(Priority.INTERACTIVE, 10).isDone());
+        assertEquals(1, scheduler.getStats().queueDepth());
+    }
+
+    @Test
+    void holds_requests_back_until_the_limits_reset() {
+        scheduler.update(new OpenAiRateLimit(10L, 0L, RESET, 1000L, 1000L, RESET));
+
+        var request = acquire(Priority.INTERACTIVE, 10);
+        timer.advanceTimeBy(RESET.minusMillis(1));
+        assertFalse(request.isDone());
+        timer.advanceTimeBy(Duration.ofMillis(1));
+        assertTrue(request.isDone());
+        assertTrue(scheduler.getStats().averageWait().isPositive());
+    }
+
+    @Test
+    void holds_requests_back_which_would_exceed_the_remaining_tokens() {
+        scheduler.update(new OpenAiRateLimit(10L, 10L, Duration.ofMinutes(1), 1000L, 100L, RESET));
+
+        assertTrue(acquire(Priority.INTERACTIVE, 80).isDone());
+        var request = acquire(Priority.INTERACTIVE, 80);
+        assertFalse(request.isDone());
+        timer.advanceTimeBy(RESET);
+        assertTrue(request.isDone());
+    }
+
+    @Test
+    void lets_interactive_requests_through_before_background_ones() {
+        scheduler.update(new OpenAiRateLimit(10L, 0L, RESET, 1000L, 1000L, RESET));
+        List<Priority> granted = new ArrayList<>();
+
+        scheduler.acquire(Priority.BACKGROUND, 10, __ -> { })
+                .doOnSuccess(__ -> granted.add(Priority.BACKGROUND)).subscribe();
+        scheduler.acquire(Priority.INTERACTIVE, 10, __ -> { })
+                .doOnSuccess(__ -> granted.add(Priority.INTERACTIVE)).subscribe();
+        assertEquals(List.of(), granted);
+        timer.advanceTimeBy(RESET);
+
+        assertEquals(List.of(Priority.INTERACTIVE, Priority.BACKGROUND), granted);
+    }
+
+    @Test
+    void pauses_after_the_endpoint_rejected_a_request() {
+        scheduler.onRateLimited(RESET);
+        List<RateLimitScheduler.Stats> waiting = new ArrayList<>();
+
+        var request = scheduler.acquire(Priority.INTERACTIVE, 10, waiting::add).toFuture();
+        assertFalse(request.isDone());
+        assertEquals(1, waiting.size());
+        assertEquals(1, waiting.get(0).queueDepth());
+        assertEquals(RESET, waiting.get(0).expectedWait());
+
+        timer.advanceTimeBy(RESET);
+        assertTrue(request.isDone());
+    }
+
+    @Test
+    void pauses_for_the_default_time_when_the_endpoint_gave_no_retry_after() {
+        scheduler.onRateLimited(null);
+
+        var request = acquire(Priority.INTERACTIVE, 10);
+        timer.advanceTimeBy(Duration.ofMillis(1999));
+        assertFalse(request.isDone());
+        timer.advanceTimeBy(Duration.ofMillis(1));
+        assertTrue(request.isDone());
+    }
+
+    private CompletableFuture<Void> acquire(Priority priority, long estimatedTokens) {
+        return scheduler.acquire(priority, estimatedTokens, __ -> { }).toFuture();
+    }
+}
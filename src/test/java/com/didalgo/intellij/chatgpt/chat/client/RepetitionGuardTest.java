@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import com.didalgo.intellij.chatgpt.chat.client.RepetitionGuard.Verdict;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RepetitionGuardTest {
+
+    private static final RepetitionGuardPolicy POLICY = new RepetitionGuardPolicy(64, 4, 0);
+
+    @Test
+    void stops_response_repeating_the_same_lines() {
+        var guard = new RepetitionGuard(POLICY);
+        var line = "The quick brown fox jumps over the lazy dog, again and again and again.\n";
+
+        int lines = 0;
+        while (guard.append(line) == Verdict.OK && lines < 100)
+            lines++;
+
+        assertEquals(Verdict.REPETITIVE, guard.getVerdict());
+        assertEquals(POLICY.repetitionLimit() + 1, lines, "Lines let through");
+    }
+
+    @Test
+    void lets_through_varied_text_with_repeated_fragments() {
+        var guard = new RepetitionGuard(POLICY);
+        var text = new StringBuilder("=".repeat(200)).append('\n');
+        for (int i = 0; i < 50; i++)
+            text.append("| ").append(i).append(" | some | table | cells |\n");
+
+        assertEquals(Verdict.OK, guard.append(text));
+    }
+
+    @Test
+    void stops_long_period_loop_after_a_long_varied_response() {
+        var guard = new RepetitionGuard(POLICY);
+        var random = new Random(42);
+        var text = new StringBuilder();
+        for (int i = 0; i < 200_000; i++)
+            text.append((char) ('a' + random.nextInt(26)));
+        assertEquals(Verdict.OK, guard.append(text));
+
+        var passage = text.substring(0, RepetitionGuard.MAX_PERIOD - 100);
+        int passages = 0;
+        while (guard.append(passage) == Verdict.OK && passages < 100)
+            passages++;
+
+        assertEquals(Verdict.REPETITIVE, guard.getVerdict());
+        assertEquals(POLICY.repetitionLimit() + 1, passages, "Passages let through");
+    }
+
+    @Test
+    void stops_response_exceeding_the_maximum_length() {
+        var guard = new RepetitionGuard(new RepetitionGuardPolicy(64, 0, 100));
+
+        assertEquals(Verdict.OK, guard.append("x".repeat(100)));
+        assertEquals(Verdict.RUNAWAY, guard.append("x"));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private static final Duration INITIAL_BACKOFF = Duration.ofMillis(500);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(8);
+
+    private final RetryPolicy policy = new RetryPolicy(10, INITIAL_BACKOFF, MAX_BACKOFF, Duration.ofSeconds(30));
+
+    @Test
+    void backs_off_exponentially_with_jitter_of_up_to_half_the_delay() {
+        var cause = new TransientAiException("503 - Service Unavailable");
+
+        for (int attempt = 0; attempt < 100; attempt++) {
+            assertBetween(Duration.ofMillis(250), Duration.ofMillis(500), policy.backoff(1, cause).orElseThrow());
+            assertBetween(Duration.ofMillis(500), Duration.ofMillis(1000), policy.backoff(2, cause).orElseThrow());
+            assertBetween(Duration.ofMillis(1000), Duration.ofMillis(2000), policy.backoff(3, cause).orElseThrow());
+        }
+    }
+
+    @Test
+    void caps_the_backoff_at_the_max_backoff() {
+        var cause = new TransientAiException("503 - Service Unavailable");
+
+        for (int attempt = 0; attempt < 100; attempt++)
+            assertBetween(MAX_BACKOFF.dividedBy(2), MAX_BACKOFF, policy.backoff(10, cause).orElseThrow());
+    }
+
+    @Test
+    void gives_up_after_the_max_retries() {
+        assertEquals(Optional.empty(), policy.backoff(11, new TransientAiException("503 - Service Unavailable")));
+        assertEquals(Optional.empty(), RetryPolicy.NONE.backoff(1, new TransientAiException("503 - Service Unavailable")));
+    }
+
+    @Test
+    void does_not_retry_failures_which_are_not_retryable() {
+        assertEquals(Optional.empty(), policy.backoff(1, new NonTransientAiException("401 - Unauthorized")));
+        assertEquals(Optional.empty(), policy.backoff(1, new IllegalStateException()));
+    }
+
+    @Test
+    void honors_the_retry_after_requested_by_the_provider() {
+        assertEquals(Optional.of(Duration.ofSeconds(20)), policy.backoff(1, rateLimited("20")));
+    }
+
+    @Test
+    void gives_up_when_the_requested_retry_after_is_too_long() {
+        assertEquals(Optional.empty(), policy.backoff(1, rateLimited("120")));
+    }
+
+    private static WebClientResponseException rateLimited(String retryAfter) {
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        return WebClientResponseException.create(429, "Too Many Requests", headers, new byte[0], StandardCharsets.UTF_8);
+    }
+
+    private static void assertBetween(Duration min, Duration max, Duration actual) {
+        assertTrue(actual.compareTo(min) >= 0 && actual.compareTo(max) <= 0,
+                () -> actual + " not within [" + min + ", " + max + "]");
+    }
+}
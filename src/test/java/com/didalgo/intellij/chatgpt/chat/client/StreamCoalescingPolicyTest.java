@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamCoalescingPolicyTest {
+
+    private final StreamCoalescingPolicy policy = new StreamCoalescingPolicy(Duration.ofMillis(50), 100);
+
+    @Test
+    void disabled_policy_delivers_every_chunk() {
+        assertFalse(StreamCoalescingPolicy.NONE.isEnabled());
+        assertTrue(StreamCoalescingPolicy.NONE.shouldDeliver(0, 1));
+        assertFalse(new StreamCoalescingPolicy(Duration.ofMillis(50), 0).isEnabled());
+    }
+
+    @Test
+    void holds_chunks_back_within_the_time_window() {
+        assertFalse(policy.shouldDeliver(Duration.ofMillis(49).toNanos(), 99));
+        assertTrue(policy.shouldDeliver(Duration.ofMillis(50).toNanos(), 1));
+    }
+
+    @Test
+    void delivers_right_away_once_the_size_window_fills() {
+        assertTrue(policy.shouldDeliver(0, 100));
+        assertFalse(policy.shouldDeliver(0, 99));
+    }
+}
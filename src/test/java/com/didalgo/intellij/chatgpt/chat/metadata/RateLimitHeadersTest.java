@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.metadata;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.metadata.RateLimit;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitHeadersTest {
+
+    @Test
+    void reads_the_openai_headers() {
+        var headers = Map.of(
+                "x-ratelimit-limit-requests", "500",
+                "x-ratelimit-remaining-requests", "499",
+                "x-ratelimit-reset-requests", "120ms",
+                "x-ratelimit-limit-tokens", "30000",
+                "x-ratelimit-remaining-tokens", "29000",
+                "x-ratelimit-reset-tokens", "6m0s");
+
+        var rateLimit = RateLimitHeaders.of(headers::get, Instant.now()).orElseThrow();
+
+        assertEquals(500L, rateLimit.getRequestsLimit());
+        assertEquals(499L, rateLimit.getRequestsRemaining());
+        assertEquals(Duration.ofMillis(120), rateLimit.getRequestsReset());
+        assertEquals(30000L, rateLimit.getTokensLimit());
+        assertEquals(29000L, rateLimit.getTokensRemaining());
+        assertEquals(Duration.ofMinutes(6), rateLimit.getTokensReset());
+    }
+
+    @Test
+    void reads_the_anthropic_headers() {
+        var now = Instant.parse("2024-05-01T10:00:00Z");
+        var headers = Map.of(
+                "anthropic-ratelimit-requests-limit", "50",
+                "anthropic-ratelimit-requests-remaining", "0",
+                "anthropic-ratelimit-requests-reset", "2024-05-01T10:00:30Z",
+                "anthropic-ratelimit-tokens-remaining", "4000",
+                "anthropic-ratelimit-tokens-reset", "2024-05-01T09:59:00Z");
+
+        var rateLimit = RateLimitHeaders.of(headers::get, now).orElseThrow();
+
+        assertEquals(50L, rateLimit.getRequestsLimit());
+        assertEquals(0L, rateLimit.getRequestsRemaining());
+        assertEquals(Duration.ofSeconds(30), rateLimit.getRequestsReset());
+        assertNull(rateLimit.getTokensLimit());
+        assertEquals(4000L, rateLimit.getTokensRemaining());
+        assertEquals(Duration.ZERO, rateLimit.getTokensReset());
+    }
+
+    @Test
+    void reads_nothing_without_the_headers() {
+        assertTrue(RateLimitHeaders.of(Map.of("content-type", "text/event-stream")::get, Instant.now()).isEmpty());
+    }
+
+    @Test
+    void parses_the_durations() {
+        assertEquals(Duration.ofSeconds(1), RateLimitHeaders.parseDuration("1s"));
+        assertEquals(Duration.ofMillis(20), RateLimitHeaders.parseDuration("20ms"));
+        assertEquals(Duration.ofMillis(3_723_500), RateLimitHeaders.parseDuration("1h2m3.5s"));
+        assertNull(RateLimitHeaders.parseDuration("soon"));
+        assertNull(RateLimitHeaders.parseDuration("5s later"));
+    }
+
+    @Test
+    void gives_the_rate_limit_to_the_listener_in_the_context() {
+        List<RateLimit> recorded = new ArrayList<>();
+        var headers = Map.of("x-ratelimit-remaining-requests", "7");
+
+        Mono.deferContextual(context -> {
+                    RateLimitHeaders.record(context, headers::get);
+                    return Mono.empty();
+                })
+                .contextWrite(RateLimitHeaders.recordingTo(recorded::add))
+                .block();
+        RateLimitHeaders.record(Context.empty(), headers::get);
+
+        assertEquals(1, recorded.size());
+        assertEquals(7L, recorded.get(0).getRequestsRemaining());
+    }
+}
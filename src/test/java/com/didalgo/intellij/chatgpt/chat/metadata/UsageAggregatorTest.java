@@ -4,6 +4,7 @@
  */
 package com.didalgo.intellij.chatgpt.chat.metadata;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -48,6 +49,29 @@ class UsageAggregatorTest {
         assertUsageEquals(0, 1);
     }
 
+    @Test
+    void accept_keeps_cached_prompt_tokens_of_openai_and_anthropic_usage() throws Exception {
+        var mapper = new ObjectMapper();
+        aggregator.accept(new ImmutableUsage(1200, 10,
+                mapper.readTree("{\"prompt_tokens\":1200,\"prompt_tokens_details\":{\"cached_tokens\":1024}}")));
+
+        assertEquals(new PromptCacheUsage(1024, 176), PromptCacheUsage.of(aggregator.toImmutableUsage()).orElseThrow());
+
+        var anthropicUsage = new ImmutableUsage(50, 10,
+                mapper.readTree("{\"input_tokens\":50,\"cache_creation_input_tokens\":300,\"cache_read_input_tokens\":2000}"));
+        assertEquals(new PromptCacheUsage(2000, 350), PromptCacheUsage.of(anthropicUsage).orElseThrow());
+    }
+
+    @Test
+    void usage_without_cached_prompt_tokens_has_no_cache_usage() throws Exception {
+        var usage = new ImmutableUsage(1200, 10,
+                new ObjectMapper().readTree("{\"prompt_tokens\":1200,\"prompt_tokens_details\":{\"cached_tokens\":0}}"));
+        aggregator.accept(usage);
+
+        assertTrue(PromptCacheUsage.of(usage).isEmpty());
+        assertTrue(PromptCacheUsage.of(aggregator.toImmutableUsage()).isEmpty());
+    }
+
     private static Usage usage(Integer promptTokens, Integer completionTokens) {
         return new ImmutableUsage(promptTokens, completionTokens, null);
     }
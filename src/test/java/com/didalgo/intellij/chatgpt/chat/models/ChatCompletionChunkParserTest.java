@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.chat.metadata.PromptCacheUsage;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.retry.NonTransientAiException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatCompletionChunkParserTest {
+
+    @Test
+    void reads_content_delta_skipping_the_rest_of_the_chunk() {
+        var chunk = parse("""
+                data: {"id":"chatcmpl-1","object":"chat.completion.chunk","model":"gpt-4o","system_fingerprint":"fp",\
+                "choices":[{"index":0,"delta":{"role":"assistant","content":"Hello","refusal":null},"logprobs":null,"finish_reason":null}],\
+                "usage":null}""");
+
+        assertEquals("Hello", chunk.getResult().getOutput().getText());
+        assertTrue(chunk.getMetadata().getId().isEmpty());
+    }
+
+    @Test
+    void reads_finish_reason_and_usage_of_the_last_chunks() {
+        var finished = parse("""
+                data: {"id":"chatcmpl-1","model":"gpt-4o","choices":[{"index":0,"delta":{},"finish_reason":"length"}]}""");
+        var usage = parse("""
+                data: {"id":"chatcmpl-1","model":"gpt-4o","choices":[],\
+                "usage":{"prompt_tokens":1500,"completion_tokens":20,"total_tokens":1520,"prompt_tokens_details":{"cached_tokens":1024,"audio_tokens":0}}}""");
+
+        assertEquals("length", finished.getResult().getMetadata().getFinishReason());
+        assertNull(usage.getResult());
+        assertEquals(1500, usage.getMetadata().getUsage().getPromptTokens());
+        assertEquals(20, usage.getMetadata().getUsage().getCompletionTokens());
+        assertEquals(new PromptCacheUsage(1024, 476), PromptCacheUsage.of(usage.getMetadata().getUsage()).orElseThrow());
+    }
+
+    @Test
+    void skips_lines_carrying_nothing_of_interest() {
+        assertNull(parse(": keep-alive"));
+        assertNull(parse("data: [DONE]"));
+        assertNull(parse("""
+                data: {"id":"chatcmpl-1","choices":[{"index":0,"delta":{"role":"assistant","content":""},"finish_reason":null}]}"""));
+    }
+
+    @Test
+    void reports_error_of_the_stream() {
+        var e = assertThrows(NonTransientAiException.class, () -> parse("""
+                data: {"error":{"message":"Rate limit reached","type":"requests","code":null}}"""));
+
+        assertEquals("Rate limit reached", e.getMessage());
+    }
+
+    private static ChatResponse parse(String line) {
+        var buffer = Unpooled.directBuffer().writeBytes(line.getBytes(StandardCharsets.UTF_8));
+        try {
+            return OpenAiStreamingChatModel.parseEvent(buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+}
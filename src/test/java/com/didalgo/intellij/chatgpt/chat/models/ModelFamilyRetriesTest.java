@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The chat models make a single attempt of a failed request, leaving the retries to the
+ * {@link com.didalgo.intellij.chatgpt.chat.client.RetryPolicy}.
+ */
+class ModelFamilyRetriesTest {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private HttpServer server;
+    private String serverUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            attempts.incrementAndGet();
+            var body = "{\"error\":{\"message\":\"Service unavailable\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(503, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void anthropic_model_makes_a_single_attempt() {
+        var config = anAssistantConfig("claude-3-5-sonnet-latest");
+        when(config.isEnableCustomApiEndpointUrl()).thenReturn(true);
+        when(config.getApiEndpointUrl()).thenReturn(serverUrl);
+
+        assertSingleAttempt(ModelFamily.ANTHROPIC.createChatModel(config));
+    }
+
+    @Test
+    void ollama_model_makes_a_single_attempt() {
+        var config = anAssistantConfig("llama3.2");
+        when(config.isEnableCustomApiEndpointUrl()).thenReturn(true);
+        when(config.getApiEndpointUrl()).thenReturn(serverUrl);
+
+        assertSingleAttempt(ModelFamily.OLLAMA.createChatModel(config));
+    }
+
+    @Test
+    void azure_openai_model_makes_a_single_attempt() {
+        var config = anAssistantConfig("gpt-4o");
+        when(config.getAzureApiEndpoint()).thenReturn(serverUrl);
+        when(config.getAzureDeploymentName()).thenReturn("gpt-4o");
+
+        assertSingleAttempt(ModelFamily.AZURE_OPENAI.createChatModel(config));
+    }
+
+    private void assertSingleAttempt(ChatModel chatModel) {
+        assertThrows(RuntimeException.class, () -> chatModel.call(new Prompt("Hi")));
+        assertEquals(1, attempts.get());
+    }
+
+    private static GeneralSettings.AssistantOptions anAssistantConfig(String modelName) {
+        var modelType = mock(ModelType.class);
+        when(modelType.id()).thenReturn(modelName);
+        when(modelType.getOutputTokenLimit()).thenReturn(1024);
+
+        var config = mock(GeneralSettings.AssistantOptions.class);
+        when(config.getApiKey()).thenReturn("test-key");
+        when(config.getModelName()).thenReturn(modelName);
+        when(config.getModelType()).thenReturn(modelType);
+        when(config.getTemperature()).thenReturn(0.4);
+        when(config.getTopP()).thenReturn(0.95);
+        return config;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.chat.ConversationState;
+import com.intellij.testFramework.junit5.TestApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestApplication
+class OpenAiResponsesChatModelTest {
+
+    private final OpenAiResponsesChatModel chatModel = new OpenAiResponsesChatModel("http://localhost", "test-key",
+            OpenAiChatOptions.builder().model("gpt-4o").temperature(0.4).topP(0.95).maxTokens(1000).build());
+
+    @Test
+    void request_carries_the_whole_conversation_with_the_system_messages_as_instructions() {
+        var prompt = new Prompt(List.of(new SystemMessage("You are helpful"),
+                new UserMessage("Hi"), new AssistantMessage("Hello"), new UserMessage("And now?")));
+
+        var request = chatModel.createRequest(prompt, true);
+
+        assertEquals("gpt-4o", request.path("model").asText());
+        assertTrue(request.path("stream").asBoolean());
+        assertTrue(request.path("store").asBoolean());
+        assertEquals(1000, request.path("max_output_tokens").asInt());
+        assertEquals(0.4, request.path("temperature").asDouble());
+        assertEquals(0.95, request.path("top_p").asDouble());
+        assertEquals("You are helpful", request.path("instructions").asText());
+        assertFalse(request.has("previous_response_id"));
+        var input = request.path("input");
+        assertEquals(3, input.size());
+        assertEquals("user", input.get(0).path("role").asText());
+        assertEquals("Hi", input.get(0).path("content").asText());
+        assertEquals("assistant", input.get(1).path("role").asText());
+        assertEquals("Hello", input.get(1).path("content").asText());
+        assertEquals("And now?", input.get(2).path("content").asText());
+    }
+
+    @Test
+    void chained_request_continues_from_the_previous_response() {
+        var state = new ConversationState("resp_1", "gpt-4o", 1200);
+        var prompt = new Prompt(List.of(new SystemMessage("You are helpful"), state.chain(new UserMessage("And now?"))));
+
+        var request = chatModel.createRequest(prompt, false);
+
+        assertFalse(request.path("stream").asBoolean());
+        assertEquals("resp_1", request.path("previous_response_id").asText());
+        assertEquals("You are helpful", request.path("instructions").asText());
+        assertEquals(1, request.path("input").size());
+        assertEquals("And now?", request.path("input").get(0).path("content").asText());
+    }
+
+    @Test
+    void reasoning_request_carries_the_effort_instead_of_the_sampling_options() {
+        var reasoningModel = new OpenAiResponsesChatModel("http://localhost", "test-key",
+                OpenAiChatOptions.builder().model("o3-mini").temperature(0.4).topP(0.95).reasoningEffort("high").build());
+
+        var request = reasoningModel.createRequest(new Prompt(new UserMessage("Hi")), true);
+
+        assertEquals("high", request.path("reasoning").path("effort").asText());
+        assertFalse(request.has("temperature"));
+        assertFalse(request.has("top_p"));
+    }
+
+    @Test
+    void text_deltas_are_followed_by_the_final_response_with_the_conversation_state() {
+        var events = Flux.just(
+                "{\"type\":\"response.created\",\"response\":{\"id\":\"resp_2\"}}",
+                "{\"type\":\"response.output_text.delta\",\"delta\":\"Hel\"}",
+                "{\"type\":\"response.output_text.delta\",\"delta\":\"lo\"}",
+                "{\"type\":\"response.completed\",\"response\":{\"id\":\"resp_2\",\"model\":\"gpt-4o-2024-08-06\",\"status\":\"completed\","
+                        + "\"usage\":{\"input_tokens\":20,\"output_tokens\":5,\"total_tokens\":25}}}");
+
+        StepVerifier.create(chatModel.readEvents(events))
+                .assertNext(response -> assertEquals("Hel", text(response)))
+                .assertNext(response -> assertEquals("lo", text(response)))
+                .assertNext(response -> {
+                    assertEquals("", text(response));
+                    assertEquals("stop", response.getResult().getMetadata().getFinishReason());
+                    assertEquals("resp_2", response.getMetadata().getId());
+                    assertEquals(20, response.getMetadata().getUsage().getPromptTokens());
+                    assertEquals(5, response.getMetadata().getUsage().getCompletionTokens());
+                    assertEquals(Optional.of(new ConversationState("resp_2", "gpt-4o", 25)),
+                            ConversationState.of(response.getMetadata()));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void response_incomplete_for_the_output_limit_is_reported_as_truncated() {
+        var events = Flux.just("{\"type\":\"response.incomplete\",\"response\":{\"id\":\"resp_3\",\"status\":\"incomplete\","
+                + "\"incomplete_details\":{\"reason\":\"max_output_tokens\"},\"usage\":{\"total_tokens\":1100}}}");
+
+        StepVerifier.create(chatModel.readEvents(events))
+                .assertNext(response -> {
+                    assertEquals("length", response.getResult().getMetadata().getFinishReason());
+                    assertEquals(Optional.of(new ConversationState("resp_3", "gpt-4o", 1100)),
+                            ConversationState.of(response.getMetadata()));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void failed_response_fails_the_stream() {
+        var events = Flux.just(
+                "{\"type\":\"response.output_text.delta\",\"delta\":\"Hel\"}",
+                "{\"type\":\"response.failed\",\"response\":{\"id\":\"resp_4\",\"status\":\"failed\","
+                        + "\"error\":{\"code\":\"invalid_prompt\",\"message\":\"The prompt was rejected\"}}}");
+
+        StepVerifier.create(chatModel.readEvents(events))
+                .expectNextCount(1)
+                .expectErrorSatisfies(e -> {
+                    assertInstanceOf(NonTransientAiException.class, e);
+                    assertEquals("The prompt was rejected", e.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void response_failed_by_the_server_is_transient() {
+        var events = Flux.just("{\"type\":\"response.failed\",\"response\":{\"error\":{\"code\":\"server_error\",\"message\":\"Try again\"}}}");
+
+        StepVerifier.create(chatModel.readEvents(events))
+                .expectError(TransientAiException.class)
+                .verify();
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult().getOutput().getText();
+    }
+}
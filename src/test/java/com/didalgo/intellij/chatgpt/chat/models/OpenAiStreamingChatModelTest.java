@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.Errors;
+import com.didalgo.intellij.chatgpt.chat.metadata.RateLimitHeaders;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.metadata.RateLimit;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class OpenAiStreamingChatModelTest {
+
+    private HttpServer server;
+    private OpenAiStreamingChatModel chatModel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            var body = "{\"error\":{\"message\":\"Rate limit reached\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Retry-After", "7");
+            exchange.getResponseHeaders().set("x-ratelimit-remaining-requests", "0");
+            exchange.getResponseHeaders().set("x-ratelimit-reset-requests", "7s");
+            exchange.sendResponseHeaders(429, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        chatModel = new OpenAiStreamingChatModel(mock(ChatModel.class),
+                "http://localhost:" + server.getAddress().getPort() + "/v1/chat/completions", "test-key",
+                OpenAiChatOptions.builder().model("gpt-4o").build(), Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void rejected_request_fails_with_the_response_headers() {
+        List<RateLimit> rateLimits = new ArrayList<>();
+
+        var e = assertThrows(WebClientResponseException.class, () -> chatModel.stream(new Prompt("Hi"))
+                .contextWrite(RateLimitHeaders.recordingTo(rateLimits::add))
+                .blockLast(Duration.ofSeconds(10)));
+
+        assertEquals(429, e.getStatusCode().value());
+        assertTrue(e.getResponseBodyAsString().contains("Rate limit reached"));
+        assertEquals(Errors.Category.RATE_LIMITED, Errors.classify(e));
+        assertEquals(Optional.of(Duration.ofSeconds(7)), Errors.getRetryAfter(e));
+        assertEquals(1, rateLimits.size());
+        assertEquals(0L, rateLimits.get(0).getRequestsRemaining());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.didalgo.intellij.chatgpt.chat.PredictedOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.openai.OpenAiChatOptions;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredictedOutputInterceptorTest {
+
+    @Test
+    void adds_prediction_to_request_body() throws Exception {
+        var body = "{\"model\":\"gpt-4o\",\"stream\":true}".getBytes(StandardCharsets.UTF_8);
+
+        var request = new ObjectMapper().readTree(PredictedOutputInterceptor.withPrediction(body, "int x = 1;\n"));
+
+        assertEquals("gpt-4o", request.get("model").asText());
+        assertEquals("content", request.get("prediction").get("type").asText());
+        assertEquals("int x = 1;\n", request.get("prediction").get("content").asText());
+    }
+
+    @Test
+    void passes_prediction_with_request_options_of_supporting_family() {
+        var prediction = new PredictedOutput("void ą() { }");
+
+        var options = (OpenAiChatOptions) ModelFamily.OPEN_AI.createRequestOptions(1024, prediction);
+        var header = options.getHttpHeaders().get(PredictedOutputInterceptor.HEADER);
+
+        assertEquals(1024, options.getMaxTokens());
+        assertNotNull(header);
+        assertFalse(header.contains("\n"));
+    }
+
+    @Test
+    void prediction_is_carried_by_the_message() {
+        var message = new UserMessage("Optimize this code");
+        var prediction = new PredictedOutput("for (;;);");
+
+        assertTrue(PredictedOutput.of(message).isEmpty());
+        assertEquals(prediction, PredictedOutput.of(prediction.applyTo(message)).orElseThrow());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.chat.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptCacheInterceptorTest {
+
+    @Test
+    void marks_system_prompt_and_end_of_history_as_cache_breakpoints() throws Exception {
+        var body = """
+                {"model":"claude-3-7-sonnet-latest","system":"You are helpful","messages":[
+                  {"role":"user","content":[{"type":"text","text":"Hi"}]},
+                  {"role":"assistant","content":[{"type":"text","text":"Hello"}]},
+                  {"role":"user","content":[{"type":"text","text":"And now?"}]}
+                ]}""".getBytes(StandardCharsets.UTF_8);
+
+        var request = new ObjectMapper().readTree(PromptCacheInterceptor.withCacheBreakpoints(body));
+
+        var system = request.get("system").get(0);
+        assertEquals("You are helpful", system.get("text").asText());
+        assertEquals("ephemeral", system.get("cache_control").get("type").asText());
+        assertEquals("ephemeral", request.get("messages").get(1).get("content").get(0).get("cache_control").get("type").asText());
+        assertNull(request.get("messages").get(0).get("content").get(0).get("cache_control"));
+        assertNull(request.get("messages").get(2).get("content").get(0).get("cache_control"));
+    }
+
+    @Test
+    void first_message_of_conversation_has_no_history_to_mark() throws Exception {
+        var body = """
+                {"model":"claude-3-7-sonnet-latest","messages":[{"role":"user","content":"Hi"}]}""".getBytes(StandardCharsets.UTF_8);
+
+        var request = new ObjectMapper().readTree(PromptCacheInterceptor.withCacheBreakpoints(body));
+
+        assertNull(request.get("system"));
+        assertEquals("Hi", request.get("messages").get(0).get("content").asText());
+    }
+}
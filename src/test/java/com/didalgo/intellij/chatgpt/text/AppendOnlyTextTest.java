@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.text;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppendOnlyTextTest {
+
+    private final AppendOnlyText text = new AppendOnlyText();
+
+    @Test
+    void is_empty_initially() {
+        assertEquals(0, text.length());
+        assertEquals("", text.toString());
+        assertEquals("", text.snapshot().toString());
+    }
+
+    @Test
+    void append_accumulates_chunks_in_order() {
+        text.append("Hello").append(", ").append("").append(null).append("World");
+
+        assertEquals("Hello, World", text.toString());
+        assertEquals(12, text.length());
+        assertEquals(3, text.chunkCount());
+    }
+
+    @Test
+    void snapshot_is_not_affected_by_later_appends() {
+        var expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String chunk = "chunk" + i + ";";
+            text.append(chunk);
+            expected.append(chunk);
+        }
+        var snapshot = text.snapshot();
+        for (int i = 0; i < 100; i++)
+            text.append("more");
+
+        assertEquals(expected.toString(), snapshot.toString());
+        assertEquals(expected.length(), snapshot.length());
+    }
+
+    @Test
+    void snapshot_gives_random_access_to_characters() {
+        text.append("ab").append("c").append("defg");
+        var snapshot = text.snapshot();
+        String expected = "abcdefg";
+
+        for (int i = 0; i < expected.length(); i++)
+            assertEquals(expected.charAt(i), snapshot.charAt(i), "at index " + i);
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.charAt(expected.length()));
+    }
+
+    @Test
+    void snapshot_gives_subsequences_spanning_chunks() {
+        text.append("ab").append("c").append("defg");
+        var snapshot = text.snapshot();
+        String expected = "abcdefg";
+
+        for (int start = 0; start <= expected.length(); start++)
+            for (int end = start; end <= expected.length(); end++)
+                assertEquals(expected.substring(start, end), snapshot.subSequence(start, end).toString());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.text;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalMarkdownFormatterTest {
+
+    TextFragmentToHtmlFormatter fullFormatter = new TextFragmentToHtmlFormatter();
+    IncrementalMarkdownFormatter formatter = new IncrementalMarkdownFormatter(fullFormatter);
+
+    static Stream<String> documents() {
+        return Stream.of(
+                "My text\n\nwith\nnewlines.",
+                "# Heading\n\nSome paragraph.\n\n## Another heading\n\nMore text here.\n",
+                "Setext heading\n==============\n\nParagraph\n\nAnother setext\n---\n\nEnd.",
+                "Intro:\n\n```java\nclass A {\n\n    void m() {}\n\n}\n```\n\nOutro text.\n\n```\nunclosed\n\nfence",
+                "- one\n- two\n\n- three\n\nparagraph after loose list\n\n1. first\n2. second\n\n3. third\n",
+                "1. first\n\n2. second\n\n3. third\n\nDone.",
+                "- item\n\n  continued paragraph\n\n      indented code in item\n\nout of list",
+                "| a | b |\n|---|---|\n| 1 | 2 |\n\ntext between\n\n| c |\n|---|\n| 3 |\n",
+                "> quote\n> more\n\n> second quote\n\nafter",
+                "Paragraph\n\n    indented code\n\n    still code\n\nParagraph again",
+                "Text with <b>html</b> & entities &amp; \"quotes\"\n\n`code <tag>`\n\n```html\n<div class=\"x\">&nbsp;</div>\n```\n\nend",
+                "See [the docs][ref] for details.\n\nMore text.\n\n[ref]: https://example.com\n\nTrailing.",
+                "Para\n\n***\n\n---\n\nPara\n\n\n\n\nMany blank lines\n\n",
+                "Windows\r\nline\r\n\r\nendings\r\n\r\n```\r\ncode\r\n```\r\n\r\ndone"
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("documents")
+    void format_gives_same_html_as_full_parse_when_streamed_char_by_char(String document) {
+        for (int end = 0; end <= document.length(); end++)
+            assertFormattedSameAsFullParse(document.substring(0, end));
+    }
+
+    @ParameterizedTest
+    @MethodSource("documents")
+    void format_gives_same_html_as_full_parse_when_streamed_in_chunks(String document) {
+        for (int end = 0; end < document.length(); end += 7)
+            assertFormattedSameAsFullParse(document.substring(0, end));
+        assertFormattedSameAsFullParse(document);
+    }
+
+    @ParameterizedTest
+    @MethodSource("documents")
+    void format_appended_gives_same_html_as_full_parse_when_streamed_in_chunks(String document) {
+        var text = new AppendOnlyText();
+        for (int start = 0; start < document.length(); start += 7) {
+            var snapshot = text.append(document.substring(start, Math.min(start + 7, document.length()))).snapshot();
+            assertEquals(fullFormatter.format(TextFragment.of(snapshot.toString())), formatter.formatAppended(snapshot));
+        }
+    }
+
+    @Test
+    void format_continues_from_the_prefix_cached_by_format_appended() {
+        formatter.formatAppended(new AppendOnlyText().append("First paragraph.\n\n").append("Second paragraph.\n\nThird").snapshot());
+
+        assertFormattedSameAsFullParse("First paragraph.\n\nSecond paragraph.\n\nThird and last.");
+        assertEquals("First paragraph.\n\nSecond paragraph.\n\n".length(), formatter.getStableLength());
+        assertFormattedSameAsFullParse("Another text.\n\nEnd");
+    }
+
+    @Test
+    void format_caches_closed_blocks() {
+        formatter.format(TextFragment.of("First paragraph.\n\nSecond paragraph.\n\nThird"));
+
+        assertEquals("First paragraph.\n\nSecond paragraph.\n\n".length(), formatter.getStableLength());
+    }
+
+    @Test
+    void format_doesnt_cache_open_code_fence() {
+        formatter.format(TextFragment.of("Intro\n\n```\ncode\n\nmore code\n\nstill code\n"));
+
+        assertEquals("Intro\n\n".length(), formatter.getStableLength());
+    }
+
+    @Test
+    void format_handles_text_not_starting_with_cached_prefix() {
+        formatter.format(TextFragment.of("First paragraph.\n\nSecond paragraph.\n\nThird"));
+
+        assertFormattedSameAsFullParse("Completely different.\n\nText");
+    }
+
+    private void assertFormattedSameAsFullParse(String markdown) {
+        var text = TextFragment.of(markdown);
+        assertEquals(fullFormatter.format(text), formatter.format(text), () -> "Formatting mismatch for: " + markdown);
+    }
+}
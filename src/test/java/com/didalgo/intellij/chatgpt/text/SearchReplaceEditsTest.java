@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchReplaceEditsTest {
+
+    private static final String CODE = """
+            class A {
+                void f() {
+                    int x = 1;
+                    return;
+                }
+            }""";
+
+    @Test
+    void parses_blocks_skipping_text_around_them() {
+        var edits = SearchReplaceEdits.parse("""
+                Here are the changes:
+                ```
+                <<<<<<< SEARCH
+                        int x = 1;
+                =======
+                        int x = 2;
+                >>>>>>> REPLACE
+                ```
+                """);
+
+        assertEquals(List.of(new SearchReplaceEdits.Edit("        int x = 1;\n", "        int x = 2;\n")), edits);
+    }
+
+    @Test
+    void applies_edits_in_order() throws Exception {
+        var edits = List.of(
+                new SearchReplaceEdits.Edit("        int x = 1;\n", "        int x = 2;\n"),
+                new SearchReplaceEdits.Edit("        return;\n", ""));
+
+        assertEquals(CODE.replace("int x = 1;", "int x = 2;").replace("        return;\n", ""), SearchReplaceEdits.apply(CODE, edits));
+    }
+
+    @Test
+    void applies_edit_with_different_indentation_reindenting_replacement() throws Exception {
+        var edits = List.of(new SearchReplaceEdits.Edit("void f() {\n    int x = 1;\n", "void g() {\n    int y = 1;\n"));
+
+        assertEquals("""
+                class A {
+                    void g() {
+                        int y = 1;
+                        return;
+                    }
+                }""", SearchReplaceEdits.apply(CODE, edits));
+    }
+
+    @Test
+    void rejects_edit_not_matching_the_code() {
+        var edits = List.of(new SearchReplaceEdits.Edit("int z = 3;\n", "int z = 4;\n"));
+
+        assertThrows(SearchReplaceEdits.MismatchException.class, () -> SearchReplaceEdits.apply(CODE, edits));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.text;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HtmlBlockPatcherTest {
+
+    final HtmlBlockPatcher patcher = new HtmlBlockPatcher();
+
+    @Test
+    void splitBlocks_gives_top_level_elements() {
+        var html = "<p>a<br/>b</p>\n<pre><code>List<String> x;</code></pre>\n<hr />\n<ul>\n<li>one</li>\n</ul>\n";
+
+        assertEquals(List.of("<p>a<br/>b</p>", "<pre><code>List<String> x;</code></pre>", "<hr />", "<ul>\n<li>one</li>\n</ul>"),
+                HtmlBlockPatcher.splitBlocks(html));
+    }
+
+    @Test
+    void splitBlocks_rejects_top_level_text() {
+        assertNull(HtmlBlockPatcher.splitBlocks("text<p>a</p>"));
+        assertNull(HtmlBlockPatcher.splitBlocks("<p>unclosed"));
+    }
+
+    @Test
+    void patch_gives_same_document_text_as_full_rebuild() throws BadLocationException {
+        var steps = List.of(
+                "<p>Hello</p>\n",
+                "<p>Hello world</p>\n",
+                "<p>Hello world</p>\n<pre><code class=\"language-java\">class A<T> {</code></pre>\n",
+                "<p>Hello world</p>\n<pre><code class=\"language-java\">class A<T> {\n}</code></pre>\n<ul>\n<li>one</li>\n</ul>\n",
+                "<p>Hello world</p>\n<pre><code class=\"language-java\">class A<T> {\n}</code></pre>\n<ul>\n<li>one</li>\n</ul>\n<h1>End</h1>\n",
+                "<p>Hello world</p>\n",
+                "<p>Bye</p>\n<p>again</p>\n"
+        );
+        var pane = createPane(steps.get(0));
+        patcher.reset((HTMLDocument) pane.getDocument(), steps.get(0));
+
+        for (String step : steps.subList(1, steps.size())) {
+            assertTrue(patcher.patch((HTMLDocument) pane.getDocument(), step), step);
+            assertEquals(textOf(createPane(step)), textOf(pane), step);
+        }
+    }
+
+    @Test
+    void patch_preserves_unchanged_leading_elements() {
+        var pane = createPane("<p>first</p><p>second</p>");
+        var document = (HTMLDocument) pane.getDocument();
+        patcher.reset(document, "<p>first</p><p>second</p>");
+        var firstElement = HtmlBlockPatcher.findBody(document).getElement(0);
+
+        assertTrue(patcher.patch(document, "<p>first</p><p>second and more</p><p>third</p>"));
+        assertSame(firstElement, HtmlBlockPatcher.findBody(document).getElement(0));
+    }
+
+    @Test
+    void patch_requires_rebuild_when_not_reset() {
+        var pane = createPane("<p>first</p>");
+
+        assertFalse(patcher.patch((HTMLDocument) pane.getDocument(), "<p>first</p>"));
+    }
+
+    private static JEditorPane createPane(String bodyHtml) {
+        var pane = new JEditorPane();
+        pane.setEditorKit(new HTMLEditorKit());
+        pane.setText("<html><head></head><body>" + bodyHtml + "</body></html>");
+        return pane;
+    }
+
+    private static String textOf(JEditorPane pane) throws BadLocationException {
+        return pane.getDocument().getText(0, pane.getDocument().getLength());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveFramePacerTest {
+
+    private final AdaptiveFramePacer pacer = new AdaptiveFramePacer();
+
+    @Test
+    void starts_at_the_minimum_interval() {
+        assertEquals(AdaptiveFramePacer.MIN_INTERVAL_MILLIS, pacer.getIntervalMillis());
+    }
+
+    @Test
+    void keeps_the_minimum_interval_for_cheap_renders() {
+        for (int i = 0; i < 10; i++)
+            pacer.recordRender(millis(1), 1_000);
+
+        assertEquals(AdaptiveFramePacer.MIN_INTERVAL_MILLIS, pacer.getIntervalMillis());
+    }
+
+    @Test
+    void converges_to_four_times_the_steady_render_time() {
+        for (int i = 0; i < 50; i++)
+            pacer.recordRender(millis(20), 1_000);
+
+        assertEquals(80, pacer.getIntervalMillis());
+        assertEquals(millis(20), pacer.getAverageRenderNanos());
+        assertEquals(millis(20), pacer.getLastRenderNanos());
+    }
+
+    @Test
+    void smooths_a_single_slow_render() {
+        pacer.recordRender(millis(2), 1_000);
+        pacer.recordRender(millis(100), 1_000);
+
+        assertTrue(pacer.getIntervalMillis() < 4 * 100, "interval: " + pacer.getIntervalMillis());
+        assertTrue(pacer.getIntervalMillis() > AdaptiveFramePacer.MIN_INTERVAL_MILLIS, "interval: " + pacer.getIntervalMillis());
+    }
+
+    @Test
+    void never_exceeds_the_maximum_interval() {
+        for (int i = 0; i < 10; i++)
+            pacer.recordRender(millis(1_000), 10_000_000);
+
+        assertEquals(AdaptiveFramePacer.MAX_INTERVAL_MILLIS, pacer.getIntervalMillis());
+    }
+
+    @Test
+    void grows_with_the_content_length() {
+        pacer.recordRender(millis(1), 50_000);
+
+        assertEquals(100, pacer.getIntervalMillis());
+    }
+
+    @Test
+    void shrinks_back_to_the_minimum_once_renders_become_cheap() {
+        for (int i = 0; i < 10; i++)
+            pacer.recordRender(millis(100), 1_000);
+        assertEquals(AdaptiveFramePacer.MAX_INTERVAL_MILLIS, pacer.getIntervalMillis());
+
+        int previous = pacer.getIntervalMillis();
+        for (int i = 0; i < 30; i++) {
+            pacer.recordRender(millis(1), 1_000);
+            assertTrue(pacer.getIntervalMillis() <= previous);
+            previous = pacer.getIntervalMillis();
+        }
+        assertEquals(AdaptiveFramePacer.MIN_INTERVAL_MILLIS, pacer.getIntervalMillis());
+    }
+
+    @Test
+    void respects_custom_bounds() {
+        var bounded = new AdaptiveFramePacer(30, 60);
+
+        bounded.recordRender(millis(1), 0);
+        assertEquals(30, bounded.getIntervalMillis());
+        bounded.recordRender(millis(500), 0);
+        assertEquals(60, bounded.getIntervalMillis());
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -5,7 +5,10 @@
 package com.didalgo.intellij.chatgpt.ui.tool.window;
 
 import com.didalgo.intellij.chatgpt.chat.AssistantType;
+import com.didalgo.intellij.chatgpt.chat.ChatLinkService;
+import com.didalgo.intellij.chatgpt.chat.PromptQueue;
 import com.didalgo.intellij.chatgpt.chat.client.ChatClientFactory;
+import com.didalgo.intellij.chatgpt.chat.client.ChatHandler;
 import com.didalgo.intellij.chatgpt.settings.GeneralSettings;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.impl.ApplicationImpl;
@@ -16,10 +19,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.opentest4j.AssertionFailedError;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
@@ -28,8 +33,10 @@ import reactor.core.publisher.Flux;
 
 import javax.swing.SwingUtilities;
 import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.params.provider.EnumSource.Mode.EXCLUDE;
@@ -62,6 +69,181 @@ class ChatPanelTest {
         });
     }
 
+    @ParameterizedTest
+    @EnumSource(value = AssistantType.System.class, mode = EXCLUDE, names = "ONLINE")
+    void can_stream_concurrent_exchanges_into_separate_turns(AssistantType.System type) throws Throwable {
+        when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+            var instructions = invocation.getArgument(0, Prompt.class).getInstructions();
+            var question = instructions.get(instructions.size() - 1).getText();
+            return Flux.just(
+                            new ChatResponse(List.of(new Generation(new AssistantMessage("re: ")))),
+                            new ChatResponse(List.of(new Generation(new AssistantMessage(question)))))
+                    .delayElements(Duration.ofMillis(100));
+        });
+
+        var chatPanel = aChatPanel(type);
+        aUserMessage(chatPanel, "first");
+        chatPanel.getChatLink().pushMessage("second", List.of());
+
+        verifyEventually(() -> {
+            assertEquals("first", chatPanel.getConversationTurnPanel(-4).getMessageText().markdown());
+            assertEquals("re: first", chatPanel.getConversationTurnPanel(-3).getMessageText().markdown());
+            assertEquals("second", chatPanel.getConversationTurnPanel(-2).getMessageText().markdown());
+            assertEquals("re: second", chatPanel.getConversationTurnPanel(-1).getMessageText().markdown());
+        });
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AssistantType.System.class, mode = EXCLUDE, names = "ONLINE")
+    void sends_prompt_submitted_while_streaming_after_the_response_completes(AssistantType.System type) throws Throwable {
+        when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+            var instructions = invocation.getArgument(0, Prompt.class).getInstructions();
+            var question = instructions.get(instructions.size() - 1).getText();
+            return Flux.just(
+                            new ChatResponse(List.of(new Generation(new AssistantMessage("re: ")))),
+                            new ChatResponse(List.of(new Generation(new AssistantMessage(question)))))
+                    .delayElements(Duration.ofMillis(100));
+        });
+
+        var chatPanel = aChatPanel(type);
+        aUserMessage(chatPanel, "first");
+        verifyEventually(() -> assertEquals("first", chatPanel.getConversationTurnPanel(-2).getMessageText().markdown()));
+        aUserMessage(chatPanel, "second");
+
+        verifyEventually(() -> {
+            assertEquals("", chatPanel.getSearchText());
+            assertEquals("first", chatPanel.getConversationTurnPanel(-4).getMessageText().markdown());
+            assertEquals("re: first", chatPanel.getConversationTurnPanel(-3).getMessageText().markdown());
+            assertEquals("second", chatPanel.getConversationTurnPanel(-2).getMessageText().markdown());
+            assertEquals("re: second", chatPanel.getConversationTurnPanel(-1).getMessageText().markdown());
+        });
+        verify(chatModel, times(2)).stream(any(Prompt.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AssistantType.System.class, mode = EXCLUDE, names = "ONLINE")
+    void sends_queued_prompts_one_at_a_time_in_the_order_submitted(AssistantType.System type) throws Throwable {
+        when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+            var instructions = invocation.getArgument(0, Prompt.class).getInstructions();
+            var question = instructions.get(instructions.size() - 1).getText();
+            return Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("re: " + question)))))
+                    .delaySubscription(Duration.ofMillis(200));
+        });
+
+        var chatPanel = aChatPanel(type);
+        var chatLink = chatPanel.getChatLink();
+        aUserMessage(chatPanel, "first");
+        chatLink.queueMessage("second", List.of()).get();
+        chatLink.queueMessage("third", List.of()).get();
+
+        verifyEventually(() -> {
+            for (int i = 0; i < 3; i++) {
+                var prompt = List.of("first", "second", "third").get(i);
+                assertEquals(prompt, chatPanel.getConversationTurnPanel(2 * i - 6).getMessageText().markdown());
+                assertEquals("re: " + prompt, chatPanel.getConversationTurnPanel(2 * i - 5).getMessageText().markdown());
+            }
+        });
+        var prompts = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel, times(3)).stream(prompts.capture());
+        // each queued prompt is sent only after the previous exchange completed, so it has its response in the history
+        var third = prompts.getAllValues().get(2).getInstructions();
+        assertEquals("re: second", third.get(third.size() - 2).getText());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AssistantType.System.class, mode = EXCLUDE, names = "ONLINE")
+    void queued_prompt_taken_back_for_editing_is_not_sent(AssistantType.System type) throws Throwable {
+        when(chatModel.stream(any(Prompt.class)))
+                .thenReturn(Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("something")))))
+                        .delaySubscription(Duration.ofMillis(300)));
+
+        var chatPanel = aChatPanel(type);
+        var promptQueue = ((ChatLinkService) chatPanel.getChatLink()).getPromptQueue();
+        aUserMessage(chatPanel, "Say something");
+        verifyEventually(() -> assertEquals("Say something", chatPanel.getConversationTurnPanel(-2).getMessageText().markdown()));
+        aUserMessage(chatPanel, "Say more");
+        verifyEventually(() -> assertEquals(List.of("Say more"), promptQueue.getEntries().stream().map(PromptQueue.Entry::prompt).toList()));
+        verifyEventually(() -> assertEquals("", chatPanel.getSearchText()));
+
+        SwingUtilities.invokeAndWait(() -> chatPanel.editQueuedPrompt(promptQueue.getEntries().get(0)));
+
+        assertTrue(promptQueue.isEmpty());
+        verifyEventually(() -> {
+            assertEquals("Say more", chatPanel.getSearchText());
+            assertEquals("something", chatPanel.getConversationTurnPanel(-1).getMessageText().markdown());
+        });
+        verify(chatModel, times(1)).stream(any(Prompt.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AssistantType.System.class, mode = EXCLUDE, names = "ONLINE")
+    void identical_prompts_in_flight_share_one_request(AssistantType.System type) throws Throwable {
+        when(chatModel.stream(any(Prompt.class)))
+                .thenReturn(Flux.just(
+                                new ChatResponse(List.of(new Generation(new AssistantMessage("some")))),
+                                new ChatResponse(List.of(new Generation(new AssistantMessage("thing")))))
+                        .delayElements(Duration.ofMillis(250)));
+
+        var firstPanel = aChatPanel(type);
+        var secondPanel = aChatPanel(type);
+        aUserMessage(firstPanel, "Say something");
+        aUserMessage(secondPanel, "Say something");
+
+        verifyEventually(() -> {
+            assertEquals("something", firstPanel.getConversationTurnPanel(-1).getMessageText().markdown());
+            assertEquals("something", secondPanel.getConversationTurnPanel(-1).getMessageText().markdown());
+        });
+        verify(chatModel, times(1)).stream(any(Prompt.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AssistantType.System.class, mode = EXCLUDE, names = "ONLINE")
+    void shows_draft_until_primary_response_starts(AssistantType.System type) throws Throwable {
+        var draftCancelled = new AtomicBoolean();
+        when(chatModel.stream(any(Prompt.class)))
+                .thenReturn(Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("final")))))
+                        .delaySubscription(Duration.ofMillis(500)))
+                .thenReturn(Flux.concat(
+                        Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("draft"))))),
+                        Flux.<ChatResponse>never().doOnCancel(() -> draftCancelled.set(true))));
+
+        var settings = GeneralSettings.getInstance();
+        settings.setDraftAssistantType(type == AssistantType.System.OLLAMA ? AssistantType.System.GPT_3_5 : AssistantType.System.OLLAMA);
+        try {
+            var chatPanel = aChatPanel(type);
+            aUserMessage(chatPanel, "Say something");
+
+            verifyEventually(() -> assertEquals("draft", chatPanel.getConversationTurnPanel(-1).getMessageText().markdown()));
+            verifyEventually(() -> assertEquals("final", chatPanel.getConversationTurnPanel(-1).getMessageText().markdown()));
+            assertTrue(draftCancelled.get(), "Draft request should be cancelled");
+        } finally {
+            settings.setDraftAssistantType(null);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AssistantType.System.class, mode = EXCLUDE, names = "ONLINE")
+    void continues_response_cut_off_by_length_limit_in_the_same_turn(AssistantType.System type) throws Throwable {
+        when(chatModel.stream(any(Prompt.class)))
+                .thenReturn(Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("some"),
+                        ChatGenerationMetadata.builder().finishReason("length").build())))))
+                .thenReturn(Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("thing"),
+                        ChatGenerationMetadata.builder().finishReason("stop").build())))));
+
+        var chatPanel = aChatPanel(type);
+        aUserMessage(chatPanel, "Say something");
+
+        verifyEventually(() -> {
+            assertEquals("something", chatPanel.getConversationTurnPanel(-1).getMessageText().markdown());
+            assertEquals("Say something", chatPanel.getConversationTurnPanel(-2).getMessageText().markdown());
+        });
+        var prompts = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel, times(2)).stream(prompts.capture());
+        var continuation = prompts.getAllValues().get(1).getInstructions();
+        assertEquals("some", continuation.get(continuation.size() - 2).getText());
+        assertEquals(ChatHandler.CONTINUATION_PROMPT, continuation.get(continuation.size() - 1).getText());
+    }
+
     @TestApplication
     @Nested
     class NonStreaming {
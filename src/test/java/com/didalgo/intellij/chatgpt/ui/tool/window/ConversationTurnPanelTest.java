@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import com.didalgo.intellij.chatgpt.chat.models.StandardModel;
+import com.didalgo.intellij.chatgpt.text.TextFragment;
+import com.intellij.testFramework.junit5.TestApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.didalgo.intellij.chatgpt.ui.tool.window.ChatPanelTest.verifyEventually;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestApplication
+class ConversationTurnPanelTest {
+
+    private final AtomicReference<ConversationTurnPanel> panel = new AtomicReference<>();
+
+    @Test
+    void turn_awaiting_its_response_is_dehydrated_only_once_the_response_is_set() throws Throwable {
+        SwingUtilities.invokeAndWait(() -> {
+            panel.set(new ConversationTurnPanel(new AssistantMessage("Thinking..."), StandardModel.GPT_4_O).awaitingResponse());
+            assertFalse(panel.get().dehydrate());
+            panel.get().setStreamingContent("Hel", false);
+        });
+        // the streamed text is rendered, with the response still arriving
+        Thread.sleep(2L * AdaptiveFramePacer.MAX_INTERVAL_MILLIS);
+        SwingUtilities.invokeAndWait(() -> {
+            assertFalse(panel.get().dehydrate());
+            panel.get().setContent(new AssistantMessage("Hello"), TextFragment.of("Hello"));
+        });
+
+        verifyEventually(() -> assertTrue(panel.get().dehydrate()));
+    }
+
+    @Test
+    void turn_failed_with_an_error_can_be_dehydrated() throws Throwable {
+        SwingUtilities.invokeAndWait(() -> {
+            panel.set(new ConversationTurnPanel(new AssistantMessage("Thinking..."), StandardModel.GPT_4_O).awaitingResponse());
+            panel.get().setErrorContent("Connection refused");
+        });
+
+        verifyEventually(() -> assertTrue(panel.get().dehydrate()));
+    }
+
+    @Test
+    void turn_created_with_its_content_can_be_dehydrated() throws Throwable {
+        SwingUtilities.invokeAndWait(() -> panel.set(new ConversationTurnPanel(new AssistantMessage("Hello"), StandardModel.GPT_4_O)));
+
+        verifyEventually(() -> assertTrue(panel.get().dehydrate()));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeightIndexTest {
+
+    final HeightIndex index = new HeightIndex();
+
+    @Test
+    void empty_index_has_no_items() {
+        assertEquals(0, index.size());
+        assertEquals(0L, index.total());
+        assertEquals(0L, index.prefixSum(0));
+        assertEquals(-1, index.indexAt(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.set(0, 10));
+    }
+
+    @Test
+    void prefixSum_gives_offsets_of_the_items() {
+        add(10, 20, 30, 40);
+
+        assertEquals(0L, index.prefixSum(0));
+        assertEquals(10L, index.prefixSum(1));
+        assertEquals(30L, index.prefixSum(2));
+        assertEquals(60L, index.prefixSum(3));
+        assertEquals(100L, index.prefixSum(4));
+        assertEquals(100L, index.total());
+    }
+
+    @Test
+    void indexAt_finds_the_item_covering_the_offset_at_its_boundaries() {
+        add(10, 20, 30, 40);
+
+        assertEquals(0, index.indexAt(0));
+        assertEquals(0, index.indexAt(9));
+        assertEquals(1, index.indexAt(10));
+        assertEquals(1, index.indexAt(29));
+        assertEquals(2, index.indexAt(30));
+        assertEquals(3, index.indexAt(60));
+        assertEquals(3, index.indexAt(99));
+    }
+
+    @Test
+    void indexAt_clamps_offsets_out_of_range() {
+        add(10, 20);
+
+        assertEquals(0, index.indexAt(-5));
+        assertEquals(1, index.indexAt(30));
+        assertEquals(1, index.indexAt(Long.MAX_VALUE));
+    }
+
+    @Test
+    void indexAt_skips_items_of_zero_height() {
+        add(10, 0, 0, 5);
+
+        assertEquals(0, index.indexAt(9));
+        assertEquals(3, index.indexAt(10));
+    }
+
+    @Test
+    void set_updates_the_offsets_of_the_following_items() {
+        add(10, 20, 30, 40);
+
+        index.set(0, 15);
+        index.set(3, 0);
+
+        assertEquals(15, index.get(0));
+        assertEquals(15L, index.prefixSum(1));
+        assertEquals(65L, index.prefixSum(3));
+        assertEquals(65L, index.total());
+        assertEquals(2, index.indexAt(64));
+        assertEquals(3, index.indexAt(65));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.set(4, 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.set(-1, 10));
+    }
+
+    @Test
+    void keeps_the_offsets_when_growing_past_the_initial_capacity() {
+        int count = 1000;
+        for (int i = 0; i < count; i++)
+            index.add(i + 1);
+        index.set(500, 0);
+
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            assertEquals(offset, index.prefixSum(i), "prefixSum(" + i + ")");
+            if (index.get(i) > 0) {
+                assertEquals(i, index.indexAt(offset));
+                assertEquals(i, index.indexAt(offset + index.get(i) - 1));
+            }
+            offset += index.get(i);
+        }
+        assertEquals(offset, index.total());
+    }
+
+    @Test
+    void clear_removes_all_items() {
+        add(10, 20);
+
+        index.clear();
+        index.add(7);
+
+        assertEquals(1, index.size());
+        assertEquals(7L, index.total());
+        assertEquals(0, index.indexAt(3));
+    }
+
+    private void add(int... heights) {
+        for (int height : heights)
+            index.add(height);
+    }
+}
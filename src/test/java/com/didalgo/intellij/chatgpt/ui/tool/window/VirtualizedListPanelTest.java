@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024 Mariusz Bernacki <consulting@didalgo.com>
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.didalgo.intellij.chatgpt.ui.tool.window;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualizedListPanelTest {
+
+    static final int ITEM_HEIGHT = 50;
+    static final int MAX_HYDRATED_OFFSCREEN = 16;
+
+    final VirtualizedListPanel panel = new VirtualizedListPanel(ITEM_HEIGHT, MAX_HYDRATED_OFFSCREEN);
+    final JScrollPane scrollPane = new JScrollPane(panel);
+    final List<Turn> turns = new ArrayList<>();
+
+    @Test
+    void keeps_only_few_turns_hydrated_when_many_are_added() {
+        scrollPane.setSize(400, 300);
+        for (int i = 0; i < 500; i++)
+            addTurn();
+        layOut();
+
+        long realized = turns.stream().filter(panel::isRealized).count();
+        assertTrue(realized > 0 && realized < 50, "Realized " + realized + " turns");
+        assertTrue(panel.isRealized(turns.get(0)));
+        assertEquals(realized + MAX_HYDRATED_OFFSCREEN, hydratedCount());
+    }
+
+    @Test
+    void rehydrates_turns_when_scrolled_to() {
+        scrollPane.setSize(400, 300);
+        for (int i = 0; i < 500; i++)
+            addTurn();
+        layOut();
+
+        scrollPane.getViewport().setViewPosition(new Point(0, 500 * ITEM_HEIGHT - 300));
+        layOut();
+
+        var last = turns.get(turns.size() - 1);
+        assertTrue(panel.isRealized(last));
+        assertTrue(last.hydrated);
+        assertFalse(panel.isRealized(turns.get(0)));
+        assertTrue(hydratedCount() <= turns.stream().filter(panel::isRealized).count() + MAX_HYDRATED_OFFSCREEN);
+    }
+
+    @Test
+    void keeps_the_turns_which_cannot_be_dehydrated_yet() {
+        scrollPane.setSize(400, 300);
+        var busy = addTurn();
+        busy.busy = true;
+        for (int i = 0; i < 100; i++)
+            addTurn();
+
+        scrollPane.getViewport().setViewPosition(new Point(0, 101 * ITEM_HEIGHT - 300));
+        layOut();
+
+        assertFalse(panel.isRealized(busy));
+        assertTrue(busy.hydrated);
+    }
+
+    private Turn addTurn() {
+        var turn = new Turn();
+        turns.add(turn);
+        panel.addItem(turn);
+        return turn;
+    }
+
+    private long hydratedCount() {
+        return turns.stream().filter(turn -> turn.hydrated).count();
+    }
+
+    private void layOut() {
+        // the components aren't displayable, so aren't validated
+        scrollPane.doLayout();
+        scrollPane.getViewport().doLayout();
+        panel.doLayout();
+    }
+
+    static class Turn extends JPanel implements VirtualizedListPanel.Dehydratable {
+        boolean hydrated = true;
+        boolean busy;
+
+        Turn() {
+            setPreferredSize(new Dimension(400, ITEM_HEIGHT));
+        }
+
+        @Override
+        public boolean dehydrate() {
+            if (busy)
+                return false;
+            hydrated = false;
+            return true;
+        }
+
+        @Override
+        public void rehydrate() {
+            hydrated = true;
+        }
+    }
+}